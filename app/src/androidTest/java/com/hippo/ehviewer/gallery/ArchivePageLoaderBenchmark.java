@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.gallery;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.util.Log;
+import com.hippo.image.Image;
+import com.hippo.unifile.UniFile;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import junit.framework.TestCase;
+
+/**
+ * Loads every page of a synthetic 300-image CBZ, with one extractor and
+ * one decoder like the old pipeline, and with the default thread counts.
+ */
+public class ArchivePageLoaderBenchmark extends TestCase {
+
+  private static final String TAG = ArchivePageLoaderBenchmark.class.getSimpleName();
+
+  private static final int PAGE_COUNT = 300;
+  private static final int PAGE_WIDTH = 1280;
+  private static final int PAGE_HEIGHT = 1808;
+
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    file = File.createTempFile("benchmark", ".cbz");
+    writeArchive(file);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+    super.tearDown();
+  }
+
+  private static void writeArchive(File file) throws IOException {
+    Bitmap bitmap = Bitmap.createBitmap(PAGE_WIDTH, PAGE_HEIGHT, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    ByteArrayOutputStream page = new ByteArrayOutputStream();
+    ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+    try {
+      for (int i = 0; i < PAGE_COUNT; i++) {
+        // Different pages, so decoders can't get lucky
+        canvas.drawColor(Color.rgb(i % 256, (i * 7) % 256, (i * 13) % 256));
+        page.reset();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, page);
+        zos.putNextEntry(new ZipEntry(String.format("%03d.jpg", i)));
+        page.writeTo(zos);
+        zos.closeEntry();
+      }
+    } finally {
+      zos.close();
+      bitmap.recycle();
+    }
+  }
+
+  private long loadAll(int extractorCount, int decoderCount) throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(PAGE_COUNT);
+    final AtomicInteger failed = new AtomicInteger();
+    ArchivePageLoader loader = new ArchivePageLoader(UniFile.fromFile(file), null,
+        new PageDecoder(), new ArchivePageLoader.Callback() {
+      @Override
+      public void onOpen(int size) {
+        // The first size might be provisional
+        assertTrue(size == 1 || size == PAGE_COUNT);
+      }
+
+      @Override
+      public void onOpenFailed(String error) {
+        fail(error);
+      }
+
+      @Override
+      public void onPageSucceed(int index, Image image) {
+        image.recycle();
+        latch.countDown();
+      }
+
+      @Override
+      public void onPageFailed(int index, String error) {
+        failed.incrementAndGet();
+        latch.countDown();
+      }
+
+      @Override
+      public void onPageChanged(int index) {
+        // Entries are written in order, the first one found is the first page
+        fail("Page " + index + " changed");
+      }
+    }, extractorCount, decoderCount);
+
+    long start = System.nanoTime();
+    loader.start();
+    for (int i = 0; i < PAGE_COUNT; i++) {
+      loader.request(i);
+    }
+    assertTrue(latch.await(5, TimeUnit.MINUTES));
+    long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    loader.stop();
+
+    assertEquals(0, failed.get());
+    return time;
+  }
+
+  public void testThroughput() throws InterruptedException {
+    // Warm up
+    loadAll(1, 1);
+
+    long single = loadAll(1, 1);
+    int extractorCount = ArchivePageLoader.getDefaultExtractorCount();
+    int decoderCount = ArchivePageLoader.getDefaultDecoderCount();
+    long parallel = loadAll(extractorCount, decoderCount);
+
+    Log.i(TAG, "1 extractor, 1 decoder: " + single + " ms, "
+        + (PAGE_COUNT * 1000L / Math.max(1, single)) + " pages/s");
+    Log.i(TAG, extractorCount + " extractors, " + decoderCount + " decoders: " + parallel + " ms, "
+        + (PAGE_COUNT * 1000L / Math.max(1, parallel)) + " pages/s");
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.util;
+
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Sorts 5000 file names with the comparator and with sort keys.
+ */
+public class NaturalComparatorBenchmark extends TestCase {
+
+  private static final String TAG = NaturalComparatorBenchmark.class.getSimpleName();
+
+  private static final int NAME_COUNT = 5000;
+  private static final int ROUND = 20;
+
+  private static List<String> createNames() {
+    Random random = new Random(42);
+    List<String> names = new ArrayList<>(NAME_COUNT);
+    for (int i = 0; i < NAME_COUNT; i++) {
+      names.add(String.format(Locale.US, "Chapter %d - Page_%04d.JPG",
+          random.nextInt(50), random.nextInt(3000)));
+    }
+    return names;
+  }
+
+  public void testSort() {
+    List<String> names = createNames();
+    NaturalComparator comparator = new NaturalComparator();
+
+    long comparatorTime = Long.MAX_VALUE;
+    long keyTime = Long.MAX_VALUE;
+    List<String> sortedByComparator = null;
+    List<String> sortedByKey = null;
+
+    for (int i = 0; i < ROUND; i++) {
+      long start = System.nanoTime();
+      sortedByComparator = new ArrayList<>(names);
+      Collections.sort(sortedByComparator, comparator);
+      comparatorTime = Math.min(comparatorTime, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      List<NaturalComparator.Key<String>> keys = new ArrayList<>(names.size());
+      for (String name : names) {
+        keys.add(NaturalComparator.createKey(name, name));
+      }
+      Collections.sort(keys);
+      sortedByKey = new ArrayList<>(keys.size());
+      for (NaturalComparator.Key<String> key : keys) {
+        sortedByKey.add(key.value);
+      }
+      keyTime = Math.min(keyTime, System.nanoTime() - start);
+    }
+
+    assertEquals(sortedByComparator, sortedByKey);
+    Log.i(TAG, "Comparator: " + comparatorTime / 1000 + " us, key: " + keyTime / 1000 + " us");
+  }
+}
@@ -85,6 +85,15 @@ public final class Crash {
     fw.write("TopScene=");fw.write(avoidNull(topSceneClazzName));fw.write("\r\n");
     fw.write("\r\n");
 
+    // Startup
+    fw.write("======== Startup ========\r\n");
+    try {
+      fw.write(EhApplication.getStartup(context).dump().replace("\n", "\r\n"));
+    } catch (Throwable e) {
+      // Ignore
+    }
+    fw.write("\r\n");
+
     // Device info
     fw.write("======== DeviceInfo ========\r\n");
     fw.write("BOARD=");fw.write(Build.BOARD);fw.write("\r\n");
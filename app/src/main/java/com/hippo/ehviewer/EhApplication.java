@@ -25,7 +25,7 @@ import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Debug;
 import android.util.Log;
 import androidx.annotation.NonNull;
@@ -74,10 +74,17 @@ public class EhApplication extends RecordingApplication {
     public static final boolean BETA = false;
 
     private static final boolean DEBUG_CONACO = false;
+    private static final boolean DEBUG_STARTUP = false;
     private static final boolean DEBUG_PRINT_NATIVE_MEMORY = false;
     private static final boolean DEBUG_PRINT_IMAGE_COUNT = false;
+    private static final boolean DEBUG_PRINT_THUMB_STATS = false;
     private static final long DEBUG_PRINT_INTERVAL = 3000L;
 
+    // Native library of archives, load it before opening archives
+    public static final String STARTUP_A7ZIP = "a7zip";
+    // Image disk cache of SpiderDen, ensure it before reading galleries
+    public static final String STARTUP_IMAGE_CACHE = "image_cache";
+
     private static EhApplication instance;
 
     private final IntIdGenerator mIdGenerator = new IntIdGenerator();
@@ -90,11 +97,14 @@ public class EhApplication extends RecordingApplication {
     private Conaco<ImageBitmap> mConaco;
     private LruCache<Long, GalleryDetail> mGalleryDetailCache;
     private SimpleDiskCache mSpiderInfoCache;
+    private SimpleDiskCache mArchiveIndexCache;
+    private SimpleDiskCache mDirIndexCache;
     private DownloadManager mDownloadManager;
     private Hosts mHosts;
     private FavouriteStatusRouter mFavouriteStatusRouter;
 
     private final List<Activity> mActivityList = new ArrayList<>();
+    private final Startup mStartup = new Startup(IoThreadPoolExecutor.getInstance());
 
     private boolean initialized = false;
 
@@ -123,53 +133,63 @@ public class EhApplication extends RecordingApplication {
 
         super.onCreate();
 
-        GetText.initialize(this);
-        StatusCodeException.initialize(this);
-        Settings.initialize(this);
-        ReadableTime.initialize(this);
-        Html.initialize(this);
-        AppConfig.initialize(this);
-        SpiderDen.initialize(this);
-        EhDB.initialize(this);
-        EhEngine.initialize();
-        BitmapUtils.initialize(this);
-        Image.initialize(this);
-        A7Zip.loadLibrary(A7ZipExtractLite.LIBRARY, libname -> ReLinker.loadLibrary(EhApplication.this, libname));
-
-        if (EhDB.needMerge()) {
-            EhDB.mergeOldDB(this);
-        }
-
-        if (Settings.getEnableAnalytics()) {
-            Analytics.start(this);
-        }
+        Startup startup = mStartup;
+        startup.add("get_text", Startup.STAGE_MAIN, () -> GetText.initialize(this));
+        startup.add("status_code_exception", Startup.STAGE_MAIN, () -> StatusCodeException.initialize(this));
+        startup.add("settings", Startup.STAGE_MAIN, () -> Settings.initialize(this));
+        startup.add("readable_time", Startup.STAGE_MAIN, () -> ReadableTime.initialize(this));
+        startup.add("html", Startup.STAGE_MAIN, () -> Html.initialize(this));
+        startup.add("app_config", Startup.STAGE_MAIN, () -> AppConfig.initialize(this));
+        startup.add("eh_db", Startup.STAGE_MAIN, () -> {
+            EhDB.initialize(this);
+            if (EhDB.needMerge()) {
+                EhDB.mergeOldDB(this);
+            }
+        });
+        startup.add("eh_engine", Startup.STAGE_MAIN, EhEngine::initialize, "settings");
+        startup.add("bitmap_utils", Startup.STAGE_MAIN, () -> BitmapUtils.initialize(this));
+        startup.add("image", Startup.STAGE_MAIN, () -> Image.initialize(this));
+
+        // The first scene view is logged
+        startup.add("analytics", Startup.STAGE_MAIN, () -> {
+            if (Settings.getEnableAnalytics()) {
+                Analytics.start(this);
+            }
+        }, "settings");
 
-        // Do io tasks in new thread
-        new AsyncTask<Void, Void, Void>() {
-            @Override
-            protected Void doInBackground(Void... voids) {
-                // Check no media file
-                try {
-                    UniFile downloadLocation = Settings.getDownloadLocation();
-                    if (Settings.getMediaScan()) {
-                        CommonOperations.removeNoMediaFile(downloadLocation);
-                    } else {
-                        CommonOperations.ensureNoMediaFile(downloadLocation);
-                    }
-                } catch (Throwable t) {
-                    ExceptionUtils.throwIfFatal(t);
+        // Not needed by the first screen
+        startup.add(STARTUP_IMAGE_CACHE, Startup.STAGE_BACKGROUND,
+                () -> SpiderDen.initialize(this), "settings");
+        startup.add("no_media", Startup.STAGE_BACKGROUND, () -> {
+            // Check no media file
+            try {
+                UniFile downloadLocation = Settings.getDownloadLocation();
+                if (Settings.getMediaScan()) {
+                    CommonOperations.removeNoMediaFile(downloadLocation);
+                } else {
+                    CommonOperations.ensureNoMediaFile(downloadLocation);
                 }
+            } catch (Throwable t) {
+                ExceptionUtils.throwIfFatal(t);
+            }
+        }, "settings");
+        startup.add("temp_dir", Startup.STAGE_BACKGROUND, () -> {
+            // Clear temp files
+            try {
+                clearTempDir();
+            } catch (Throwable t) {
+                ExceptionUtils.throwIfFatal(t);
+            }
+        }, "app_config");
+        if (DEBUG_STARTUP) {
+            startup.add("dump", Startup.STAGE_BACKGROUND, () -> Log.d(TAG, "Startup:\n" + mStartup.dump()));
+        }
 
-                // Clear temp files
-                try {
-                    clearTempDir();
-                } catch (Throwable t) {
-                    ExceptionUtils.throwIfFatal(t);
-                }
+        // Only archives need it
+        startup.add(STARTUP_A7ZIP, Startup.STAGE_LAZY, () -> A7Zip.loadLibrary(A7ZipExtractLite.LIBRARY,
+                libname -> ReLinker.loadLibrary(EhApplication.this, libname)));
 
-                return null;
-            }
-        }.executeOnExecutor(IoThreadPoolExecutor.getInstance());
+        startup.start();
 
         // Check app update
         update();
@@ -184,7 +204,7 @@ public class EhApplication extends RecordingApplication {
 
         mIdGenerator.setNextId(Settings.getInt(KEY_GLOBAL_STUFF_NEXT_ID, 0));
 
-        if (DEBUG_PRINT_NATIVE_MEMORY || DEBUG_PRINT_IMAGE_COUNT) {
+        if (DEBUG_PRINT_NATIVE_MEMORY || DEBUG_PRINT_IMAGE_COUNT || DEBUG_PRINT_THUMB_STATS) {
             debugPrint();
         }
 
@@ -228,10 +248,18 @@ public class EhApplication extends RecordingApplication {
         if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
             clearMemoryCache();
         }
+
+        // The process may be killed soon in background
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            EhDB.flushDownloadInfo();
+        }
     }
 
     private void debugPrint() {
         new Runnable() {
+            private long mLastBytesAllocated = -1;
+            private long mLastGcCount = -1;
+
             @Override
             public void run() {
                 if (DEBUG_PRINT_NATIVE_MEMORY) {
@@ -241,8 +269,29 @@ public class EhApplication extends RecordingApplication {
                 if (DEBUG_PRINT_IMAGE_COUNT) {
                     Log.i(TAG, "Image count: " + Image.getImageCount());
                 }
+                if (DEBUG_PRINT_THUMB_STATS) {
+                    printThumbStats();
+                }
                 SimpleHandler.getInstance().postDelayed(this, DEBUG_PRINT_INTERVAL);
             }
+
+            // Fling a gallery list and watch allocation rate and GC count
+            private void printThumbStats() {
+                if (null != mImageBitmapHelper) {
+                    Log.i(TAG, "Thumb: " + mImageBitmapHelper.dumpStats());
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    long bytesAllocated = Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+                    long gcCount = Long.parseLong(Debug.getRuntimeStat("art.gc.gc-count"));
+                    if (mLastBytesAllocated >= 0) {
+                        long rate = (bytesAllocated - mLastBytesAllocated) * 1000 / DEBUG_PRINT_INTERVAL;
+                        Log.i(TAG, "Allocation rate: " + FileUtils.humanReadableByteCount(rate, false)
+                                + "/s, GC count: " + (gcCount - mLastGcCount));
+                    }
+                    mLastBytesAllocated = bytesAllocated;
+                    mLastGcCount = gcCount;
+                }
+            }
         }.run();
     }
 
@@ -358,6 +407,15 @@ public class EhApplication extends RecordingApplication {
         return application.mGalleryDetailCache;
     }
 
+    /**
+     * Call {@link Startup#ensure(String)} before using things
+     * set up in background or on first use.
+     */
+    @NonNull
+    public static Startup getStartup(@NonNull Context context) {
+        return ((EhApplication) context.getApplicationContext()).mStartup;
+    }
+
     @NonNull
     public static SimpleDiskCache getSpiderInfoCache(@NonNull Context context) {
         EhApplication application = ((EhApplication) context.getApplicationContext());
@@ -368,6 +426,26 @@ public class EhApplication extends RecordingApplication {
         return application.mSpiderInfoCache;
     }
 
+    @NonNull
+    public static SimpleDiskCache getArchiveIndexCache(@NonNull Context context) {
+        EhApplication application = ((EhApplication) context.getApplicationContext());
+        if (null == application.mArchiveIndexCache) {
+            application.mArchiveIndexCache = new SimpleDiskCache(
+                    new File(context.getCacheDir(), "archive_index"), 2 * 1024 * 1024); // 2M
+        }
+        return application.mArchiveIndexCache;
+    }
+
+    @NonNull
+    public static SimpleDiskCache getDirIndexCache(@NonNull Context context) {
+        EhApplication application = ((EhApplication) context.getApplicationContext());
+        if (null == application.mDirIndexCache) {
+            application.mDirIndexCache = new SimpleDiskCache(
+                    new File(context.getCacheDir(), "dir_index"), 2 * 1024 * 1024); // 2M
+        }
+        return application.mDirIndexCache;
+    }
+
     @NonNull
     public static DownloadManager getDownloadManager() {
         return getDownloadManager(instance);
@@ -43,11 +43,14 @@ import com.hippo.ehviewer.dao.QuickSearch;
 import com.hippo.ehviewer.dao.QuickSearchDao;
 import com.hippo.ehviewer.download.DownloadManager;
 import com.hippo.util.ExceptionUtils;
-import com.hippo.util.SqlUtils;
+import com.hippo.util.IoThreadPoolExecutor;
 import com.hippo.yorozuya.FileUtils;
 import com.hippo.yorozuya.IOUtils;
 import com.hippo.yorozuya.ObjectUtils;
+import com.hippo.yorozuya.SimpleHandler;
 import com.hippo.yorozuya.collect.SparseJLArray;
+import de.greenrobot.dao.AbstractDao;
+import de.greenrobot.dao.Property;
 import de.greenrobot.dao.query.LazyList;
 import java.io.File;
 import java.io.FileInputStream;
@@ -56,7 +59,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class EhDB {
 
@@ -64,11 +73,28 @@ public class EhDB {
 
     private static final int MAX_HISTORY_COUNT = 100;
 
+    // SQLite allows at most 999 host parameters in one statement
+    private static final int MAX_IN_ARGS = 500;
+
     private static DaoSession sDaoSession;
 
     private static boolean sHasOldDB;
     private static boolean sNewDB;
 
+    // -1 for unknown
+    private static long sHistoryCount = -1;
+
+    private static final DownloadInfoWriter sDownloadInfoWriter = new DownloadInfoWriter();
+
+    // Calls on hot paths, lock wait not included
+    private static final Metrics.Timer GET_ALL_DOWNLOAD_INFO_TIMER = Metrics.timer("db.get_all_download_info");
+    private static final Metrics.Timer PUT_DOWNLOAD_INFO_TIMER = Metrics.timer("db.put_download_info");
+    private static final Metrics.Timer GET_DOWNLOAD_DIRNAME_TIMER = Metrics.timer("db.get_download_dirname");
+    private static final Metrics.Timer GET_LOCAL_FAVORITES_TIMER = Metrics.timer("db.get_local_favorites");
+    private static final Metrics.Timer CONTAIN_LOCAL_FAVORITES_TIMER = Metrics.timer("db.contain_local_favorites");
+    private static final Metrics.Timer PUT_HISTORY_INFO_TIMER = Metrics.timer("db.put_history_info");
+    private static final Metrics.Timer SEARCH_TIMER = Metrics.timer("db.search");
+
     private static class DBOpenHelper extends DaoMaster.OpenHelper {
 
         public DBOpenHelper(Context context, String name, SQLiteDatabase.CursorFactory factory) {
@@ -78,6 +104,8 @@ public class EhDB {
         @Override
         public void onCreate(SQLiteDatabase db) {
             super.onCreate(db);
+            createSearchIndex(db);
+            createTimeIndex(db);
             sNewDB = true;
         }
 
@@ -119,7 +147,50 @@ public class EhDB {
                     "SELECT _id, NAME, MODE, CATEGORY, KEYWORD, ADVANCE_SEARCH, MIN_RATING, -1, -1, TIME FROM QUICK_SEARCH;");
                 db.execSQL("DROP TABLE QUICK_SEARCH");
                 db.execSQL("ALTER TABLE QUICK_SEARCH2 RENAME TO QUICK_SEARCH");
+            case 4: // 4 to 5, add full text search index
+                createSearchIndex(db);
+            case 5: // 5 to 6, add TIME index
+                createTimeIndex(db);
+        }
+    }
+
+    /**
+     * Lists are always ordered by TIME.
+     */
+    private static void createTimeIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS \"IDX_DOWNLOADS_TIME\" ON \""
+                + DownloadsDao.TABLENAME + "\" (\"TIME\");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS \"IDX_LOCAL_FAVORITES_TIME\" ON \""
+                + LocalFavoritesDao.TABLENAME + "\" (\"TIME\");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS \"IDX_HISTORY_TIME\" ON \""
+                + HistoryDao.TABLENAME + "\" (\"TIME\");");
+    }
+
+    private static void createSearchIndex(SQLiteDatabase db) {
+        SearchIndex.create(db, LocalFavoritesDao.TABLENAME);
+        SearchIndex.create(db, HistoryDao.TABLENAME);
+        SearchIndex.create(db, DownloadsDao.TABLENAME);
+    }
+
+    /**
+     * Loads entities by gid, in the order of the gid list.
+     */
+    private static <T> List<T> loadInOrder(AbstractDao<T, Long> dao, Property gidProperty, List<Long> gids) {
+        Map<Long, T> map = new HashMap<>(gids.size());
+        for (int start = 0, size = gids.size(); start < size; start += MAX_IN_ARGS) {
+            List<Long> chunk = gids.subList(start, Math.min(start + MAX_IN_ARGS, size));
+            for (T entity: dao.queryBuilder().where(gidProperty.in(chunk)).list()) {
+                map.put(dao.getKey(entity), entity);
+            }
         }
+        List<T> result = new ArrayList<>(map.size());
+        for (Long gid: gids) {
+            T entity = map.get(gid);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
     }
 
     private static class OldDBHelper extends SQLiteOpenHelper {
@@ -358,6 +429,7 @@ public class EhDB {
     }
 
     public static synchronized List<DownloadInfo> getAllDownloadInfo() {
+        long start = System.nanoTime();
         DownloadsDao dao = sDaoSession.getDownloadsDao();
         List<DownloadInfo> list = dao.queryBuilder().orderDesc(DownloadsDao.Properties.Time).list();
         // Fix state
@@ -366,6 +438,7 @@ public class EhDB {
                 info.state = DownloadInfo.STATE_NONE;
             }
         }
+        GET_ALL_DOWNLOAD_INFO_TIMER.stop(start);
         return list;
     }
 
@@ -381,14 +454,68 @@ public class EhDB {
         }
     }
 
+    /**
+     * Searches title, japanese title and uploader. Download info still
+     * queued by {@link #putDownloadInfoAsync(DownloadInfo)} isn't found.
+     *
+     * @return gid list, the best matched first
+     */
+    public static synchronized List<Long> searchDownloadInfo(String query) {
+        long start = System.nanoTime();
+        List<Long> gids = SearchIndex.search(sDaoSession.getDatabase(), DownloadsDao.TABLENAME, query);
+        SEARCH_TIMER.stop(start);
+        return gids;
+    }
+
+    /**
+     * Insert or update all in one transaction.
+     */
+    public static synchronized void putDownloadInfo(Collection<DownloadInfo> downloadInfoList) {
+        if (downloadInfoList.isEmpty()) {
+            return;
+        }
+        // All columns are set, so replace is the same as update
+        long start = System.nanoTime();
+        sDaoSession.getDownloadsDao().insertOrReplaceInTx(downloadInfoList);
+        PUT_DOWNLOAD_INFO_TIMER.stop(start);
+    }
+
     public static synchronized void removeDownloadInfo(long gid) {
+        sDownloadInfoWriter.cancel(gid);
         sDaoSession.getDownloadsDao().deleteByKey(gid);
     }
 
+    public static synchronized void removeDownloadInfo(long[] gidArray) {
+        List<Long> keys = new ArrayList<>(gidArray.length);
+        for (long gid: gidArray) {
+            sDownloadInfoWriter.cancel(gid);
+            keys.add(gid);
+        }
+        sDaoSession.getDownloadsDao().deleteByKeyInTx(keys);
+    }
+
+    /**
+     * Insert or update in background. Updates to the same gid are merged,
+     * only the latest one is written.
+     */
+    public static void putDownloadInfoAsync(DownloadInfo downloadInfo) {
+        sDownloadInfoWriter.put(downloadInfo);
+    }
+
+    /**
+     * Write all pending download info now. Call it before the data
+     * must be on disk.
+     */
+    public static void flushDownloadInfo() {
+        sDownloadInfoWriter.flush();
+    }
+
     @Nullable
     public static synchronized String getDownloadDirname(long gid) {
+        long start = System.nanoTime();
         DownloadDirnameDao dao = sDaoSession.getDownloadDirnameDao();
         DownloadDirname raw = dao.load(gid);
+        GET_DOWNLOAD_DIRNAME_TIMER.stop(start);
         if (raw != null) {
             return raw.getDirname();
         } else {
@@ -481,21 +608,36 @@ public class EhDB {
         dao.delete(raw);
     }
 
-    public static synchronized List<GalleryInfo> getAllLocalFavorites() {
+    /**
+     * Returns a page of local favorites, the latest first. It's read
+     * through the TIME index, so only rows of the page are loaded.
+     */
+    public static synchronized List<GalleryInfo> getLocalFavorites(int page, int pageSize) {
+        long start = System.nanoTime();
         LocalFavoritesDao dao = sDaoSession.getLocalFavoritesDao();
-        List<LocalFavoriteInfo> list = dao.queryBuilder().orderDesc(LocalFavoritesDao.Properties.Time).list();
+        List<LocalFavoriteInfo> list = dao.queryBuilder().orderDesc(LocalFavoritesDao.Properties.Time)
+                .limit(pageSize).offset(page * pageSize).list();
         List<GalleryInfo> result = new ArrayList<>();
         result.addAll(list);
+        GET_LOCAL_FAVORITES_TIMER.stop(start);
         return result;
     }
 
+    public static synchronized long getLocalFavoritesCount() {
+        return sDaoSession.getLocalFavoritesDao().count();
+    }
+
+    /**
+     * Searches title, japanese title and uploader, the best matched first.
+     */
     public static synchronized List<GalleryInfo> searchLocalFavorites(String query) {
-        query = SqlUtils.sqlEscapeString("%" + query+ "%");
-        LocalFavoritesDao dao = sDaoSession.getLocalFavoritesDao();
-        List<LocalFavoriteInfo> list = dao.queryBuilder().orderDesc(LocalFavoritesDao.Properties.Time)
-                .where(LocalFavoritesDao.Properties.Title.like(query)).list();
+        long start = System.nanoTime();
+        List<Long> gids = SearchIndex.search(sDaoSession.getDatabase(), LocalFavoritesDao.TABLENAME, query);
+        List<LocalFavoriteInfo> list = loadInOrder(sDaoSession.getLocalFavoritesDao(),
+                LocalFavoritesDao.Properties.Gid, gids);
         List<GalleryInfo> result = new ArrayList<>();
         result.addAll(list);
+        SEARCH_TIMER.stop(start);
         return result;
     }
 
@@ -504,15 +646,19 @@ public class EhDB {
     }
 
     public static synchronized void removeLocalFavorites(long[] gidArray) {
-        LocalFavoritesDao dao = sDaoSession.getLocalFavoritesDao();
+        List<Long> keys = new ArrayList<>(gidArray.length);
         for (long gid: gidArray) {
-            dao.deleteByKey(gid);
+            keys.add(gid);
         }
+        sDaoSession.getLocalFavoritesDao().deleteByKeyInTx(keys);
     }
 
     public static synchronized boolean containLocalFavorites(long gid) {
+        long start = System.nanoTime();
         LocalFavoritesDao dao = sDaoSession.getLocalFavoritesDao();
-        return null != dao.load(gid);
+        boolean contain = null != dao.load(gid);
+        CONTAIN_LOCAL_FAVORITES_TIMER.stop(start);
+        return contain;
     }
 
     public static synchronized void putLocalFavorites(GalleryInfo galleryInfo) {
@@ -529,12 +675,68 @@ public class EhDB {
         }
     }
 
-    public static synchronized void putLocalFavorites(List<GalleryInfo> galleryInfoList) {
+    public static synchronized void putLocalFavorites(List<? extends GalleryInfo> galleryInfoList) {
+        LocalFavoritesDao dao = sDaoSession.getLocalFavoritesDao();
+
+        List<Long> keys = new ArrayList<>(galleryInfoList.size());
         for (GalleryInfo gi: galleryInfoList) {
-            putLocalFavorites(gi);
+            keys.add(gi.gid);
+        }
+        Set<Long> existing = queryExistingKeys(sDaoSession.getDatabase(), LocalFavoritesDao.TABLENAME,
+                LocalFavoritesDao.Properties.Gid.columnName, keys);
+
+        long time = System.currentTimeMillis();
+        List<LocalFavoriteInfo> list = new ArrayList<>(galleryInfoList.size());
+        for (GalleryInfo gi: galleryInfoList) {
+            // Skip the stored ones and duplicate ones
+            if (!existing.add(gi.gid)) {
+                continue;
+            }
+            LocalFavoriteInfo info;
+            if (gi instanceof LocalFavoriteInfo) {
+                info = (LocalFavoriteInfo) gi;
+            } else {
+                info = new LocalFavoriteInfo(gi);
+                // Keep the order as putting them one by one
+                info.time = time++;
+            }
+            list.add(info);
+        }
+
+        if (!list.isEmpty()) {
+            dao.insertInTx(list);
         }
     }
 
+    /**
+     * Returns the keys in {@code keys} which are stored in the table.
+     */
+    private static Set<Long> queryExistingKeys(SQLiteDatabase db, String table, String column, List<Long> keys) {
+        Set<Long> result = new HashSet<>();
+        for (int start = 0, size = keys.size(); start < size; start += MAX_IN_ARGS) {
+            int end = Math.min(start + MAX_IN_ARGS, size);
+            StringBuilder sb = new StringBuilder();
+            sb.append("SELECT \"").append(column).append("\" FROM \"").append(table)
+                    .append("\" WHERE \"").append(column).append("\" IN (");
+            String[] args = new String[end - start];
+            for (int i = start; i < end; i++) {
+                sb.append(i == start ? "?" : ",?");
+                args[i - start] = Long.toString(keys.get(i));
+            }
+            sb.append(')');
+
+            Cursor cursor = db.rawQuery(sb.toString(), args);
+            try {
+                while (cursor.moveToNext()) {
+                    result.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return result;
+    }
+
     public static synchronized List<QuickSearch> getAllQuickSearch() {
         QuickSearchDao dao = sDaoSession.getQuickSearchDao();
         return dao.queryBuilder().orderAsc(QuickSearchDao.Properties.Time).list();
@@ -582,11 +784,23 @@ public class EhDB {
         dao.updateInTx(list);
     }
 
+    /**
+     * Searches title, japanese title and uploader, the best matched first.
+     */
+    public static synchronized List<HistoryInfo> searchHistoryInfo(String query) {
+        long start = System.nanoTime();
+        List<Long> gids = SearchIndex.search(sDaoSession.getDatabase(), HistoryDao.TABLENAME, query);
+        List<HistoryInfo> list = loadInOrder(sDaoSession.getHistoryDao(), HistoryDao.Properties.Gid, gids);
+        SEARCH_TIMER.stop(start);
+        return list;
+    }
+
     public static synchronized LazyList<HistoryInfo> getHistoryLazyList() {
         return sDaoSession.getHistoryDao().queryBuilder().orderDesc(HistoryDao.Properties.Time).listLazy();
     }
 
     public static synchronized void putHistoryInfo(GalleryInfo galleryInfo) {
+        long start = System.nanoTime();
         HistoryDao dao = sDaoSession.getHistoryDao();
         HistoryInfo info = dao.load(galleryInfo.gid);
         if (null != info) {
@@ -598,33 +812,63 @@ public class EhDB {
             info = new HistoryInfo(galleryInfo);
             info.time = System.currentTimeMillis();
             dao.insert(info);
-            List<HistoryInfo> list = dao.queryBuilder().orderDesc(HistoryDao.Properties.Time)
-                    .limit(-1).offset(MAX_HISTORY_COUNT).list();
-            dao.deleteInTx(list);
+            onHistoryInserted(dao, 1);
         }
+        PUT_HISTORY_INFO_TIMER.stop(start);
     }
 
     public static synchronized void putHistoryInfo(List<HistoryInfo> historyInfoList) {
         HistoryDao dao = sDaoSession.getHistoryDao();
+
+        List<Long> keys = new ArrayList<>(historyInfoList.size());
+        for (HistoryInfo info: historyInfoList) {
+            keys.add(info.gid);
+        }
+        Set<Long> existing = queryExistingKeys(sDaoSession.getDatabase(), HistoryDao.TABLENAME,
+                HistoryDao.Properties.Gid.columnName, keys);
+
+        List<HistoryInfo> list = new ArrayList<>(historyInfoList.size());
         for (HistoryInfo info: historyInfoList) {
-            if (null == dao.load(info.gid)) {
-                dao.insert(info);
+            if (existing.add(info.gid)) {
+                list.add(info);
             }
         }
 
-        List<HistoryInfo> list = dao.queryBuilder().orderDesc(HistoryDao.Properties.Time)
-                .limit(-1).offset(MAX_HISTORY_COUNT).list();
-        dao.deleteInTx(list);
+        if (!list.isEmpty()) {
+            dao.insertInTx(list);
+            onHistoryInserted(dao, list.size());
+        }
+    }
+
+    /**
+     * Only trim history when it's really too much, instead of querying after every insert.
+     */
+    private static void onHistoryInserted(HistoryDao dao, int count) {
+        if (sHistoryCount < 0) {
+            sHistoryCount = dao.count();
+        } else {
+            sHistoryCount += count;
+        }
+
+        if (sHistoryCount > MAX_HISTORY_COUNT) {
+            List<HistoryInfo> list = dao.queryBuilder().orderDesc(HistoryDao.Properties.Time)
+                    .limit(-1).offset(MAX_HISTORY_COUNT).list();
+            dao.deleteInTx(list);
+            sHistoryCount = MAX_HISTORY_COUNT;
+        }
     }
 
     public static synchronized void deleteHistoryInfo(HistoryInfo info) {
         HistoryDao dao = sDaoSession.getHistoryDao();
         dao.delete(info);
+        // Let it count again
+        sHistoryCount = -1;
     }
 
     public static synchronized void clearHistoryInfo() {
         HistoryDao dao = sDaoSession.getHistoryDao();
         dao.deleteAll();
+        sHistoryCount = 0;
     }
 
     public static synchronized List<Filter> getAllFilter() {
@@ -646,6 +890,8 @@ public class EhDB {
     }
 
     public static synchronized boolean exportDB(Context context, File file) {
+        flushDownloadInfo();
+
         File dbFile = context.getDatabasePath("eh.db");
         if (null == dbFile || !dbFile.isFile()) {
             return false;
@@ -730,9 +976,7 @@ public class EhDB {
 
             // LocalFavorites
             List<LocalFavoriteInfo> localFavoriteInfoList = session.getLocalFavoritesDao().queryBuilder().list();
-            for (LocalFavoriteInfo info: localFavoriteInfoList) {
-                putLocalFavorites(info);
-            }
+            putLocalFavorites(localFavoriteInfoList);
 
             // Bookmarks
             // TODO
@@ -753,4 +997,97 @@ public class EhDB {
             return context.getString(R.string.cant_read_the_file);
         }
     }
+
+    /**
+     * Collects download info updates and writes them in one transaction
+     * on the IO thread pool. The write is posted to the main thread first,
+     * so all updates made in one main thread loop, like stopping all
+     * downloads, go into one transaction.
+     */
+    private static class DownloadInfoWriter implements Runnable {
+
+        // Wait a bit before writing a failed batch again
+        private static final long RETRY_DELAY = 5000;
+
+        // gid -> latest snapshot
+        private final LinkedHashMap<Long, DownloadInfo> mPending = new LinkedHashMap<>();
+        private boolean mScheduled;
+
+        private final Runnable mScheduleTask = () -> IoThreadPoolExecutor.getInstance().execute(this);
+
+        void put(DownloadInfo info) {
+            // Copy it, the original one is changed on UI thread
+            DownloadInfo snapshot = new DownloadInfo(info);
+            snapshot.state = info.state;
+            snapshot.legacy = info.legacy;
+            snapshot.time = info.time;
+            snapshot.label = info.label;
+
+            synchronized (mPending) {
+                // Remove first to keep the order of the latest update
+                mPending.remove(info.gid);
+                mPending.put(info.gid, snapshot);
+                if (!mScheduled) {
+                    mScheduled = true;
+                    SimpleHandler.getInstance().post(mScheduleTask);
+                }
+            }
+        }
+
+        void cancel(long gid) {
+            synchronized (mPending) {
+                mPending.remove(gid);
+            }
+        }
+
+        void flush() {
+            // Take and write in EhDB lock, so that batches are written in order
+            synchronized (EhDB.class) {
+                List<DownloadInfo> list;
+                synchronized (mPending) {
+                    if (mPending.isEmpty()) {
+                        return;
+                    }
+                    list = new ArrayList<>(mPending.values());
+                    mPending.clear();
+                }
+                try {
+                    putDownloadInfo(list);
+                } catch (Throwable e) {
+                    ExceptionUtils.throwIfFatal(e);
+                    Log.e(TAG, "Can't write download info, retry later", e);
+                    requeue(list);
+                }
+            }
+        }
+
+        // Called in EhDB lock, so no download info is removed meanwhile
+        private void requeue(List<DownloadInfo> list) {
+            synchronized (mPending) {
+                // Newer snapshots put during the write win
+                LinkedHashMap<Long, DownloadInfo> pending = new LinkedHashMap<>();
+                for (DownloadInfo info : list) {
+                    pending.put(info.gid, info);
+                }
+                for (DownloadInfo info : mPending.values()) {
+                    pending.remove(info.gid);
+                    pending.put(info.gid, info);
+                }
+                mPending.clear();
+                mPending.putAll(pending);
+                if (!mScheduled) {
+                    mScheduled = true;
+                    SimpleHandler.getInstance().postDelayed(mScheduleTask, RETRY_DELAY);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (mPending) {
+                mScheduled = false;
+            }
+            flush();
+        }
+    }
 }
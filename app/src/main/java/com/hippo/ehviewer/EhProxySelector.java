@@ -66,11 +66,13 @@ public class EhProxySelector extends ProxySelector {
 
   @Override
   public List<Proxy> select(URI uri) {
-    int type = Settings.getProxyType();
+    // One snapshot, so type, ip and port always come from the same edit
+    Settings.Snapshot settings = Settings.getSnapshot();
+    int type = settings.proxyType;
     if (type == TYPE_HTTP || type == TYPE_SOCKS) {
       try {
-        String ip = Settings.getProxyIp();
-        int port = Settings.getProxyPort();
+        String ip = settings.proxyIp;
+        int port = settings.proxyPort;
         if (!TextUtils.isEmpty(ip) && InetValidator.isValidInetPort(port)) {
           InetAddress inetAddress = InetAddress.getByName(ip);
           SocketAddress socketAddress = new InetSocketAddress(inetAddress, port);
@@ -25,35 +25,81 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 import android.util.Pair;
 import androidx.annotation.Nullable;
 import com.hippo.database.MSQLiteBuilder;
+import com.hippo.util.ExceptionUtils;
+import com.hippo.util.IoThreadPoolExecutor;
 import com.hippo.util.SqlUtils;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Host-ip pairs for {@link com.hippo.ehviewer.client.EhDns}.
+ * All pairs are kept in memory, changes are written to database
+ * in background.
+ */
 public class Hosts {
 
+  private static final String TAG = Hosts.class.getSimpleName();
+
   private static final int VERSION_1 = 1;
+  private static final int VERSION_2 = 2;
   private static final String TABLE_HOSTS = "HOSTS";
   private static final String COLUMN_HOST = "HOST";
   private static final String COLUMN_IP = "IP";
+  private static final String INDEX_HOST = "HOSTS_HOST";
 
-  private static final int DB_VERSION = VERSION_1;
+  private static final int DB_VERSION = VERSION_2;
 
   private final SQLiteOpenHelper helper;
   private final SQLiteDatabase db;
 
+  private final Map<String, Entry> map = new ConcurrentHashMap<>();
+
+  // host -> ip to write, null ip to delete
+  private final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+  private boolean scheduled;
+  private final Runnable writeTask = this::write;
+
   public Hosts(Context context, String name) {
     helper = new MSQLiteBuilder()
         .version(VERSION_1)
         .createTable(TABLE_HOSTS)
         .insertColumn(TABLE_HOSTS, COLUMN_HOST, String.class)
         .insertColumn(TABLE_HOSTS, COLUMN_IP, String.class)
+        .version(VERSION_2)
+        // Keep the latest one of duplicate hosts
+        .statement("DELETE FROM " + TABLE_HOSTS + " WHERE " + MSQLiteBuilder.COLUMN_ID + " NOT IN"
+            + " (SELECT MAX(" + MSQLiteBuilder.COLUMN_ID + ") FROM " + TABLE_HOSTS
+            + " GROUP BY " + COLUMN_HOST + ");")
+        .statement("CREATE UNIQUE INDEX " + INDEX_HOST + " ON " + TABLE_HOSTS + " (" + COLUMN_HOST + ");")
         .build(context, name, DB_VERSION);
     db = helper.getWritableDatabase();
+
+    Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_HOSTS + ";", null);
+    try {
+      while (cursor.moveToNext()) {
+        String host = SqlUtils.getString(cursor, COLUMN_HOST, null);
+        String ip = SqlUtils.getString(cursor, COLUMN_IP, null);
+
+        InetAddress inetAddress = toInetAddress(host, ip);
+        if (inetAddress == null) {
+          continue;
+        }
+
+        map.put(host, new Entry(ip, inetAddress));
+      }
+    } finally {
+      cursor.close();
+    }
   }
 
   /**
@@ -65,46 +111,20 @@ public class Hosts {
       return null;
     }
 
-    Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_HOSTS + " WHERE " + COLUMN_HOST  + " = ?;", new String[] {host});
-    try {
-      if (cursor.moveToNext()) {
-        String ip = SqlUtils.getString(cursor, COLUMN_IP, null);
-        return toInetAddress(host, ip);
-      } else {
-        return null;
-      }
-    } finally {
-      cursor.close();
-    }
-  }
-
-  private boolean contains(String host) {
-    Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_HOSTS + " WHERE " + COLUMN_HOST  + " = ?;", new String[] {host});
-    try {
-      return cursor.moveToNext();
-    } finally {
-      cursor.close();
-    }
+    Entry entry = map.get(host);
+    return entry != null ? entry.inetAddress : null;
   }
 
   /**
    * Puts the host-ip pair into this hosts.
    */
   public boolean put(String host, String ip) {
-    if (!isValidHost(host) || !isValidIp(ip)) {
+    InetAddress inetAddress = toInetAddress(host, ip);
+    if (inetAddress == null) {
       return false;
     }
 
-    ContentValues values = new ContentValues();
-    values.put(COLUMN_HOST, host);
-    values.put(COLUMN_IP, ip);
-
-    if (contains(host)) {
-      db.update(TABLE_HOSTS, values, COLUMN_HOST + " = ?", new String[] { host });
-    } else {
-      db.insert(TABLE_HOSTS, null, values);
-    }
-
+    change(host, new Entry(ip, inetAddress));
     return true;
   }
 
@@ -112,33 +132,88 @@ public class Hosts {
    * Puts delete the entry with the host.
    */
   public void delete(String host) {
-    db.delete(TABLE_HOSTS, COLUMN_HOST + " = ?", new String[] { host });
+    if (host == null) {
+      return;
+    }
+
+    change(host, null);
   }
 
   /**
-   * Get all data from this host.
+   * Get all data from this host, sorted by host.
    */
   public List<Pair<String, String>> getAll() {
-    List<Pair<String, String>> result = new ArrayList<>();
+    List<Pair<String, String>> result = new ArrayList<>(map.size());
+    for (Map.Entry<String, Entry> entry : map.entrySet()) {
+      result.add(new Pair<>(entry.getKey(), entry.getValue().ip));
+    }
+    Collections.sort(result, (o1, o2) -> o1.first.compareTo(o2.first));
+    return result;
+  }
 
-    Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_HOSTS + ";", null);
-    try {
-      while (cursor.moveToNext()) {
-        String host = SqlUtils.getString(cursor, COLUMN_HOST, null);
-        String ip = SqlUtils.getString(cursor, COLUMN_IP, null);
+  private void change(String host, @Nullable Entry entry) {
+    // Change memory and queue the write together, so they always agree
+    synchronized (pending) {
+      if (entry != null) {
+        map.put(host, entry);
+      } else {
+        map.remove(host);
+      }
+      // Remove first to keep the order of the latest change
+      pending.remove(host);
+      pending.put(host, entry != null ? entry.ip : null);
+      if (!scheduled) {
+        scheduled = true;
+        IoThreadPoolExecutor.getInstance().execute(writeTask);
+      }
+    }
+  }
 
-        InetAddress inetAddress = toInetAddress(host, ip);
-        if (inetAddress == null) {
-          continue;
+  private void write() {
+    synchronized (pending) {
+      scheduled = false;
+    }
+    flush();
+  }
+
+  /**
+   * Writes pending changes to database now.
+   */
+  void flush() {
+    // Take and write in db lock, so that batches are written in order
+    synchronized (db) {
+      List<Map.Entry<String, String>> list;
+      synchronized (pending) {
+        if (pending.isEmpty()) {
+          return;
         }
+        list = new ArrayList<>(pending.entrySet());
+        pending.clear();
+      }
 
-        result.add(new Pair<>(host, ip));
+      db.beginTransaction();
+      try {
+        for (Map.Entry<String, String> entry : list) {
+          String host = entry.getKey();
+          String ip = entry.getValue();
+          if (ip != null) {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_HOST, host);
+            values.put(COLUMN_IP, ip);
+            // The unique index on host makes it an upsert
+            db.insertWithOnConflict(TABLE_HOSTS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+          } else {
+            db.delete(TABLE_HOSTS, COLUMN_HOST + " = ?", new String[] { host });
+          }
+        }
+        db.setTransactionSuccessful();
+      } catch (Throwable e) {
+        ExceptionUtils.throwIfFatal(e);
+        Log.e(TAG, "Can't write hosts", e);
+      } finally {
+        db.endTransaction();
       }
-    } finally {
-      cursor.close();
     }
-
-    return result;
   }
 
   @Nullable
@@ -347,4 +422,15 @@ public class Hosts {
 
     return data;
   }
+
+  private static class Entry {
+
+    private final String ip;
+    private final InetAddress inetAddress;
+
+    Entry(String ip, InetAddress inetAddress) {
+      this.ip = ip;
+      this.inetAddress = inetAddress;
+    }
+  }
 }
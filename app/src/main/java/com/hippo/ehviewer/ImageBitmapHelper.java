@@ -22,16 +22,29 @@ import com.hippo.conaco.ValueHelper;
 import com.hippo.image.ImageBitmap;
 import com.hippo.streampipe.InputStreamPipe;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ImageBitmapHelper implements ValueHelper<ImageBitmap> {
 
-    private static final int MAX_CACHE_SIZE = 512 * 512;
+    // ImageBitmap always renders to ARGB_8888
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int MAX_CACHE_BYTE_COUNT = 512 * 512 * BYTES_PER_PIXEL;
+
+    private final AtomicInteger mCacheCount = new AtomicInteger();
+    private final AtomicLong mCacheByteCount = new AtomicLong();
+    private final AtomicInteger mDecodeCount = new AtomicInteger();
+
+    public static int getByteCount(@NonNull ImageBitmap value) {
+        return value.getWidth() * value.getHeight() * BYTES_PER_PIXEL;
+    }
 
     @Nullable
     @Override
     public ImageBitmap decode(@NonNull InputStreamPipe isPipe) {
         try {
             isPipe.obtain();
+            mDecodeCount.incrementAndGet();
             return ImageBitmap.decode(isPipe.open());
         } catch (OutOfMemoryError e) {
             return null;
@@ -45,26 +58,40 @@ public class ImageBitmapHelper implements ValueHelper<ImageBitmap> {
 
     @Override
     public int sizeOf(@NonNull String key, @NonNull ImageBitmap value) {
-        return value.getWidth() * value.getHeight() * 4 /* value.getByteCount() TODO Update Image */;
+        return getByteCount(value);
     }
 
     @Override
     public void onAddToMemoryCache(@NonNull ImageBitmap oldValue) {
         oldValue.obtain();
+        mCacheCount.incrementAndGet();
+        mCacheByteCount.addAndGet(getByteCount(oldValue));
     }
 
     @Override
     public void onRemoveFromMemoryCache(@NonNull String key, @NonNull ImageBitmap oldValue) {
+        mCacheCount.decrementAndGet();
+        mCacheByteCount.addAndGet(-getByteCount(oldValue));
         oldValue.release();
     }
 
     @Override
     public boolean useMemoryCache(@NonNull String key, ImageBitmap value) {
         if (value != null) {
-            return value.getWidth() * value.getHeight() <= MAX_CACHE_SIZE
-                    /* value.getByteCount() <= MAX_CACHE_BYTE_COUNT TODO Update Image */;
+            return getByteCount(value) <= MAX_CACHE_BYTE_COUNT;
         } else {
             return true;
         }
     }
+
+    /**
+     * Returns a one-line summary of decode and cache statistics,
+     * used to watch the memory cache while flinging gallery lists.
+     */
+    @NonNull
+    public String dumpStats() {
+        return "decoded=" + mDecodeCount.get()
+                + " cached=" + mCacheCount.get()
+                + " cachedBytes=" + mCacheByteCount.get();
+    }
 }
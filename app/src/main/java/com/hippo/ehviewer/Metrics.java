@@ -0,0 +1,233 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer;
+
+import androidx.annotation.NonNull;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters, histograms and timers of the application, to see where time goes.
+ * <p>
+ * Histograms keep the latest samples in a ring buffer of longs,
+ * percentiles are computed from them only when dumped.
+ * Get a metric once and keep it in a static field, recording is cheap.
+ */
+public final class Metrics {
+
+  // Samples kept for percentiles
+  private static final int WINDOW = 256;
+
+  private static final ConcurrentHashMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+  private Metrics() {}
+
+  @NonNull
+  public static Counter counter(@NonNull String name) {
+    Counter counter = COUNTERS.get(name);
+    if (counter == null) {
+      counter = new Counter();
+      Counter old = COUNTERS.putIfAbsent(name, counter);
+      if (old != null) {
+        counter = old;
+      }
+    }
+    return counter;
+  }
+
+  @NonNull
+  public static Histogram histogram(@NonNull String name) {
+    Histogram histogram = HISTOGRAMS.get(name);
+    if (histogram == null) {
+      histogram = new Histogram(WINDOW);
+      Histogram old = HISTOGRAMS.putIfAbsent(name, histogram);
+      if (old != null) {
+        histogram = old;
+      }
+    }
+    return histogram;
+  }
+
+  @NonNull
+  public static Timer timer(@NonNull String name) {
+    Timer timer = TIMERS.get(name);
+    if (timer == null) {
+      timer = new Timer(WINDOW);
+      Timer old = TIMERS.putIfAbsent(name, timer);
+      if (old != null) {
+        timer = old;
+      }
+    }
+    return timer;
+  }
+
+  /**
+   * @return all metrics sorted by name, one in a line
+   */
+  @NonNull
+  public static String dump() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Counter> entry : new TreeMap<>(COUNTERS).entrySet()) {
+      sb.append("counter ").append(entry.getKey()).append(' ')
+          .append(entry.getValue().get()).append('\n');
+    }
+    for (Map.Entry<String, Timer> entry : new TreeMap<>(TIMERS).entrySet()) {
+      sb.append("timer ").append(entry.getKey()).append(' ')
+          .append(entry.getValue().histogram.format(1000000.0, "ms")).append('\n');
+    }
+    for (Map.Entry<String, Histogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+      sb.append("histogram ").append(entry.getKey()).append(' ')
+          .append(entry.getValue().format(1.0, "")).append('\n');
+    }
+    return sb.toString();
+  }
+
+  public static final class Counter {
+
+    private final AtomicLong value = new AtomicLong();
+
+    private Counter() {}
+
+    public void inc() {
+      value.incrementAndGet();
+    }
+
+    public void add(long delta) {
+      value.addAndGet(delta);
+    }
+
+    public long get() {
+      return value.get();
+    }
+  }
+
+  public static final class Histogram {
+
+    // Guarded by this
+    private final long[] samples;
+    private int next;
+    private long count;
+    private long sum;
+    private long max = Long.MIN_VALUE;
+
+    Histogram(int window) {
+      samples = new long[window];
+    }
+
+    public synchronized void record(long value) {
+      samples[next] = value;
+      next = (next + 1) % samples.length;
+      count++;
+      sum += value;
+      max = Math.max(max, value);
+    }
+
+    public synchronized long getCount() {
+      return count;
+    }
+
+    /**
+     * @param percentile in (0, 1]
+     * @return the percentile of the latest samples, 0 if there is no sample
+     */
+    public long getPercentile(double percentile) {
+      long[] sorted = getSortedSamples();
+      return percentile(sorted, percentile);
+    }
+
+    private synchronized long[] getSortedSamples() {
+      long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+      Arrays.sort(sorted);
+      return sorted;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(percentile * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    String format(double scale, String unit) {
+      long count;
+      long sum;
+      long max;
+      synchronized (this) {
+        count = this.count;
+        sum = this.sum;
+        max = this.max;
+      }
+      if (count == 0) {
+        return "count=0";
+      }
+      long[] sorted = getSortedSamples();
+      return String.format(Locale.US,
+          "count=%d mean=%.1f%s p50=%.1f%s p90=%.1f%s p99=%.1f%s max=%.1f%s",
+          count, sum / scale / count, unit,
+          percentile(sorted, 0.5) / scale, unit,
+          percentile(sorted, 0.9) / scale, unit,
+          percentile(sorted, 0.99) / scale, unit,
+          max / scale, unit);
+    }
+  }
+
+  /**
+   * A histogram of durations in nanoseconds. Use it like:
+   * <pre>
+   * long start = System.nanoTime();
+   * doSomething();
+   * TIMER.stop(start);
+   * </pre>
+   */
+  public static final class Timer {
+
+    private final Histogram histogram;
+
+    private Timer(int window) {
+      histogram = new Histogram(window);
+    }
+
+    /**
+     * Records the time from {@code start}, a value of {@link System#nanoTime()}.
+     *
+     * @return now, to start another phase
+     */
+    public long stop(long start) {
+      long now = System.nanoTime();
+      histogram.record(now - start);
+      return now;
+    }
+
+    public long getCount() {
+      return histogram.getCount();
+    }
+
+    /**
+     * @see Histogram#getPercentile(double)
+     */
+    public long getPercentile(double percentile) {
+      return histogram.getPercentile(percentile);
+    }
+  }
+}
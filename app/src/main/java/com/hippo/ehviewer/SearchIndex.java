@@ -0,0 +1,253 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * FTS4 index of gallery tables. Each gallery table gets its own
+ * virtual table, which docid is the gid. Triggers keep it in sync,
+ * so greenDAO needs no change.
+ */
+final class SearchIndex {
+
+    // The columns all gallery tables share with GalleryInfo
+    private static final String COLUMN_GID = "GID";
+    private static final String COLUMN_TITLE = "TITLE";
+    private static final String COLUMN_TITLE_JPN = "TITLE_JPN";
+    private static final String COLUMN_UPLOADER = "UPLOADER";
+    private static final String COLUMN_TIME = "TIME";
+
+    // Weight of TITLE, TITLE_JPN and UPLOADER
+    private static final float[] COLUMN_WEIGHTS = {3.0f, 3.0f, 1.0f};
+
+    private SearchIndex() {}
+
+    static String getIndexTable(String table) {
+        return table + "_FTS";
+    }
+
+    /**
+     * Creates the index and the triggers, and fills it with current rows.
+     */
+    static void create(SQLiteDatabase db, String table) {
+        String fts = getIndexTable(table);
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS \"" + fts + "\" USING fts4("
+                + COLUMN_TITLE + ", " + COLUMN_TITLE_JPN + ", " + COLUMN_UPLOADER + ");");
+
+        String values = "new." + COLUMN_GID + ", new." + COLUMN_TITLE
+                + ", new." + COLUMN_TITLE_JPN + ", new." + COLUMN_UPLOADER;
+        String insert = "INSERT INTO \"" + fts + "\" (docid, " + COLUMN_TITLE + ", "
+                + COLUMN_TITLE_JPN + ", " + COLUMN_UPLOADER + ") VALUES (" + values + ");";
+
+        // INSERT OR REPLACE doesn't fire delete trigger, so always delete first
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS \"" + fts + "_AI\" AFTER INSERT ON \"" + table + "\" BEGIN "
+                + "DELETE FROM \"" + fts + "\" WHERE docid = new." + COLUMN_GID + "; "
+                + insert + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS \"" + fts + "_AU\" AFTER UPDATE OF "
+                + COLUMN_GID + ", " + COLUMN_TITLE + ", " + COLUMN_TITLE_JPN + ", " + COLUMN_UPLOADER
+                + " ON \"" + table + "\" BEGIN "
+                + "DELETE FROM \"" + fts + "\" WHERE docid = old." + COLUMN_GID + "; "
+                + insert + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS \"" + fts + "_AD\" AFTER DELETE ON \"" + table + "\" BEGIN "
+                + "DELETE FROM \"" + fts + "\" WHERE docid = old." + COLUMN_GID + "; END;");
+
+        db.execSQL("DELETE FROM \"" + fts + "\";");
+        db.execSQL("INSERT INTO \"" + fts + "\" (docid, " + COLUMN_TITLE + ", " + COLUMN_TITLE_JPN
+                + ", " + COLUMN_UPLOADER + ") SELECT " + COLUMN_GID + ", " + COLUMN_TITLE + ", "
+                + COLUMN_TITLE_JPN + ", " + COLUMN_UPLOADER + " FROM \"" + table + "\";");
+    }
+
+    private static boolean isSpecialChar(char c) {
+        return c == '"' || c == '*' || c == '(' || c == ')' || c == ':' || c == '-' || c == '^';
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    }
+
+    /**
+     * The simple tokenizer can't split CJK text into words,
+     * so the index can't find a part of them.
+     */
+    static boolean needLikeQuery(@NonNull String query) {
+        for (int i = 0, n = query.length(); i < n; i++) {
+            if (isCjk(query.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts user input to a FTS query. Every word is a prefix query,
+     * and all words must match.
+     *
+     * @return null if no word in the query
+     */
+    @Nullable
+    static String buildMatchQuery(@NonNull String query) {
+        StringBuilder sb = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0, n = query.length(); i <= n; i++) {
+            char c = i < n ? query.charAt(i) : ' ';
+            if (Character.isWhitespace(c) || isSpecialChar(c)) {
+                if (word.length() > 0) {
+                    if (sb.length() > 0) {
+                        sb.append(' ');
+                    }
+                    sb.append('"').append(word).append("*\"");
+                    word.setLength(0);
+                }
+            } else {
+                word.append(c);
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    /**
+     * Scores a row by matchinfo(fts, 'pcnx').
+     */
+    static float score(@NonNull byte[] matchInfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phraseCount = buffer.getInt();
+        int columnCount = buffer.getInt();
+        int rowCount = buffer.getInt();
+        float score = 0.0f;
+        for (int i = 0; i < phraseCount; i++) {
+            for (int j = 0; j < columnCount; j++) {
+                int hitsThisRow = buffer.getInt();
+                buffer.getInt(); // Hits all rows
+                int rowsWithHits = buffer.getInt();
+                if (hitsThisRow > 0) {
+                    float idf = (float) Math.log(1.0 + (double) rowCount / Math.max(1, rowsWithHits));
+                    float weight = j < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[j] : 1.0f;
+                    score += weight * hitsThisRow * idf;
+                }
+            }
+        }
+        return score;
+    }
+
+    private static class Hit implements Comparable<Hit> {
+
+        final long gid;
+        final float score;
+
+        Hit(long gid, float score) {
+            this.gid = gid;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(@NonNull Hit o) {
+            return Float.compare(o.score, score);
+        }
+    }
+
+    /**
+     * Returns gids of the rows which match the query, the best first.
+     * Rows with the same score are newest first.
+     */
+    @NonNull
+    static List<Long> search(SQLiteDatabase db, String table, @NonNull String query) {
+        query = query.trim();
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        if (needLikeQuery(query)) {
+            return searchLike(db, table, query);
+        }
+
+        String match = buildMatchQuery(query);
+        if (match == null) {
+            return Collections.emptyList();
+        }
+
+        String fts = getIndexTable(table);
+        String sql = "SELECT T." + COLUMN_GID + ", matchinfo(\"" + fts + "\", 'pcnx') FROM \""
+                + fts + "\" JOIN \"" + table + "\" T ON T." + COLUMN_GID + " = \"" + fts + "\".docid"
+                + " WHERE \"" + fts + "\" MATCH ? ORDER BY T." + COLUMN_TIME + " DESC";
+        List<Hit> hits = new ArrayList<>();
+        Cursor cursor = db.rawQuery(sql, new String[] {match});
+        try {
+            while (cursor.moveToNext()) {
+                hits.add(new Hit(cursor.getLong(0), score(cursor.getBlob(1))));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // Stable, so the time order is kept for the same score
+        Collections.sort(hits);
+
+        List<Long> result = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            result.add(hit.gid);
+        }
+        return result;
+    }
+
+    private static String escapeLike(String query) {
+        StringBuilder sb = new StringBuilder(query.length() + 2);
+        sb.append('%');
+        for (int i = 0, n = query.length(); i < n; i++) {
+            char c = query.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        sb.append('%');
+        return sb.toString();
+    }
+
+    @NonNull
+    private static List<Long> searchLike(SQLiteDatabase db, String table, @NonNull String query) {
+        String like = escapeLike(query);
+        String sql = "SELECT " + COLUMN_GID + " FROM \"" + table + "\" WHERE "
+                + COLUMN_TITLE + " LIKE ? ESCAPE '\\' OR "
+                + COLUMN_TITLE_JPN + " LIKE ? ESCAPE '\\' OR "
+                + COLUMN_UPLOADER + " LIKE ? ESCAPE '\\' ORDER BY " + COLUMN_TIME + " DESC";
+        List<Long> result = new ArrayList<>();
+        Cursor cursor = db.rawQuery(sql, new String[] {like, like, like});
+        try {
+            while (cursor.moveToNext()) {
+                result.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+}
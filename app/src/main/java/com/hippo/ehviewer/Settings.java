@@ -46,14 +46,70 @@ public class Settings {
     private static Context sContext;
     private static SharedPreferences sSettingsPre;
     private static EhConfig sEhConfig;
+    private static volatile Snapshot sSnapshot;
+    // SharedPreferences only keeps a weak reference to listeners
+    private static final SharedPreferences.OnSharedPreferenceChangeListener sSnapshotUpdater =
+            (sharedPreferences, key) -> updateSnapshot();
 
     public static void initialize(Context context) {
         sContext = context.getApplicationContext();
         sSettingsPre = PreferenceManager.getDefaultSharedPreferences(sContext);
         sEhConfig = loadEhConfig();
+        updateSnapshot();
+        sSettingsPre.registerOnSharedPreferenceChangeListener(sSnapshotUpdater);
         fixDefaultValue(context);
     }
 
+    /**
+     * Settings read per request, per page or per list item, parsed once.
+     * It's immutable, a new one is built when any setting changes.
+     * Get it once to read several settings which must agree with each other.
+     */
+    public static final class Snapshot {
+
+        public final int gallerySite;
+        public final int thumbResolution;
+        public final boolean fixThumbUrl;
+        public final boolean showJpnTitle;
+        public final boolean showGalleryPages;
+        public final boolean showTagTranslations;
+        public final int multiThreadDownload;
+        public final int preloadImage;
+        public final boolean downloadOriginImage;
+        public final int hedgeStallMultiple;
+        public final boolean builtInHosts;
+        public final int proxyType;
+        public final String proxyIp;
+        public final int proxyPort;
+
+        private Snapshot() {
+            gallerySite = getIntFromStr(KEY_GALLERY_SITE, DEFAULT_GALLERY_SITE);
+            thumbResolution = getIntFromStr(KEY_THUMB_RESOLUTION, DEFAULT_THUMB_RESOLUTION);
+            fixThumbUrl = getBoolean(KEY_FIX_THUMB_URL, DEFAULT_FIX_THUMB_URL);
+            showJpnTitle = getBoolean(KEY_SHOW_JPN_TITLE, DEFAULT_SHOW_JPN_TITLE);
+            showGalleryPages = getBoolean(KEY_SHOW_GALLERY_PAGES, DEFAULT_SHOW_GALLERY_PAGES);
+            showTagTranslations = getBoolean(KEY_SHOW_TAG_TRANSLATIONS, DEFAULT_SHOW_TAG_TRANSLATIONS);
+            multiThreadDownload = getIntFromStr(KEY_MULTI_THREAD_DOWNLOAD, DEFAULT_MULTI_THREAD_DOWNLOAD);
+            preloadImage = getIntFromStr(KEY_PRELOAD_IMAGE, DEFAULT_PRELOAD_IMAGE);
+            downloadOriginImage = getBoolean(KEY_DOWNLOAD_ORIGIN_IMAGE, DEFAULT_DOWNLOAD_ORIGIN_IMAGE);
+            hedgeStallMultiple = getIntFromStr(KEY_HEDGE_STALL_MULTIPLE, DEFAULT_HEDGE_STALL_MULTIPLE);
+            builtInHosts = getBoolean(KEY_BUILT_IN_HOSTS, DEFAULT_BUILT_IN_HOSTS);
+            proxyType = getInt(KEY_PROXY_TYPE, DEFAULT_PROXY_TYPE);
+            proxyIp = getString(KEY_PROXY_IP, DEFAULT_PROXY_IP);
+            proxyPort = getInt(KEY_PROXY_PORT, DEFAULT_PROXY_PORT);
+        }
+    }
+
+    @NonNull
+    public static Snapshot getSnapshot() {
+        return sSnapshot;
+    }
+
+    // Synchronized, so a snapshot built from older values can't replace a newer one
+    private static synchronized void updateSnapshot() {
+        sSnapshot = new Snapshot();
+    }
+
     private static void fixDefaultValue(Context context) {
         // Enable builtin hosts if the country is CN
         if (!sSettingsPre.contains(KEY_BUILT_IN_HOSTS)) {
@@ -84,6 +140,7 @@ public class Settings {
 
     public static void putBoolean(String key, boolean value) {
         sSettingsPre.edit().putBoolean(key, value).apply();
+        updateSnapshot();
     }
 
     public static int getInt(String key, int defValue) {
@@ -97,6 +154,7 @@ public class Settings {
 
     public static void putInt(String key, int value) {
         sSettingsPre.edit().putInt(key, value).apply();
+        updateSnapshot();
     }
 
     public static long getLong(String key, long defValue) {
@@ -110,6 +168,7 @@ public class Settings {
 
     public static void putLong(String key, long value) {
         sSettingsPre.edit().putLong(key, value).apply();
+        updateSnapshot();
     }
 
     public static float getFloat(String key, float defValue) {
@@ -123,6 +182,7 @@ public class Settings {
 
     public static void putFloat(String key, float value) {
         sSettingsPre.edit().putFloat(key, value).apply();
+        updateSnapshot();
     }
 
     public static String getString(String key, String defValue) {
@@ -136,6 +196,7 @@ public class Settings {
 
     public static void putString(String key, String value) {
         sSettingsPre.edit().putString(key, value).apply();
+        updateSnapshot();
     }
 
     public static int getIntFromStr(String key, int defValue) {
@@ -149,6 +210,7 @@ public class Settings {
 
     public static void putIntToStr(String key, int value) {
         sSettingsPre.edit().putString(key, Integer.toString(value)).apply();
+        updateSnapshot();
     }
 
     private static final String KEY_VERSION_CODE = "version_code";
@@ -272,7 +334,7 @@ public class Settings {
     private static final int DEFAULT_GALLERY_SITE = 1;
 
     public static int getGallerySite() {
-        return getIntFromStr(KEY_GALLERY_SITE, DEFAULT_GALLERY_SITE);
+        return sSnapshot.gallerySite;
     }
 
     public static void putGallerySite(int value) {
@@ -344,35 +406,35 @@ public class Settings {
     private static final int DEFAULT_THUMB_RESOLUTION = 0;
 
     public static int getThumbResolution() {
-        return getIntFromStr(KEY_THUMB_RESOLUTION, DEFAULT_THUMB_RESOLUTION);
+        return sSnapshot.thumbResolution;
     }
 
     private static final String KEY_FIX_THUMB_URL = "fix_thumb_url";
     private static final boolean DEFAULT_FIX_THUMB_URL = false;
 
     public static boolean getFixThumbUrl() {
-        return getBoolean(KEY_FIX_THUMB_URL, DEFAULT_FIX_THUMB_URL);
+        return sSnapshot.fixThumbUrl;
     }
 
     private static final String KEY_SHOW_JPN_TITLE = "show_jpn_title";
     private static final boolean DEFAULT_SHOW_JPN_TITLE = false;
 
     public static boolean getShowJpnTitle() {
-        return getBoolean(KEY_SHOW_JPN_TITLE, DEFAULT_SHOW_JPN_TITLE);
+        return sSnapshot.showJpnTitle;
     }
 
     private static final String KEY_SHOW_GALLERY_PAGES = "show_gallery_pages";
     private static final boolean DEFAULT_SHOW_GALLERY_PAGES = false;
 
     public static boolean getShowGalleryPages() {
-        return getBoolean(KEY_SHOW_GALLERY_PAGES, DEFAULT_SHOW_GALLERY_PAGES);
+        return sSnapshot.showGalleryPages;
     }
 
     public static final String KEY_SHOW_TAG_TRANSLATIONS = "show_tag_translations";
     private static final boolean DEFAULT_SHOW_TAG_TRANSLATIONS = false;
 
     public static boolean getShowTagTranslations() {
-        return getBoolean(KEY_SHOW_TAG_TRANSLATIONS, DEFAULT_SHOW_TAG_TRANSLATIONS);
+        return sSnapshot.showTagTranslations;
     }
 
     public static final String KEY_DEFAULT_CATEGORIES = "default_categories";
@@ -548,6 +610,17 @@ public class Settings {
         putBoolean(KEY_READING_FULLSCREEN, value);
     }
 
+    private static final String KEY_DOWNSAMPLE_PAGES = "downsample_pages";
+    private static final boolean DEFAULT_DOWNSAMPLE_PAGES = false;
+
+    public static boolean getDownsamplePages() {
+        return getBoolean(KEY_DOWNSAMPLE_PAGES, DEFAULT_DOWNSAMPLE_PAGES);
+    }
+
+    public static void putDownsamplePages(boolean value) {
+        putBoolean(KEY_DOWNSAMPLE_PAGES, value);
+    }
+
     private static final String KEY_CUSTOM_SCREEN_LIGHTNESS = "custom_screen_lightness";
     private static final boolean DEFAULT_CUSTOM_SCREEN_LIGHTNESS = false;
 
@@ -669,7 +742,7 @@ public class Settings {
     private static final int DEFAULT_MULTI_THREAD_DOWNLOAD = 3;
 
     public static int getMultiThreadDownload() {
-        return getIntFromStr(KEY_MULTI_THREAD_DOWNLOAD, DEFAULT_MULTI_THREAD_DOWNLOAD);
+        return sSnapshot.multiThreadDownload;
     }
 
     public static void putMultiThreadDownload(int value) {
@@ -680,7 +753,7 @@ public class Settings {
     private static final int DEFAULT_PRELOAD_IMAGE = 5;
 
     public static int getPreloadImage() {
-        return getIntFromStr(KEY_PRELOAD_IMAGE, DEFAULT_PRELOAD_IMAGE);
+        return sSnapshot.preloadImage;
     }
 
     public static void putPreloadImage(int value) {
@@ -704,13 +777,29 @@ public class Settings {
     private static final boolean DEFAULT_DOWNLOAD_ORIGIN_IMAGE = false;
 
     public static boolean getDownloadOriginImage() {
-        return getBoolean(KEY_DOWNLOAD_ORIGIN_IMAGE, DEFAULT_DOWNLOAD_ORIGIN_IMAGE);
+        return sSnapshot.downloadOriginImage;
     }
 
     public static void putDownloadOriginImage(boolean value) {
         putBoolean(KEY_DOWNLOAD_ORIGIN_IMAGE, value);
     }
 
+    private static final String KEY_HEDGE_STALL_MULTIPLE = "hedge_stall_multiple";
+    private static final int DEFAULT_HEDGE_STALL_MULTIPLE = 4;
+
+    /**
+     * A page the reader waits for is requested from another server too,
+     * if it stalls this many times the usual latency of its server.
+     * 0 for never.
+     */
+    public static int getHedgeStallMultiple() {
+        return sSnapshot.hedgeStallMultiple;
+    }
+
+    public static void putHedgeStallMultiple(int value) {
+        putIntToStr(KEY_HEDGE_STALL_MULTIPLE, value);
+    }
+
     /********************
      ****** Favorites
      ********************/
@@ -1017,7 +1106,7 @@ public class Settings {
     private static final boolean DEFAULT_BUILT_IN_HOSTS = false;
 
     public static boolean getBuiltInHosts() {
-        return getBoolean(KEY_BUILT_IN_HOSTS, DEFAULT_BUILT_IN_HOSTS);
+        return sSnapshot.builtInHosts;
     }
 
     public static void putBuiltInHosts(boolean value) {
@@ -1039,7 +1128,7 @@ public class Settings {
     private static final int DEFAULT_PROXY_TYPE = EhProxySelector.TYPE_SYSTEM;
 
     public static int getProxyType() {
-        return getInt(KEY_PROXY_TYPE, DEFAULT_PROXY_TYPE);
+        return sSnapshot.proxyType;
     }
 
     public static void putProxyType(int value) {
@@ -1050,7 +1139,7 @@ public class Settings {
     private static final String DEFAULT_PROXY_IP = null;
 
     public static String getProxyIp() {
-        return getString(KEY_PROXY_IP, DEFAULT_PROXY_IP);
+        return sSnapshot.proxyIp;
     }
 
     public static void putProxyIp(String value) {
@@ -1061,13 +1150,25 @@ public class Settings {
     private static final int DEFAULT_PROXY_PORT = -1;
 
     public static int getProxyPort() {
-        return getInt(KEY_PROXY_PORT, DEFAULT_PROXY_PORT);
+        return sSnapshot.proxyPort;
     }
 
     public static void putProxyPort(int value) {
         putInt(KEY_PROXY_PORT, value);
     }
 
+    /**
+     * Writes type, ip and port in one edit, so the snapshot never has some of them changed.
+     */
+    public static void putProxy(int type, String ip, int port) {
+        sSettingsPre.edit()
+                .putInt(KEY_PROXY_TYPE, type)
+                .putString(KEY_PROXY_IP, ip)
+                .putInt(KEY_PROXY_PORT, port)
+                .apply();
+        updateSnapshot();
+    }
+
     /********************
      ****** Guide
      ********************/
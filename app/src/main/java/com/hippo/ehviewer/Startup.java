@@ -0,0 +1,230 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs initializers of the application in stages.
+ * <p>
+ * {@link #STAGE_MAIN} ones run in {@link #start()}, before the first frame.
+ * {@link #STAGE_BACKGROUND} ones run one by one in the executor after that.
+ * {@link #STAGE_LAZY} ones run on first use. Call {@link #ensure(String)}
+ * before using what an initializer sets up, it runs the initializer in the
+ * calling thread if it hasn't run, or waits for it.
+ * <p>
+ * Dependencies of an initializer run before it. They must be added before it,
+ * so there is no cycle.
+ * <p>
+ * The thread and the time of each initializer are kept in a trace,
+ * see {@link #dump()}.
+ */
+public final class Startup {
+
+  @IntDef({STAGE_MAIN, STAGE_BACKGROUND, STAGE_LAZY})
+  @Retention(RetentionPolicy.SOURCE)
+  public @interface Stage {}
+
+  public static final int STAGE_MAIN = 0;
+  public static final int STAGE_BACKGROUND = 1;
+  public static final int STAGE_LAZY = 2;
+
+  private static final String[] STAGE_NAMES = {"main", "background", "lazy"};
+
+  private final Executor executor;
+  private final long startTime = System.nanoTime();
+
+  // Guards tasks and started
+  private final Object lock = new Object();
+  private final Map<String, Task> tasks = new LinkedHashMap<>();
+  private boolean started;
+
+  private final List<Record> trace = new ArrayList<>();
+
+  /**
+   * @param executor runs {@link #STAGE_BACKGROUND} initializers
+   */
+  public Startup(@NonNull Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Adds an initializer. Background ones must be added before {@link #start()}.
+   *
+   * @param dependencies names of initializers added before
+   */
+  public void add(@NonNull String name, @Stage int stage, @NonNull Runnable runnable,
+      @NonNull String... dependencies) {
+    synchronized (lock) {
+      if (tasks.containsKey(name)) {
+        throw new IllegalArgumentException("Duplicate initializer: " + name);
+      }
+      if (started && stage != STAGE_LAZY) {
+        throw new IllegalStateException("Started, only lazy initializer can be added: " + name);
+      }
+      Task[] depTasks = new Task[dependencies.length];
+      for (int i = 0; i < dependencies.length; i++) {
+        depTasks[i] = tasks.get(dependencies[i]);
+        if (depTasks[i] == null) {
+          throw new IllegalArgumentException("Unknown dependency " + dependencies[i] + " of " + name);
+        }
+      }
+      tasks.put(name, new Task(name, stage, runnable, depTasks));
+    }
+  }
+
+  /**
+   * Runs main initializers in the calling thread, then background
+   * initializers in the executor.
+   */
+  public void start() {
+    List<Task> main = new ArrayList<>();
+    final List<Task> background = new ArrayList<>();
+    synchronized (lock) {
+      if (started) {
+        throw new IllegalStateException("Started");
+      }
+      started = true;
+      for (Task task : tasks.values()) {
+        if (task.stage == STAGE_MAIN) {
+          main.add(task);
+        } else if (task.stage == STAGE_BACKGROUND) {
+          background.add(task);
+        }
+      }
+    }
+
+    for (Task task : main) {
+      task.run();
+    }
+    if (!background.isEmpty()) {
+      executor.execute(() -> {
+        for (Task task : background) {
+          task.run();
+        }
+      });
+    }
+  }
+
+  /**
+   * Runs the initializer and its dependencies if they haven't run.
+   * If they are running in another thread, waits for them.
+   */
+  public void ensure(@NonNull String name) {
+    Task task;
+    synchronized (lock) {
+      task = tasks.get(name);
+    }
+    if (task == null) {
+      throw new IllegalArgumentException("Unknown initializer: " + name);
+    }
+    task.run();
+  }
+
+  public boolean isDone(@NonNull String name) {
+    Task task;
+    synchronized (lock) {
+      task = tasks.get(name);
+    }
+    return task != null && task.isDone();
+  }
+
+  /**
+   * @return initializers in the order they ran, with stage, thread,
+   * start time since this startup and time taken
+   */
+  @NonNull
+  public String dump() {
+    StringBuilder sb = new StringBuilder();
+    synchronized (trace) {
+      for (Record record : trace) {
+        sb.append(String.format(Locale.US, "%s [%s] %s +%dms %dms\n",
+            record.name, STAGE_NAMES[record.stage], record.thread,
+            record.start / 1000000, record.duration / 1000000));
+      }
+    }
+    return sb.toString();
+  }
+
+  private class Task {
+
+    private final String name;
+    private final int stage;
+    private final Runnable runnable;
+    private final Task[] dependencies;
+    // Guarded by this
+    private boolean done;
+
+    private Task(String name, int stage, Runnable runnable, Task[] dependencies) {
+      this.name = name;
+      this.stage = stage;
+      this.runnable = runnable;
+      this.dependencies = dependencies;
+    }
+
+    private synchronized boolean isDone() {
+      return done;
+    }
+
+    // Dependencies are added before, so locks are always taken from
+    // later tasks to earlier ones, no deadlock
+    private synchronized void run() {
+      if (done) {
+        return;
+      }
+      for (Task dependency : dependencies) {
+        dependency.run();
+      }
+
+      long start = System.nanoTime();
+      runnable.run();
+      long end = System.nanoTime();
+      done = true;
+
+      synchronized (trace) {
+        trace.add(new Record(name, stage, Thread.currentThread().getName(),
+            start - startTime, end - start));
+      }
+    }
+  }
+
+  private static class Record {
+
+    private final String name;
+    private final int stage;
+    private final String thread;
+    private final long start;
+    private final long duration;
+
+    private Record(String name, int stage, String thread, long start, long duration) {
+      this.name = name;
+      this.stage = stage;
+      this.thread = thread;
+      this.start = start;
+      this.duration = duration;
+    }
+  }
+}
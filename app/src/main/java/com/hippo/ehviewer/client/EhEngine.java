@@ -22,6 +22,7 @@ import android.util.Pair;
 import androidx.annotation.Nullable;
 import com.hippo.ehviewer.AppConfig;
 import com.hippo.ehviewer.GetText;
+import com.hippo.ehviewer.Metrics;
 import com.hippo.ehviewer.R;
 import com.hippo.ehviewer.Settings;
 import com.hippo.ehviewer.client.data.GalleryCommentList;
@@ -84,6 +85,11 @@ public class EhEngine {
 
     public static EhFilter sEhFilter;
 
+    // From sending a request to reading its body
+    private static final Metrics.Timer REQUEST_TIMER = Metrics.timer("engine.request");
+    private static final Metrics.Timer PARSE_TIMER = Metrics.timer("engine.parse");
+    private static final Metrics.Counter FAILURE_COUNTER = Metrics.counter("engine.failure");
+
     public static void initialize() {
         sEhFilter = EhFilter.getInstance();
     }
@@ -128,11 +134,17 @@ public class EhEngine {
         try {
             doThrowException(call, code, headers, body, e);
         } catch (Throwable error) {
+            FAILURE_COUNTER.inc();
             error.printStackTrace();
             throw error;
         }
     }
 
+    private static <T> T onParsed(long start, T result) {
+        PARSE_TIMER.stop(start);
+        return result;
+    }
+
     public static String signIn(@Nullable EhClient.Task task, OkHttpClient okHttpClient,
             String username, String password, String recaptchaChallenge, String recaptchaResponse) throws Throwable {
         FormBody.Builder builder = new FormBody.Builder()
@@ -163,11 +175,13 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return SignInParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            return onParsed(start, SignInParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -244,11 +258,13 @@ public class EhEngine {
         GalleryListParser.Result result;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            result = GalleryListParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            result = onParsed(start, GalleryListParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -307,11 +323,14 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
+            start = REQUEST_TIMER.stop(start);
             GalleryApiParser.parse(body, galleryInfoList);
+            PARSE_TIMER.stop(start);
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -335,11 +354,13 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return GalleryDetailParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            return onParsed(start, GalleryDetailParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -364,12 +385,14 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return Pair.create(GalleryDetailParser.parsePreviewSet(body),
-                    GalleryDetailParser.parsePreviewPages(body));
+            start = REQUEST_TIMER.stop(start);
+            return onParsed(start, Pair.create(GalleryDetailParser.parsePreviewSet(body),
+                    GalleryDetailParser.parsePreviewPages(body)));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -406,11 +429,13 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return RateGalleryParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            return onParsed(start, RateGalleryParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -443,10 +468,12 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
+            start = REQUEST_TIMER.stop(start);
             Document document = Jsoup.parse(body);
 
             Elements elements = document.select("#chd + p");
@@ -454,7 +481,7 @@ public class EhEngine {
                 throw new EhException(elements.get(0).text());
             }
 
-            return GalleryDetailParser.parseComments(document);
+            return onParsed(start, GalleryDetailParser.parseComments(document));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -487,11 +514,13 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return GalleryTokenApiParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            return onParsed(start, GalleryTokenApiParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -516,11 +545,13 @@ public class EhEngine {
         FavoritesParser.Result result;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            result = FavoritesParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            result = onParsed(start, FavoritesParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -569,10 +600,12 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
+            REQUEST_TIMER.stop(start);
             throwException(call, code, headers, body, null);
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
@@ -625,11 +658,13 @@ public class EhEngine {
         FavoritesParser.Result result;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            result = FavoritesParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            result = onParsed(start, FavoritesParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -658,11 +693,13 @@ public class EhEngine {
         Pair<String, String>[] result;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            result = TorrentParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            result = onParsed(start, TorrentParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -689,11 +726,13 @@ public class EhEngine {
         Pair<String, Pair<String, String>[]> result;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            result = ArchiveParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            result = onParsed(start, ArchiveParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -731,10 +770,12 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
+            REQUEST_TIMER.stop(start);
             throwException(call, code, headers, body, null);
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
@@ -765,11 +806,13 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return ProfileParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            return onParsed(start, ProfileParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -793,11 +836,13 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return getProfileInternal(task, okHttpClient, ForumsParser.parse(body), url);
+            start = REQUEST_TIMER.stop(start);
+            return getProfileInternal(task, okHttpClient, onParsed(start, ForumsParser.parse(body)), url);
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -834,11 +879,13 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return VoteCommentParser.parse(body, commentVote);
+            start = REQUEST_TIMER.stop(start);
+            return onParsed(start, VoteCommentParser.parse(body, commentVote));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -898,6 +945,7 @@ public class EhEngine {
         GalleryListParser.Result result;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
 
             Log.d(TAG, "" + response.request().url().toString());
@@ -905,7 +953,8 @@ public class EhEngine {
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            result = GalleryListParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            result = onParsed(start, GalleryListParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -933,11 +982,13 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return GalleryPageParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            return onParsed(start, GalleryPageParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
@@ -975,11 +1026,13 @@ public class EhEngine {
         Headers headers = null;
         int code = -1;
         try {
+            long start = System.nanoTime();
             Response response = call.execute();
             code = response.code();
             headers = response.headers();
             body = response.body().string();
-            return GalleryPageApiParser.parse(body);
+            start = REQUEST_TIMER.stop(start);
+            return onParsed(start, GalleryPageApiParser.parse(body));
         } catch (Throwable e) {
             ExceptionUtils.throwIfFatal(e);
             throwException(call, code, headers, body, e);
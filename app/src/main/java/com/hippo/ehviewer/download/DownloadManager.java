@@ -18,11 +18,14 @@ package com.hippo.ehviewer.download;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.hippo.ehviewer.EhDB;
+import com.hippo.ehviewer.Settings;
 import com.hippo.ehviewer.client.data.GalleryInfo;
 import com.hippo.ehviewer.dao.DownloadInfo;
 import com.hippo.ehviewer.dao.DownloadLabel;
@@ -33,14 +36,13 @@ import com.hippo.image.Image;
 import com.hippo.unifile.UniFile;
 import com.hippo.util.IoThreadPoolExecutor;
 import com.hippo.yorozuya.ConcurrentPool;
-import com.hippo.yorozuya.MathUtils;
 import com.hippo.yorozuya.ObjectUtils;
 import com.hippo.yorozuya.SimpleHandler;
 import com.hippo.yorozuya.collect.LongList;
-import com.hippo.yorozuya.collect.SparseIJArray;
 import com.hippo.yorozuya.collect.SparseJLArray;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -53,22 +55,30 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
 
     private static final String TAG = DownloadManager.class.getSimpleName();
 
+    private static final String STATS_PREFERENCES = "download_stats";
+    // Save stats every few ticks, in case the process is killed
+    private static final int STATS_SAVE_INTERVAL = 15;
+
     private final Context mContext;
 
-    // All download info list
-    private final LinkedList<DownloadInfo> mAllInfoList;
+    // All download info list, sorted by time desc
+    private final ArrayList<DownloadInfo> mAllInfoList;
     // All download info map
     private final SparseJLArray<DownloadInfo> mAllInfoMap;
-    // label and info list map, without default label info list
-    private final Map<String, LinkedList<DownloadInfo>> mMap;
+    // label and info list map, without default label info list, sorted by time desc
+    private final Map<String, ArrayList<DownloadInfo>> mMap;
     // All labels without default label
     private final List<DownloadLabel> mLabelList;
-    // Store download info with default label
-    private final LinkedList<DownloadInfo> mDefaultInfoList;
+    // Store download info with default label, sorted by time desc
+    private final ArrayList<DownloadInfo> mDefaultInfoList;
     // Store download info wait to start
     private final LinkedList<DownloadInfo> mWaitList;
 
     private final SpeedReminder mSpeedReminder;
+    // Written by spider workers, read by the speed reminder
+    private final DownloadProgress mProgress = new DownloadProgress();
+    // Download stats of each task, keyed by gid
+    private final SharedPreferences mStatsPreferences;
 
     @Nullable
     private DownloadListener mDownloadListener;
@@ -83,24 +93,25 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
 
     public DownloadManager(Context context) {
         mContext = context;
+        mStatsPreferences = context.getSharedPreferences(STATS_PREFERENCES, Context.MODE_PRIVATE);
 
         // Get all labels
         List<DownloadLabel> labels = EhDB.getAllDownloadLabelList();
         mLabelList = labels;
 
         // Create list for each label
-        HashMap<String, LinkedList<DownloadInfo>> map = new HashMap<>();
+        HashMap<String, ArrayList<DownloadInfo>> map = new HashMap<>();
         mMap = map;
         for (DownloadLabel label : labels) {
-            map.put(label.getLabel(), new LinkedList<DownloadInfo>());
+            map.put(label.getLabel(), new ArrayList<DownloadInfo>());
         }
 
         // Create default for non tag
-        mDefaultInfoList = new LinkedList<>();
+        mDefaultInfoList = new ArrayList<>();
 
-        // Get all info
+        // Get all info, it's sorted by time desc
         List<DownloadInfo> allInfoList = EhDB.getAllDownloadInfo();
-        mAllInfoList = new LinkedList<>(allInfoList);
+        mAllInfoList = new ArrayList<>(allInfoList);
 
         // Create all info map
         SparseJLArray<DownloadInfo> allInfoMap = new SparseJLArray<>(allInfoList.size() + 10);
@@ -113,10 +124,10 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
             allInfoMap.put(info.gid, info);
 
             // Add to each label list
-            LinkedList<DownloadInfo> list = getInfoListForLabel(info.label);
+            ArrayList<DownloadInfo> list = getInfoListForLabel(info.label);
             if (list == null) {
                 // Can't find the label in label list
-                list = new LinkedList<>();
+                list = new ArrayList<>();
                 map.put(info.label, list);
                 if (!containLabel(info.label)) {
                     // Add label to DB and list
@@ -132,7 +143,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
     }
 
     @Nullable
-    private LinkedList<DownloadInfo> getInfoListForLabel(String label) {
+    private ArrayList<DownloadInfo> getInfoListForLabel(String label) {
         if (label == null) {
             return mDefaultInfoList;
         } else {
@@ -220,9 +231,9 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
             info.downloaded = 0;
             info.legacy = -1;
             // Update in DB
-            EhDB.putDownloadInfo(info);
+            EhDB.putDownloadInfoAsync(info);
             // Start speed count
-            mSpeedReminder.start();
+            mSpeedReminder.start(info.gid);
             // Notify start downloading
             if (mDownloadListener != null) {
                 mDownloadListener.onStart(info);
@@ -252,7 +263,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                 // Add to wait list
                 mWaitList.add(info);
                 // Update in DB
-                EhDB.putDownloadInfo(info);
+                EhDB.putDownloadInfoAsync(info);
                 // Notify state update
                 List<DownloadInfo> list = getInfoListForLabel(info.label);
                 if (list != null) {
@@ -271,22 +282,22 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
             info.time = System.currentTimeMillis();
 
             // Add to label download list
-            LinkedList<DownloadInfo> list = getInfoListForLabel(info.label);
+            ArrayList<DownloadInfo> list = getInfoListForLabel(info.label);
             if (list == null) {
                 Log.e(TAG, "Can't find download info list with label: " + label);
                 return;
             }
-            list.addFirst(info);
+            list.add(0, info);
 
             // Add to all download list and map
-            mAllInfoList.addFirst(info);
+            mAllInfoList.add(0, info);
             mAllInfoMap.put(galleryInfo.gid, info);
 
             // Add to wait list
             mWaitList.add(info);
 
             // Save to
-            EhDB.putDownloadInfo(info);
+            EhDB.putDownloadInfoAsync(info);
 
             // Notify
             for (DownloadInfoListener l: mDownloadInfoListeners) {
@@ -320,7 +331,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                 // Add to wait list
                 mWaitList.add(info);
                 // Update in DB
-                EhDB.putDownloadInfo(info);
+                EhDB.putDownloadInfoAsync(info);
             }
         }
 
@@ -337,7 +348,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
     void startAllDownload() {
         boolean update = false;
         // Start all STATE_NONE and STATE_FAILED item
-        LinkedList<DownloadInfo> allInfoList = mAllInfoList;
+        List<DownloadInfo> allInfoList = mAllInfoList;
         LinkedList<DownloadInfo> waitList = mWaitList;
         for (DownloadInfo info: allInfoList) {
             if (info.state == DownloadInfo.STATE_NONE || info.state == DownloadInfo.STATE_FAILED) {
@@ -347,7 +358,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                 // Add to wait list
                 waitList.add(info);
                 // Update in DB
-                EhDB.putDownloadInfo(info);
+                EhDB.putDownloadInfoAsync(info);
             }
         }
 
@@ -375,31 +386,26 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
             }
 
             // Add to label download list
-            LinkedList<DownloadInfo> list = getInfoListForLabel(info.label);
+            ArrayList<DownloadInfo> list = getInfoListForLabel(info.label);
             if (null == list) {
                 // Can't find the label in label list
-                list = new LinkedList<>();
+                list = new ArrayList<>();
                 mMap.put(info.label, list);
                 if (!containLabel(info.label)) {
                     // Add label to DB and list
                     mLabelList.add(EhDB.addDownloadLabel(info.label));
                 }
             }
-            list.add(info);
-            // Sort
-            Collections.sort(list, DATE_DESC_COMPARATOR);
+            insertSorted(list, info);
 
             // Add to all download list and map
-            mAllInfoList.add(info);
+            insertSorted(mAllInfoList, info);
             mAllInfoMap.put(info.gid, info);
 
             // Save to
-            EhDB.putDownloadInfo(info);
+            EhDB.putDownloadInfoAsync(info);
         }
 
-        // Sort all download list
-        Collections.sort(mAllInfoList, DATE_DESC_COMPARATOR);
-
         // Notify
         for (DownloadInfoListener l: mDownloadInfoListeners) {
             l.onReload();
@@ -410,7 +416,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         for (DownloadLabel label: downloadLabelList) {
             String labelString = label.getLabel();
             if (!containLabel(labelString)) {
-                mMap.put(labelString, new LinkedList<DownloadInfo>());
+                mMap.put(labelString, new ArrayList<DownloadInfo>());
                 mLabelList.add(EhDB.addDownloadLabel(label));
             }
         }
@@ -429,19 +435,19 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         info.time = System.currentTimeMillis();
 
         // Add to label download list
-        LinkedList<DownloadInfo> list = getInfoListForLabel(info.label);
+        ArrayList<DownloadInfo> list = getInfoListForLabel(info.label);
         if (list == null) {
             Log.e(TAG, "Can't find download info list with label: " + label);
             return;
         }
-        list.addFirst(info);
+        list.add(0, info);
 
         // Add to all download list and map
-        mAllInfoList.addFirst(info);
+        mAllInfoList.add(0, info);
         mAllInfoMap.put(galleryInfo.gid, info);
 
         // Save to
-        EhDB.putDownloadInfo(info);
+        EhDB.putDownloadInfoAsync(info);
 
         // Notify
         for (DownloadInfoListener l: mDownloadInfoListeners) {
@@ -497,7 +503,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         for (DownloadInfo info : mWaitList) {
             info.state = DownloadInfo.STATE_NONE;
             // Update in DB
-            EhDB.putDownloadInfo(info);
+            EhDB.putDownloadInfoAsync(info);
         }
         mWaitList.clear();
 
@@ -516,13 +522,14 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         if (info != null) {
             // Remove from DB
             EhDB.removeDownloadInfo(info.gid);
+            mStatsPreferences.edit().remove(Long.toString(info.gid)).apply();
 
             // Remove all list and map
             mAllInfoList.remove(info);
             mAllInfoMap.remove(info.gid);
 
             // Remove label list
-            LinkedList<DownloadInfo> list = getInfoListForLabel(info.label);
+            ArrayList<DownloadInfo> list = getInfoListForLabel(info.label);
             if (list != null) {
                 int index = list.indexOf(info);
                 if (index >= 0) {
@@ -542,6 +549,8 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
     public void deleteRangeDownload(LongList gidList) {
         stopRangeDownloadInternal(gidList);
 
+        long[] gidArray = new long[gidList.size()];
+        int count = 0;
         for (int i = 0, n = gidList.size(); i < n; i++) {
             long gid = gidList.get(i);
             DownloadInfo info = mAllInfoMap.get(gid);
@@ -550,20 +559,29 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                 continue;
             }
 
-            // Remove from DB
-            EhDB.removeDownloadInfo(info.gid);
+            gidArray[count++] = info.gid;
 
             // Remove from all info map
             mAllInfoList.remove(info);
             mAllInfoMap.remove(info.gid);
 
             // Remove from label list
-            LinkedList<DownloadInfo> list = getInfoListForLabel(info.label);
+            ArrayList<DownloadInfo> list = getInfoListForLabel(info.label);
             if (list != null) {
                 list.remove(info);
             }
         }
 
+        // Remove from DB in one transaction
+        if (count > 0) {
+            EhDB.removeDownloadInfo(count == gidArray.length ? gidArray : Arrays.copyOf(gidArray, count));
+            SharedPreferences.Editor editor = mStatsPreferences.edit();
+            for (int i = 0; i < count; i++) {
+                editor.remove(Long.toString(gidArray[i]));
+            }
+            editor.apply();
+        }
+
         // Update listener
         for (DownloadInfoListener l: mDownloadInfoListeners) {
             l.onReload();
@@ -575,7 +593,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
 
     @SuppressLint("StaticFieldLeak")
     public void resetAllReadingProgress() {
-        LinkedList<DownloadInfo> list = new LinkedList<>(mAllInfoList);
+        List<DownloadInfo> list = new ArrayList<>(mAllInfoList);
 
         new AsyncTask<Void, Void, Void>() {
             @Override
@@ -634,7 +652,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                 // Update state
                 info.state = DownloadInfo.STATE_NONE;
                 // Update in DB
-                EhDB.putDownloadInfo(info);
+                EhDB.putDownloadInfoAsync(info);
                 return info;
             }
         }
@@ -662,7 +680,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         // Update state
         info.state = DownloadInfo.STATE_NONE;
         // Update in DB
-        EhDB.putDownloadInfo(info);
+        EhDB.putDownloadInfoAsync(info);
         // Listener
         if (mDownloadListener != null) {
             mDownloadListener.onCancel(info);
@@ -694,7 +712,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                     // Update state
                     info.state = DownloadInfo.STATE_NONE;
                     // Update in DB
-                    EhDB.putDownloadInfo(info);
+                    EhDB.putDownloadInfoAsync(info);
                 }
             }
         }
@@ -709,7 +727,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
             return;
         }
 
-        List<DownloadInfo> dstList = getInfoListForLabel(label);
+        ArrayList<DownloadInfo> dstList = getInfoListForLabel(label);
         if (dstList == null) {
             Log.e(TAG, "Can't find label with label: " + label);
             return;
@@ -727,12 +745,11 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
             }
 
             srcList.remove(info);
-            dstList.add(info);
+            insertSorted(dstList, info);
             info.label = label;
-            Collections.sort(dstList, DATE_DESC_COMPARATOR);
 
             // Save to DB
-            EhDB.putDownloadInfo(info);
+            EhDB.putDownloadInfoAsync(info);
         }
 
         for (DownloadInfoListener l: mDownloadInfoListeners) {
@@ -746,7 +763,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         }
 
         mLabelList.add(EhDB.addDownloadLabel(label));
-        mMap.put(label, new LinkedList<DownloadInfo>());
+        mMap.put(label, new ArrayList<DownloadInfo>());
 
         for (DownloadInfoListener l: mDownloadInfoListeners) {
             l.onUpdateLabels();
@@ -779,7 +796,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
             return;
         }
 
-        LinkedList<DownloadInfo> list = mMap.remove(from);
+        ArrayList<DownloadInfo> list = mMap.remove(from);
         if (list == null) {
             return;
         }
@@ -788,7 +805,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         for (DownloadInfo info: list) {
             info.label = to;
             // Update in DB
-            EhDB.putDownloadInfo(info);
+            EhDB.putDownloadInfoAsync(info);
         }
         // Put list back with new label
         mMap.put(to, list);
@@ -815,7 +832,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
             return;
         }
 
-        LinkedList<DownloadInfo> list = mMap.remove(label);
+        ArrayList<DownloadInfo> list = mMap.remove(label);
         if (list == null) {
             return;
         }
@@ -824,13 +841,10 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         for (DownloadInfo info: list) {
             info.label = null;
             // Update in DB
-            EhDB.putDownloadInfo(info);
-            mDefaultInfoList.add(info);
+            EhDB.putDownloadInfoAsync(info);
+            insertSorted(mDefaultInfoList, info);
         }
 
-        // Sort
-        Collections.sort(mDefaultInfoList, DATE_DESC_COMPARATOR);
-
         // Notify listener
         for (DownloadInfoListener l: mDownloadInfoListeners) {
             l.onChange();
@@ -863,16 +877,13 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
 
     @Override
     public void onPageDownload(int index, long contentLength, long receivedSize, int bytesRead) {
-        NotifyTask task = mNotifyTaskPool.pop();
-        if (task == null) {
-            task = new NotifyTask();
-        }
-        task.setOnPageDownloadData(index, contentLength, receivedSize, bytesRead);
-        SimpleHandler.getInstance().post(task);
+        // Called for every few KB, the speed reminder picks it up on its tick
+        mProgress.onProgress(index, contentLength, receivedSize, bytesRead);
     }
 
     @Override
     public void onPageSuccess(int index, int finished, int downloaded, int total) {
+        mProgress.onDone(index, true);
         NotifyTask task = mNotifyTaskPool.pop();
         if (task == null) {
             task = new NotifyTask();
@@ -883,6 +894,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
 
     @Override
     public void onPageFailure(int index, String error, int finished, int downloaded, int total) {
+        mProgress.onDone(index, false);
         NotifyTask task = mNotifyTaskPool.pop();
         if (task == null) {
             task = new NotifyTask();
@@ -911,11 +923,15 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         // Ignore
     }
 
+    @Override
+    public void onGetPreviews(int previewIndex) {
+        // Ignore
+    }
+
     private class NotifyTask implements Runnable {
 
         public static final int TYPE_ON_GET_PAGES = 0;
         public static final int TYPE_ON_GET_509 = 1;
-        public static final int TYPE_ON_PAGE_DOWNLOAD = 2;
         public static final int TYPE_ON_PAGE_SUCCESS = 3;
         public static final int TYPE_ON_PAGE_FAILURE = 4;
         public static final int TYPE_ON_FINISH = 5;
@@ -923,9 +939,6 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         private int mType;
         private int mPages;
         private int mIndex;
-        private long mContentLength;
-        private long mReceivedSize;
-        private int mBytesRead;
         @SuppressWarnings("unused")
         private String mError;
         private int mFinished;
@@ -942,14 +955,6 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
             mIndex = index;
         }
 
-        public void setOnPageDownloadData(int index, long contentLength, long receivedSize, int bytesRead) {
-            mType = TYPE_ON_PAGE_DOWNLOAD;
-            mIndex = index;
-            mContentLength = contentLength;
-            mReceivedSize = receivedSize;
-            mBytesRead = bytesRead;
-        }
-
         public void setOnPageSuccessData(int index, int finished, int downloaded, int total) {
             mType = TYPE_ON_PAGE_SUCCESS;
             mIndex = index;
@@ -998,12 +1003,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                     }
                     break;
                 }
-                case TYPE_ON_PAGE_DOWNLOAD: {
-                    mSpeedReminder.onDownload(mIndex, mContentLength, mReceivedSize, mBytesRead);
-                    break;
-                }
                 case TYPE_ON_PAGE_SUCCESS: {
-                    mSpeedReminder.onDone(mIndex);
                     DownloadInfo info = mCurrentTask;
                     if (info == null) {
                         Log.e(TAG, "Current task is null, but it should not be");
@@ -1024,7 +1024,6 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                     break;
                 }
                 case TYPE_ON_PAGE_FAILURE: {
-                    mSpeedReminder.onDone(mIndex);
                     DownloadInfo info = mCurrentTask;
                     if (info == null) {
                         Log.e(TAG, "Current task is null, but it should not be");
@@ -1042,7 +1041,8 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                     break;
                 }
                 case TYPE_ON_FINISH: {
-                    mSpeedReminder.onFinish();
+                    // Keep stats of pages done since the last tick
+                    mSpeedReminder.stop();
                     // Download done
                     DownloadInfo info = mCurrentTask;
                     mCurrentTask = null;
@@ -1058,8 +1058,6 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                         Log.e(TAG, "Current stuff is null, but it should not be");
                         break;
                     }
-                    // Stop speed count
-                    mSpeedReminder.stop();
                     // Update state
                     info.finished = mFinished;
                     info.downloaded = mDownloaded;
@@ -1071,7 +1069,7 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                         info.state = DownloadInfo.STATE_FAILED;
                     }
                     // Update in DB
-                    EhDB.putDownloadInfo(info);
+                    EhDB.putDownloadInfoAsync(info);
                     // Notify
                     if (mDownloadListener != null) {
                         mDownloadListener.onFinish(info);
@@ -1097,15 +1095,20 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
 
         private boolean mStop = true;
 
-        private long mBytesRead;
-        private long oldSpeed = -1;
-
-        private final SparseIJArray mContentLengthMap = new SparseIJArray();
-        private final SparseIJArray mReceivedSizeMap = new SparseIJArray();
+        private long mGid;
+        @Nullable
+        private DownloadStats mStats;
+        private long mLastTick;
+        private int mTicks;
 
-        public void start() {
+        public void start(long gid) {
             if (mStop) {
                 mStop = false;
+                mGid = gid;
+                mStats = DownloadStats.restore(
+                        mStatsPreferences.getString(Long.toString(gid), null), getResolution());
+                mLastTick = SystemClock.elapsedRealtime();
+                mTicks = 0;
                 SimpleHandler.getInstance().post(this);
             }
         }
@@ -1113,61 +1116,50 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         public void stop() {
             if (!mStop) {
                 mStop = true;
-                mBytesRead = 0;
-                oldSpeed = -1;
-                mContentLengthMap.clear();
-                mReceivedSizeMap.clear();
+                if (mStats != null) {
+                    mStats.onTick(0, mProgress.snapshot());
+                    saveStats();
+                    mStats = null;
+                }
+                mProgress.reset();
                 SimpleHandler.getInstance().removeCallbacks(this);
             }
         }
 
-        public void onDownload(int index, long contentLength, long receivedSize, int bytesRead) {
-            mContentLengthMap.put(index, contentLength);
-            mReceivedSizeMap.put(index, receivedSize);
-            mBytesRead += bytesRead;
+        private String getResolution() {
+            return Settings.getDownloadOriginImage() ? "org" : Settings.getImageResolution();
         }
 
-        public void onDone(int index) {
-            mContentLengthMap.delete(index);
-            mReceivedSizeMap.delete(index);
-        }
-
-        public void onFinish() {
-            mContentLengthMap.clear();
-            mReceivedSizeMap.clear();
+        private void saveStats() {
+            if (mStats != null) {
+                mStatsPreferences.edit().putString(Long.toString(mGid), mStats.save()).apply();
+            }
         }
 
         @Override
         public void run() {
+            // Take it even if there is no task, so the bytes don't go to the next tick
+            DownloadProgress.Snapshot progress = mProgress.snapshot();
+            long now = SystemClock.elapsedRealtime();
+            long duration = now - mLastTick;
+            mLastTick = now;
+
             DownloadInfo info = mCurrentTask;
-            if (info != null) {
-                long newSpeed = mBytesRead / 2;
-                if (oldSpeed != -1) {
-                    newSpeed = (long) MathUtils.lerp(oldSpeed, newSpeed, 0.75f);
-                }
-                oldSpeed = newSpeed;
-                info.speed = newSpeed;
+            DownloadStats stats = mStats;
+            if (info != null && stats != null) {
+                stats.onTick(duration, progress);
+                info.speed = stats.getSpeed();
 
-                // Calculate remaining
+                // Calculate remaining, shown only if it's reliable
                 if (info.total <= 0) {
                     info.remaining = -1;
-                } else if (newSpeed == 0) {
-                    info.remaining = 300L * 24L * 60L * 60L * 1000L; // 300 days
                 } else {
-                    int downloadingCount = 0;
-                    long downloadingContentLengthSum = 0;
-                    long totalSize = 0;
-                    for (int i = 0, n = Math.max(mContentLengthMap.size(), mReceivedSizeMap.size()); i < n; i++) {
-                        long contentLength = mContentLengthMap.valueAt(i);
-                        long receivedSize = mReceivedSizeMap.valueAt(i);
-                        downloadingCount++;
-                        downloadingContentLengthSum += contentLength;
-                        totalSize += contentLength - receivedSize;
-                    }
-                    if (downloadingCount != 0) {
-                        totalSize += downloadingContentLengthSum * (info.total - info.downloaded - downloadingCount) / downloadingCount;
-                        info.remaining = totalSize / newSpeed * 1000;
-                    }
+                    info.remaining = stats.estimate(info.total - info.downloaded, progress)
+                            .getConfidentRemaining();
+                }
+
+                if (++mTicks % STATS_SAVE_INTERVAL == 0) {
+                    saveStats();
                 }
                 if (mDownloadListener != null) {
                     mDownloadListener.onDownload(info);
@@ -1180,8 +1172,6 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
                 }
             }
 
-            mBytesRead = 0;
-
             if (!mStop) {
                 SimpleHandler.getInstance().postDelayed(this, 2000);
             }
@@ -1195,6 +1185,17 @@ public class DownloadManager implements SpiderQueen.OnSpiderListener {
         }
     };
 
+    /**
+     * Binary search the position in the list sorted by time desc, instead of sorting it again.
+     */
+    private static void insertSorted(ArrayList<DownloadInfo> list, DownloadInfo info) {
+        int index = Collections.binarySearch(list, info, DATE_DESC_COMPARATOR);
+        if (index < 0) {
+            index = -(index + 1);
+        }
+        list.add(index, info);
+    }
+
     public interface DownloadInfoListener {
 
         /**
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer.download;
+
+import androidx.annotation.NonNull;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects page download progress from spider workers without locks
+ * or messages, and hands it to the speed reminder once per tick.
+ * <p>
+ * Each worker thread writes to its own slot. The page fields of a slot
+ * are written in a seqlock, so a snapshot never mixes two pages.
+ * Sizes of downloaded pages are collected too, for {@link DownloadStats}.
+ */
+final class DownloadProgress {
+
+  private final ThreadLocal<Slot> localSlot = new ThreadLocal<>();
+  private final List<Slot> slots = new CopyOnWriteArrayList<>();
+  private volatile int generation;
+
+  // Only accessed by the thread taking snapshots
+  private long lastBytesRead;
+  private long lastCompletedPages;
+  private long lastCompletedBytes;
+  private double lastCompletedSquares;
+
+  private Slot getSlot() {
+    Slot slot = localSlot.get();
+    int generation = this.generation;
+    if (slot == null || slot.generation != generation) {
+      slot = new Slot(generation);
+      localSlot.set(slot);
+      slots.add(slot);
+    }
+    return slot;
+  }
+
+  /**
+   * Called by a worker thread when it gets some bytes of a page.
+   */
+  public void onProgress(int index, long contentLength, long receivedSize, int bytesRead) {
+    Slot slot = getSlot();
+    slot.seq++;
+    slot.index = index;
+    slot.contentLength = contentLength;
+    slot.receivedSize = receivedSize;
+    slot.seq++;
+    // Only this thread writes it
+    slot.bytesRead += bytesRead;
+  }
+
+  /**
+   * Called by a worker thread when a page is done, succeeded or failed.
+   */
+  public void onDone(int index, boolean success) {
+    Slot slot = localSlot.get();
+    if (slot != null && slot.generation == generation && slot.index == index) {
+      slot.seq++;
+      // A page won by a hedged request isn't read through here
+      if (success && slot.contentLength > 0 && slot.receivedSize >= slot.contentLength) {
+        long size = slot.receivedSize;
+        slot.completedPages++;
+        slot.completedBytes += size;
+        slot.completedSquares += (double) size * size;
+      }
+      slot.index = -1;
+      slot.contentLength = 0;
+      slot.receivedSize = 0;
+      slot.seq++;
+    }
+  }
+
+  /**
+   * Forgets all progress, for the download task is finished or stopped.
+   * Call it on the thread taking snapshots.
+   */
+  public void reset() {
+    generation++;
+    slots.clear();
+    lastBytesRead = 0;
+    lastCompletedPages = 0;
+    lastCompletedBytes = 0;
+    lastCompletedSquares = 0;
+  }
+
+  /**
+   * Returns progress since the last snapshot.
+   */
+  @NonNull
+  public Snapshot snapshot() {
+    long bytesRead = 0;
+    int downloadingCount = 0;
+    long contentLengthSum = 0;
+    long remainingSum = 0;
+    long completedPages = 0;
+    long completedBytes = 0;
+    double completedSquares = 0;
+
+    for (Slot slot : slots) {
+      bytesRead += slot.bytesRead;
+
+      int index;
+      long contentLength;
+      long receivedSize;
+      long pages;
+      long bytes;
+      double squares;
+      int seq;
+      do {
+        seq = slot.seq;
+        index = slot.index;
+        contentLength = slot.contentLength;
+        receivedSize = slot.receivedSize;
+        pages = slot.completedPages;
+        bytes = slot.completedBytes;
+        squares = slot.completedSquares;
+      } while ((seq & 1) != 0 || seq != slot.seq);
+
+      completedPages += pages;
+      completedBytes += bytes;
+      completedSquares += squares;
+
+      // Unknown length can't be estimated
+      if (index >= 0 && contentLength > 0) {
+        downloadingCount++;
+        contentLengthSum += contentLength;
+        remainingSum += Math.max(0, contentLength - receivedSize);
+      }
+    }
+
+    Snapshot snapshot = new Snapshot(bytesRead - lastBytesRead,
+        downloadingCount, contentLengthSum, remainingSum,
+        completedPages - lastCompletedPages, completedBytes - lastCompletedBytes,
+        completedSquares - lastCompletedSquares);
+    lastBytesRead = bytesRead;
+    lastCompletedPages = completedPages;
+    lastCompletedBytes = completedBytes;
+    lastCompletedSquares = completedSquares;
+    return snapshot;
+  }
+
+  static final class Snapshot {
+
+    // Bytes read since the last snapshot
+    final long bytesRead;
+    // Pages being downloaded with known length
+    final int downloadingCount;
+    final long contentLengthSum;
+    // Bytes left of pages being downloaded
+    final long remainingSum;
+    // Pages downloaded since the last snapshot, their size sum and size square sum
+    final long completedPages;
+    final long completedBytes;
+    final double completedSquares;
+
+    Snapshot(long bytesRead, int downloadingCount, long contentLengthSum, long remainingSum,
+        long completedPages, long completedBytes, double completedSquares) {
+      this.bytesRead = bytesRead;
+      this.downloadingCount = downloadingCount;
+      this.contentLengthSum = contentLengthSum;
+      this.remainingSum = remainingSum;
+      this.completedPages = completedPages;
+      this.completedBytes = completedBytes;
+      this.completedSquares = completedSquares;
+    }
+  }
+
+  private static final class Slot {
+
+    private final int generation;
+
+    // Odd while the page fields are being written
+    private volatile int seq;
+    private volatile int index = -1;
+    private volatile long contentLength;
+    private volatile long receivedSize;
+    private volatile long bytesRead;
+    private volatile long completedPages;
+    private volatile long completedBytes;
+    private volatile double completedSquares;
+
+    Slot(int generation) {
+      this.generation = generation;
+    }
+  }
+}
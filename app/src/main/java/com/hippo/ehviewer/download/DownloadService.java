@@ -32,6 +32,7 @@ import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import com.hippo.ehviewer.EhApplication;
+import com.hippo.ehviewer.EhDB;
 import com.hippo.ehviewer.R;
 import com.hippo.ehviewer.client.EhUtils;
 import com.hippo.ehviewer.client.data.GalleryInfo;
@@ -118,6 +119,9 @@ public class DownloadService extends Service implements DownloadManager.Download
     public void onDestroy() {
         super.onDestroy();
 
+        // Make sure all download states are on disk before the process may be killed
+        EhDB.flushDownloadInfo();
+
         mNotifyManager = null;
         if (mDownloadManager != null) {
             mDownloadManager.setDownloadListener(null);
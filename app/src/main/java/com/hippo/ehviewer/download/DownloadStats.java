@@ -0,0 +1,245 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer.download;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Throughput and page size statistics of a download task, and the
+ * estimated time left with its bounds.
+ * <p>
+ * Throughput is bytes over time of the last few ticks. Page size is
+ * learned from pages downloaded in the same resolution. Both can be
+ * saved, so a resumed task has an estimate from the first tick.
+ */
+final class DownloadStats {
+
+  // Ticks in the throughput window
+  private static final int WINDOW = 10;
+  // Time a saved speed counts for, as one tick
+  private static final long SAVED_SPEED_TIME = 2000;
+  // About 90% of estimates are in the bounds
+  private static final double Z = 1.645;
+  // An estimate is shown only if the upper bound is within this times of it
+  private static final double MAX_UNCERTAINTY = 2.0;
+
+  private static final String SEPARATOR = ",";
+
+  private final String resolution;
+
+  private final long[] windowBytes = new long[WINDOW];
+  private final long[] windowTimes = new long[WINDOW];
+  private int windowStart;
+  private int windowSize;
+
+  private long pageCount;
+  private double pageSizeSum;
+  private double pageSizeSquareSum;
+
+  DownloadStats(@NonNull String resolution) {
+    this.resolution = resolution;
+  }
+
+  /**
+   * Adds progress of a tick.
+   *
+   * @param duration the time of the tick in milliseconds,
+   *                 no throughput sample if it isn't positive
+   */
+  void onTick(long duration, @NonNull DownloadProgress.Snapshot snapshot) {
+    if (duration > 0) {
+      addSample(snapshot.bytesRead, duration);
+    }
+    if (snapshot.completedPages > 0) {
+      pageCount += snapshot.completedPages;
+      pageSizeSum += snapshot.completedBytes;
+      pageSizeSquareSum += snapshot.completedSquares;
+    }
+  }
+
+  private void addSample(long bytes, long time) {
+    int index;
+    if (windowSize < WINDOW) {
+      index = (windowStart + windowSize) % WINDOW;
+      windowSize++;
+    } else {
+      index = windowStart;
+      windowStart = (windowStart + 1) % WINDOW;
+    }
+    windowBytes[index] = bytes;
+    windowTimes[index] = time;
+  }
+
+  /**
+   * Returns bytes per second, or {@code -1} if unknown.
+   */
+  long getSpeed() {
+    long bytes = 0;
+    long time = 0;
+    for (int i = 0; i < windowSize; i++) {
+      bytes += windowBytes[i];
+      time += windowTimes[i];
+    }
+    return time > 0 ? bytes * 1000 / time : -1;
+  }
+
+  // Standard error of the speed in bytes per second
+  private double getSpeedError(double speed) {
+    if (windowSize < 2) {
+      // Too few to tell
+      return speed / 2;
+    }
+    double sum = 0;
+    double squareSum = 0;
+    for (int i = 0; i < windowSize; i++) {
+      double sample = windowBytes[i] * 1000.0 / windowTimes[i];
+      sum += sample;
+      squareSum += sample * sample;
+    }
+    double mean = sum / windowSize;
+    double variance = Math.max(0, squareSum - sum * mean) / (windowSize - 1);
+    return Math.sqrt(variance / windowSize);
+  }
+
+  /**
+   * Estimates the time left.
+   *
+   * @param pagesLeft pages not downloaded yet, including pages being downloaded
+   * @param snapshot the latest snapshot, for pages being downloaded
+   */
+  @NonNull
+  Estimate estimate(int pagesLeft, @NonNull DownloadProgress.Snapshot snapshot) {
+    long speed = getSpeed();
+    if (speed <= 0 || pagesLeft < 0) {
+      return Estimate.UNKNOWN;
+    }
+
+    // Mean and variance of page size
+    double mean;
+    double variance;
+    double samples;
+    if (pageCount >= 2) {
+      mean = pageSizeSum / pageCount;
+      variance = Math.max(0, pageSizeSquareSum - pageSizeSum * mean) / (pageCount - 1);
+      samples = pageCount;
+    } else if (pageCount == 1) {
+      mean = pageSizeSum;
+      // As uncertain as the size itself
+      variance = mean * mean;
+      samples = 1;
+    } else if (snapshot.downloadingCount > 0) {
+      mean = (double) snapshot.contentLengthSum / snapshot.downloadingCount;
+      variance = mean * mean;
+      samples = snapshot.downloadingCount;
+    } else if (pagesLeft == 0) {
+      mean = 0;
+      variance = 0;
+      samples = 1;
+    } else {
+      return Estimate.UNKNOWN;
+    }
+
+    // Pages not started yet, and the error of the mean counts for all of them
+    int pagesToStart = Math.max(0, pagesLeft - snapshot.downloadingCount);
+    double bytes = snapshot.remainingSum + pagesToStart * mean;
+    double bytesError = Z * Math.sqrt(pagesToStart * variance * (1 + pagesToStart / samples));
+    double speedError = Z * getSpeedError(speed);
+
+    long remaining = (long) (bytes * 1000 / speed);
+    long low = (long) (Math.max(0, bytes - bytesError) * 1000 / (speed + speedError));
+    long high;
+    if (speed - speedError > 0) {
+      high = (long) ((bytes + bytesError) * 1000 / (speed - speedError));
+    } else {
+      high = Long.MAX_VALUE;
+    }
+    return new Estimate(remaining, low, high);
+  }
+
+  /**
+   * Returns the statistics as a string for {@link #restore(String, String)}.
+   */
+  @NonNull
+  String save() {
+    return resolution + SEPARATOR + getSpeed() + SEPARATOR + pageCount
+        + SEPARATOR + pageSizeSum + SEPARATOR + pageSizeSquareSum;
+  }
+
+  /**
+   * Restores statistics saved by {@link #save()}.
+   * Page sizes of another resolution are dropped, the speed is kept.
+   */
+  @NonNull
+  static DownloadStats restore(@Nullable String saved, @NonNull String resolution) {
+    DownloadStats stats = new DownloadStats(resolution);
+    if (saved == null) {
+      return stats;
+    }
+
+    String[] values = saved.split(SEPARATOR, -1);
+    if (values.length != 5) {
+      return stats;
+    }
+    try {
+      long speed = Long.parseLong(values[1]);
+      long pageCount = Long.parseLong(values[2]);
+      double pageSizeSum = Double.parseDouble(values[3]);
+      double pageSizeSquareSum = Double.parseDouble(values[4]);
+
+      if (speed > 0) {
+        stats.addSample(speed * SAVED_SPEED_TIME / 1000, SAVED_SPEED_TIME);
+      }
+      if (resolution.equals(values[0]) && pageCount > 0) {
+        stats.pageCount = pageCount;
+        stats.pageSizeSum = pageSizeSum;
+        stats.pageSizeSquareSum = pageSizeSquareSum;
+      }
+    } catch (NumberFormatException e) {
+      // Ignore
+    }
+    return stats;
+  }
+
+  static final class Estimate {
+
+    static final Estimate UNKNOWN = new Estimate(-1, -1, -1);
+
+    // Milliseconds, -1 for unknown
+    final long remaining;
+    final long low;
+    final long high;
+
+    Estimate(long remaining, long low, long high) {
+      this.remaining = remaining;
+      this.low = low;
+      this.high = high;
+    }
+
+    /**
+     * Returns the time left if the bounds are close enough to it,
+     * otherwise {@code -1}.
+     */
+    long getConfidentRemaining() {
+      if (remaining < 0 || high > remaining * MAX_UNCERTAINTY) {
+        return -1;
+      }
+      return remaining;
+    }
+  }
+}
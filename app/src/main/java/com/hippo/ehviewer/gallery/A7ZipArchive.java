@@ -16,12 +16,14 @@
 
 package com.hippo.ehviewer.gallery;
 
+import androidx.annotation.Nullable;
 import com.hippo.a7zip.ArchiveException;
 import com.hippo.a7zip.InArchive;
 import com.hippo.a7zip.InStream;
 import com.hippo.a7zip.PropID;
 import com.hippo.a7zip.PropType;
 import com.hippo.a7zip.SequentialOutStream;
+import com.hippo.ehviewer.EhApplication;
 import com.hippo.unifile.UniRandomAccessFile;
 import java.io.Closeable;
 import java.io.IOException;
@@ -51,17 +53,29 @@ class A7ZipArchive implements Closeable {
     return false;
   }
 
-  List<A7ZipArchiveEntry> getArchiveEntries() {
+  interface EntryListener {
+
+    void onEntry(A7ZipArchiveEntry entry);
+  }
+
+  /**
+   * @param listener gets each entry as soon as it's found, in archive order
+   */
+  List<A7ZipArchiveEntry> getArchiveEntries(@Nullable EntryListener listener) {
     List<A7ZipArchiveEntry> entries = new ArrayList<>();
 
     for (int i = 0, n = archive.getNumberOfEntries(); i < n; i++) {
-      if (!archive.getEntryBooleanProperty(i, PropID.ENCRYPTED)
+      // Check the name first, it's one JNI call instead of four
+      String path = archive.getEntryPath(i);
+      if (isSupportedFilename(path.toLowerCase())
+          && !archive.getEntryBooleanProperty(i, PropID.ENCRYPTED)
           && !archive.getEntryBooleanProperty(i, PropID.IS_DIR)
           && !archive.getEntryBooleanProperty(i, PropID.IS_VOLUME)
           && !archive.getEntryBooleanProperty(i, PropID.SOLID)) {
-        String path = archive.getEntryPath(i);
-        if (isSupportedFilename(path.toLowerCase())) {
-          entries.add(new A7ZipArchiveEntry(archive, i, path));
+        A7ZipArchiveEntry entry = new A7ZipArchiveEntry(archive, i, path);
+        entries.add(entry);
+        if (listener != null) {
+          listener.onEntry(entry);
         }
       }
     }
@@ -69,7 +83,17 @@ class A7ZipArchive implements Closeable {
     return entries;
   }
 
+  /**
+   * Extracts the entry with the index of {@link A7ZipArchiveEntry#getIndex()}.
+   * The entry could come from another {@code A7ZipArchive} of the same file.
+   */
+  void extract(int index, OutputStream os) throws ArchiveException {
+    archive.extractEntry(index, new OutputStreamSequentialOutStream(os));
+  }
+
   static A7ZipArchive create(UniRandomAccessFile file) throws ArchiveException {
+    // The native library is loaded on first use
+    EhApplication.getStartup(EhApplication.getInstance()).ensure(EhApplication.STARTUP_A7ZIP);
     InStream store = new UniRandomAccessFileInStream(file);
     InArchive archive = InArchive.open(store);
     if ((archive.getArchivePropertyType(PropID.ENCRYPTED) == PropType.BOOL && archive.getArchiveBooleanProperty(PropID.ENCRYPTED))
@@ -96,6 +120,10 @@ class A7ZipArchive implements Closeable {
       return path;
     }
 
+    int getIndex() {
+      return index;
+    }
+
     void extract(OutputStream os) throws ArchiveException {
       archive.extractEntry(index, new OutputStreamSequentialOutStream(os));
     }
@@ -18,77 +18,49 @@ package com.hippo.ehviewer.gallery;
 
 import android.content.Context;
 import android.net.Uri;
-import android.os.Process;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import com.hippo.a7zip.ArchiveException;
-import com.hippo.ehviewer.GetText;
-import com.hippo.ehviewer.R;
-import com.hippo.glgallery.GalleryPageView;
+import com.hippo.ehviewer.EhApplication;
 import com.hippo.image.Image;
 import com.hippo.unifile.UniFile;
-import com.hippo.unifile.UniRandomAccessFile;
-import com.hippo.util.NaturalComparator;
-import com.hippo.yorozuya.thread.PriorityThread;
+import com.hippo.yorozuya.FileUtils;
+import com.hippo.yorozuya.IOUtils;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Stack;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 
-public class ArchiveGalleryProvider extends GalleryProvider2 {
+public class ArchiveGalleryProvider extends GalleryProvider2 implements ArchivePageLoader.Callback {
 
-  private static final AtomicInteger sIdGenerator = new AtomicInteger();
+  // Read-ahead pages are kept extracted, not decoded
+  private static final int MAX_READ_AHEAD = 10;
 
-  private final UniFile file;
-
-  private Thread archiveThread;
-  private Thread decodeThread;
+  private final UniFile archiveFile;
+  private final ArchivePageLoader loader;
+  @Nullable
+  private volatile String archiveName;
 
   private volatile int size = STATE_WAIT;
   private String error;
 
-  private final Stack<Integer> requests = new Stack<>();
-  private final AtomicInteger extractingIndex = new AtomicInteger(GalleryPageView.INVALID_INDEX);
-  private final LinkedHashMap<Integer, InputStream> streams = new LinkedHashMap<>();
-  private final AtomicInteger decodingIndex = new AtomicInteger(GalleryPageView.INVALID_INDEX);
-
   public ArchiveGalleryProvider(Context context, Uri uri) {
-    file = UniFile.fromUri(context, uri);
+    archiveFile = UniFile.fromUri(context, uri);
+    loader = new ArchivePageLoader(archiveFile,
+        EhApplication.getArchiveIndexCache(context), getPageDecoder(), this,
+        ArchivePageLoader.getDefaultExtractorCount(), ArchivePageLoader.getDefaultDecoderCount());
   }
 
   @Override
   public void start() {
     super.start();
-
-    int id = sIdGenerator.incrementAndGet();
-
-    archiveThread = new PriorityThread(
-        new ArchiveTask(), "ArchiveTask" + '-' + id, Process.THREAD_PRIORITY_BACKGROUND);
-    archiveThread.start();
-
-    decodeThread = new PriorityThread(
-        new DecodeTask(), "DecodeTask" + '-' + id, Process.THREAD_PRIORITY_BACKGROUND);
-    decodeThread.start();
+    loader.start();
   }
 
   @Override
   public void stop() {
     super.stop();
-
-    if (archiveThread != null) {
-      archiveThread.interrupt();
-      archiveThread = null;
-    }
-    if (decodeThread != null) {
-      decodeThread.interrupt();
-      decodeThread = null;
-    }
+    loader.stop();
   }
 
   @Override
@@ -97,19 +69,25 @@ public class ArchiveGalleryProvider extends GalleryProvider2 {
   }
 
   @Override
-  protected void onRequest(int index) {
-    boolean inDecodeTask;
-    synchronized (streams) {
-      inDecodeTask = streams.keySet().contains(index) || index == decodingIndex.get();
-    }
+  public void setCurrentIndex(int index) {
+    loader.setCurrentIndex(index);
+    super.setCurrentIndex(index);
+  }
 
-    synchronized (requests) {
-      boolean inArchiveTask = requests.contains(index) || index == extractingIndex.get();
-      if (!inArchiveTask && !inDecodeTask) {
-        requests.add(index);
-        requests.notify();
-      }
-    }
+  @Override
+  protected int getMaxReadAhead() {
+    return MAX_READ_AHEAD;
+  }
+
+  @Override
+  protected void onReadAhead(int index, int direction, int window) {
+    loader.readAhead(index, direction, window);
+  }
+
+  @Override
+  protected void onRequest(int index) {
+    onPageRequested(index);
+    loader.request(index);
     notifyPageWait(index);
   }
 
@@ -120,9 +98,8 @@ public class ArchiveGalleryProvider extends GalleryProvider2 {
 
   @Override
   protected void onCancelRequest(int index) {
-    synchronized (requests) {
-      requests.remove(Integer.valueOf(index));
-    }
+    onPageLoadFailed(index);
+    loader.cancel(index);
   }
 
   @Override
@@ -130,152 +107,148 @@ public class ArchiveGalleryProvider extends GalleryProvider2 {
     return error;
   }
 
+  private static String removeExtension(String name) {
+    int index = name.lastIndexOf('.');
+    return index > 0 ? name.substring(0, index) : name;
+  }
+
+  private String getArchiveName() {
+    String name = archiveName;
+    if (name == null) {
+      name = archiveFile != null ? archiveFile.getName() : null;
+      name = name != null ? removeExtension(name) : "archive";
+      archiveName = name;
+    }
+    return name;
+  }
+
+  /**
+   * Archive name and entry path without extension. Different paths, like
+   * {@code a/b.jpg} and {@code a-b.jpg}, might get the same name.
+   */
   @NonNull
   @Override
   public String getImageFilename(int index) {
-    // TODO
-    return Integer.toString(index);
+    String path = loader.getPath(index);
+    if (path == null) {
+      return getArchiveName() + '-' + (index + 1);
+    }
+    path = removeExtension(path).replace('/', '-').replace('\\', '-');
+    return FileUtils.sanitizeFilename(getArchiveName() + '-' + path);
   }
 
   @Override
   public boolean save(int index, @NonNull UniFile file) {
-    // TODO
-    return false;
+    OutputStream os = null;
+    try {
+      os = file.openOutputStream();
+      return loader.save(index, os);
+    } catch (IOException e) {
+      return false;
+    } finally {
+      IOUtils.closeQuietly(os);
+    }
   }
 
   @Nullable
   @Override
   public UniFile save(int index, @NonNull UniFile dir, @NonNull String filename) {
-    // TODO
-    return null;
-  }
+    String path = loader.getPath(index);
+    if (path == null) {
+      return null;
+    }
 
-  private class ArchiveTask implements Runnable {
-    @Override
-    public void run() {
-      UniRandomAccessFile uraf = null;
-      if (file != null) {
-        try {
-          uraf = file.createRandomAccessFile("r");
-        } catch (IOException e) {
-          e.printStackTrace();
-        }
-      }
-      if (uraf == null) {
-        size = STATE_ERROR;
-        error = GetText.getString(R.string.error_reading_failed);
-        notifyDataChanged();
-        return;
-      }
+    String extension = FileUtils.getExtensionFromFilename(path);
+    UniFile dst = dir.subFile(null != extension ? filename + "." + extension : filename);
+    if (null == dst) {
+      return null;
+    }
 
-      A7ZipArchive archive = null;
-      try {
-        archive = A7ZipArchive.create(uraf);
-      } catch (ArchiveException e) {
-        e.printStackTrace();
-      }
-      if (archive == null) {
-        size = STATE_ERROR;
-        error = GetText.getString(R.string.error_invalid_archive);
-        notifyDataChanged();
-        return;
-      }
+    if (save(index, dst)) {
+      return dst;
+    } else {
+      dst.delete();
+      return null;
+    }
+  }
 
-      List<A7ZipArchive.A7ZipArchiveEntry> entries = archive.getArchiveEntries();
-      Collections.sort(entries, naturalComparator);
-
-      // Update size and notify changed
-      size = entries.size();
-      notifyDataChanged();
-
-      while (!Thread.currentThread().isInterrupted()) {
-        int index;
-        synchronized (requests) {
-          if (requests.isEmpty()) {
-            try {
-              requests.wait();
-            } catch (InterruptedException e) {
-              // Interrupted
-              break;
-            }
-            continue;
-          }
-          index = requests.pop();
-          extractingIndex.lazySet(index);
-        }
-
-        // Check index valid
-        if (index < 0 || index >= entries.size()) {
-          extractingIndex.lazySet(GalleryPageView.INVALID_INDEX);
-          notifyPageFailed(index, GetText.getString(R.string.error_out_of_range));
-          continue;
-        }
-
-        Pipe pipe = new Pipe(4 * 1024);
-
-        synchronized (streams) {
-          if (streams.get(index) != null) {
-            continue;
-          }
-          streams.put(index, pipe.getInputStream());
-          streams.notify();
-        }
-
-        try {
-          entries.get(index).extract(pipe.getOutputStream());
-        } catch (ArchiveException e) {
-          e.printStackTrace();
-        } finally {
-          extractingIndex.lazySet(GalleryPageView.INVALID_INDEX);
-        }
-      }
+  /**
+   * Saves pages in [start, end) to the directory, named like
+   * {@link #getImageFilename(int)}. Pages are written by several threads.
+   * It blocks until all pages are written, don't call it in UI thread.
+   *
+   * @return the count of pages saved
+   */
+  public int export(int start, int end, @NonNull UniFile dir) throws InterruptedException {
+    start = Math.max(0, start);
+    end = Math.min(size, end);
+    if (start >= end) {
+      return 0;
+    }
+
+    // Name them before writers start, so two writers never write the same file
+    String[] filenames = new String[end - start];
+    for (int i = start; i < end; i++) {
+      String path = loader.getPath(i);
+      String extension = path != null ? FileUtils.getExtensionFromFilename(path) : null;
+      String filename = getImageFilename(i);
+      filenames[i - start] = null != extension ? filename + "." + extension : filename;
     }
+    makeUnique(filenames, start);
+
+    final int first = start;
+    return loader.export(start, end, ArchivePageLoader.getDefaultExtractorCount(),
+        (index, path) -> dir.subFile(filenames[index - first]));
   }
 
-  private class DecodeTask implements Runnable {
-    @Override
-    public void run() {
-      while (!Thread.currentThread().isInterrupted()) {
-        int index;
-        InputStream stream;
-        synchronized (streams) {
-          if (streams.isEmpty()) {
-            try {
-              streams.wait();
-            } catch (InterruptedException e) {
-              // Interrupted
-              break;
-            }
-            continue;
-          }
-
-          Iterator<Map.Entry<Integer, InputStream>> iterator = streams.entrySet().iterator();
-          Map.Entry<Integer, InputStream> entry = iterator.next();
-          iterator.remove();
-          index = entry.getKey();
-          stream = entry.getValue();
-          decodingIndex.lazySet(index);
-        }
-
-        try {
-          Image image = Image.decode(stream, true);
-          if (image != null) {
-            notifyPageSucceed(index, image);
-          } else {
-            notifyPageFailed(index, GetText.getString(R.string.error_decoding_failed));
-          }
-        } finally {
-          decodingIndex.lazySet(GalleryPageView.INVALID_INDEX);
-        }
+  /**
+   * Appends the page number to names already taken, ignoring case for
+   * case-insensitive file systems.
+   *
+   * @param start the index of the first page in {@code filenames}
+   */
+  static void makeUnique(String[] filenames, int start) {
+    Set<String> taken = new HashSet<>();
+    for (int i = 0; i < filenames.length; i++) {
+      String filename = filenames[i];
+      while (!taken.add(filename.toLowerCase(Locale.ROOT))) {
+        int dot = filename.lastIndexOf('.');
+        String suffix = "-" + (start + i + 1);
+        filename = dot > 0 ? filename.substring(0, dot) + suffix + filename.substring(dot)
+            : filename + suffix;
       }
+      filenames[i] = filename;
     }
   }
 
-  private static Comparator<A7ZipArchive.A7ZipArchiveEntry> naturalComparator = new Comparator<A7ZipArchive.A7ZipArchiveEntry>() {
-    private NaturalComparator comparator = new NaturalComparator();
-    @Override
-    public int compare(A7ZipArchive.A7ZipArchiveEntry o1, A7ZipArchive.A7ZipArchiveEntry o2) {
-      return comparator.compare(o1.getPath(), o2.getPath());
-    }
-  };
+  @Override
+  public void onOpen(int size) {
+    this.size = size;
+    notifyDataChanged();
+  }
+
+  @Override
+  public void onOpenFailed(String error) {
+    this.error = error;
+    size = STATE_ERROR;
+    notifyDataChanged();
+  }
+
+  @Override
+  public void onPageSucceed(int index, Image image) {
+    onPageLoaded(index);
+    notifyPageSucceed(index, image);
+  }
+
+  @Override
+  public void onPageFailed(int index, String error) {
+    onPageLoadFailed(index);
+    notifyPageFailed(index, error);
+  }
+
+  @Override
+  public void onPageChanged(int index) {
+    removeCache(index);
+    onRequest(index);
+  }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.gallery;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Image entries of an archive in natural order.
+ * It's saved with the uri, length and last modified time of the archive,
+ * and only valid while they stay the same.
+ */
+class ArchiveIndex {
+
+  private static final int VERSION = 1;
+  private static final int MAX_SIZE = 1 << 20;
+
+  private final String uri;
+  private final long length;
+  private final long lastModified;
+  // Entry index in archive of each page
+  private final int[] entryIndexes;
+  private final String[] paths;
+
+  private ArchiveIndex(String uri, long length, long lastModified, int[] entryIndexes, String[] paths) {
+    this.uri = uri;
+    this.length = length;
+    this.lastModified = lastModified;
+    this.entryIndexes = entryIndexes;
+    this.paths = paths;
+  }
+
+  static ArchiveIndex create(String uri, long length, long lastModified,
+      List<A7ZipArchive.A7ZipArchiveEntry> sortedEntries) {
+    int size = sortedEntries.size();
+    int[] entryIndexes = new int[size];
+    String[] paths = new String[size];
+    for (int i = 0; i < size; i++) {
+      A7ZipArchive.A7ZipArchiveEntry entry = sortedEntries.get(i);
+      entryIndexes[i] = entry.getIndex();
+      paths[i] = entry.getPath();
+    }
+    return new ArchiveIndex(uri, length, lastModified, entryIndexes, paths);
+  }
+
+  /**
+   * Returns a short key for disk cache. Different uris might get the same key,
+   * {@link #read(InputStream, String, long, long)} checks the uri.
+   */
+  static String getKey(String uri) {
+    return "archive_" + hash(uri);
+  }
+
+  /**
+   * FNV-1a hash of the string in hex.
+   */
+  static String hash(String str) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0, n = str.length(); i < n; i++) {
+      hash ^= str.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return Long.toHexString(hash);
+  }
+
+  int size() {
+    return entryIndexes.length;
+  }
+
+  int getEntryIndex(int page) {
+    return entryIndexes[page];
+  }
+
+  String getPath(int page) {
+    return paths[page];
+  }
+
+  /**
+   * @return null if it's invalid or for another archive
+   */
+  @Nullable
+  static ArchiveIndex read(@NonNull InputStream is, String uri, long length, long lastModified) {
+    try {
+      DataInputStream dis = new DataInputStream(is);
+      if (dis.readInt() != VERSION || !uri.equals(dis.readUTF())
+          || dis.readLong() != length || dis.readLong() != lastModified) {
+        return null;
+      }
+      int size = dis.readInt();
+      if (size < 0 || size > MAX_SIZE) {
+        return null;
+      }
+      int[] entryIndexes = new int[size];
+      String[] paths = new String[size];
+      for (int i = 0; i < size; i++) {
+        entryIndexes[i] = dis.readInt();
+        paths[i] = dis.readUTF();
+      }
+      return new ArchiveIndex(uri, length, lastModified, entryIndexes, paths);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  void write(@NonNull OutputStream os) throws IOException {
+    DataOutputStream dos = new DataOutputStream(os);
+    dos.writeInt(VERSION);
+    dos.writeUTF(uri);
+    dos.writeLong(length);
+    dos.writeLong(lastModified);
+    dos.writeInt(entryIndexes.length);
+    for (int i = 0; i < entryIndexes.length; i++) {
+      dos.writeInt(entryIndexes[i]);
+      dos.writeUTF(paths[i]);
+    }
+    dos.flush();
+  }
+}
@@ -0,0 +1,804 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.gallery;
+
+import android.os.Process;
+import androidx.annotation.Nullable;
+import com.hippo.a7zip.ArchiveException;
+import com.hippo.beerbelly.SimpleDiskCache;
+import com.hippo.ehviewer.GetText;
+import com.hippo.ehviewer.Metrics;
+import com.hippo.ehviewer.R;
+import com.hippo.image.Image;
+import com.hippo.streampipe.InputStreamPipe;
+import com.hippo.streampipe.OutputStreamPipe;
+import com.hippo.unifile.UniFile;
+import com.hippo.unifile.UniRandomAccessFile;
+import com.hippo.util.NaturalComparator;
+import com.hippo.yorozuya.IOUtils;
+import com.hippo.yorozuya.thread.PriorityThread;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts and decodes pages of an archive with several threads.
+ * <p>
+ * Every extractor opens its own handle of the archive, so entries are
+ * extracted in parallel. Extracted pages wait in a bounded queue for
+ * decoders. The request nearest to the current page goes first.
+ * <p>
+ * Sorted entries are saved in disk cache, so pages are known before the
+ * archive is opened next time. If they aren't, the first entry found is
+ * shown as the only page until all entries are listed and sorted.
+ * <p>
+ * Read-ahead pages are only extracted, and kept in memory until they are
+ * requested. They never block requests.
+ */
+class ArchivePageLoader {
+
+  interface Callback {
+
+    /**
+     * Called again with the final size if the first size is provisional.
+     */
+    void onOpen(int size);
+
+    void onOpenFailed(String error);
+
+    void onPageSucceed(int index, Image image);
+
+    void onPageFailed(int index, String error);
+
+    /**
+     * The entry of the page changed after it's loaded, load it again.
+     */
+    void onPageChanged(int index);
+  }
+
+  interface Exporter {
+
+    /**
+     * @param path the path of the entry in archive
+     * @return the file to write the page to, null to skip the page
+     */
+    @Nullable
+    UniFile createFile(int index, String path);
+  }
+
+  private static final AtomicInteger sIdGenerator = new AtomicInteger();
+
+  private static final Metrics.Counter INDEX_HIT_COUNTER = Metrics.counter("cache.archive_index.hit");
+  private static final Metrics.Counter INDEX_MISS_COUNTER = Metrics.counter("cache.archive_index.miss");
+
+  private static final int INITIAL_BUFFER_SIZE = 256 * 1024;
+  private static final int MAX_READ_AHEAD_BYTES = 32 * 1024 * 1024;
+
+  private final UniFile file;
+  @Nullable
+  private final SimpleDiskCache indexCache;
+  private final PageDecoder pageDecoder;
+  private final Callback callback;
+  private final int extractorCount;
+  private final int decoderCount;
+  private final int maxExtractedCount;
+
+  private Thread[] threads;
+
+  private final Object lock = new Object();
+  // Sorted entries, null before they are known
+  private ArchiveIndex archiveIndex;
+  // Whether archiveIndex only has the first entry found
+  private boolean provisional;
+  private boolean openFailed;
+  // Requests not extracted yet
+  private final Set<Integer> requests = new HashSet<>();
+  // Requests being extracted or decoded
+  private final Set<Integer> loading = new HashSet<>();
+  // Pages extracted, waiting for decoders
+  private final ArrayDeque<ExtractedPage> extracted = new ArrayDeque<>();
+  private int currentIndex;
+  // Read-ahead pages not extracted yet, the nearest first
+  private final ArrayDeque<Integer> readAheadRequests = new ArrayDeque<>();
+  // Read-ahead pages being extracted
+  private final Set<Integer> readingAhead = new HashSet<>();
+  // Read-ahead pages extracted
+  private final Map<Integer, PageBuffer> readAheadPages = new HashMap<>();
+  private int readAheadBytes;
+
+  ArchivePageLoader(@Nullable UniFile file, @Nullable SimpleDiskCache indexCache,
+      PageDecoder pageDecoder, Callback callback, int extractorCount, int decoderCount) {
+    this.file = file;
+    this.indexCache = indexCache;
+    this.pageDecoder = pageDecoder;
+    this.callback = callback;
+    this.extractorCount = Math.max(1, extractorCount);
+    this.decoderCount = Math.max(1, decoderCount);
+    this.maxExtractedCount = this.decoderCount * 2;
+  }
+
+  /**
+   * Extraction is mostly IO, decoding is mostly CPU.
+   */
+  static int getDefaultExtractorCount() {
+    return Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() / 2));
+  }
+
+  static int getDefaultDecoderCount() {
+    return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  void start() {
+    int id = sIdGenerator.incrementAndGet();
+    threads = new Thread[extractorCount + decoderCount];
+    for (int i = 0; i < extractorCount; i++) {
+      threads[i] = new PriorityThread(new ExtractTask(i),
+          "ArchiveExtractor-" + id + '-' + i, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+    for (int i = 0; i < decoderCount; i++) {
+      threads[extractorCount + i] = new PriorityThread(new DecodeTask(),
+          "ArchiveDecoder-" + id + '-' + i, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+  }
+
+  void stop() {
+    if (threads != null) {
+      for (Thread thread : threads) {
+        thread.interrupt();
+      }
+      threads = null;
+    }
+  }
+
+  void setCurrentIndex(int index) {
+    synchronized (lock) {
+      currentIndex = index;
+    }
+  }
+
+  void request(int index) {
+    synchronized (lock) {
+      if (loading.contains(index)) {
+        return;
+      }
+
+      PageBuffer buffer = readAheadPages.remove(index);
+      if (buffer != null) {
+        // Extracted already, decode it
+        readAheadBytes -= buffer.size();
+        loading.add(index);
+        extracted.addLast(new ExtractedPage(index, buffer));
+        lock.notifyAll();
+      } else if (readingAhead.contains(index)) {
+        // Decode it after extracted
+        loading.add(index);
+      } else if (requests.add(index)) {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Replaces read-ahead pages with {@code window} pages after {@code index}
+   * in {@code direction}, and drops extracted pages out of them.
+   */
+  void readAhead(int index, int direction, int window) {
+    synchronized (lock) {
+      readAheadRequests.clear();
+      Set<Integer> pages = new HashSet<>();
+      for (int i = 1; i <= window; i++) {
+        int page = index + direction * i;
+        if (page < 0 || (archiveIndex != null && page >= archiveIndex.size())) {
+          break;
+        }
+        pages.add(page);
+        if (!loading.contains(page) && !requests.contains(page)
+            && !readingAhead.contains(page) && !readAheadPages.containsKey(page)) {
+          readAheadRequests.addLast(page);
+        }
+      }
+
+      for (Iterator<Map.Entry<Integer, PageBuffer>> iterator = readAheadPages.entrySet().iterator(); iterator.hasNext(); ) {
+        Map.Entry<Integer, PageBuffer> entry = iterator.next();
+        if (!pages.contains(entry.getKey())) {
+          readAheadBytes -= entry.getValue().size();
+          iterator.remove();
+        }
+      }
+
+      if (!readAheadRequests.isEmpty()) {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * @return the path of the entry of the page, null if it's unknown
+   */
+  @Nullable
+  String getPath(int index) {
+    synchronized (lock) {
+      if (archiveIndex == null || index < 0 || index >= archiveIndex.size()) {
+        return null;
+      }
+      return archiveIndex.getPath(index);
+    }
+  }
+
+  /**
+   * Writes the entry of the page to the stream as it is, without decoding.
+   * A read-ahead page in memory is written directly, or the entry is
+   * extracted with a new handle, handles of extractors are busy.
+   */
+  boolean save(int index, OutputStream os) {
+    ArchiveIndex archiveIndex;
+    PageBuffer buffer;
+    synchronized (lock) {
+      archiveIndex = this.archiveIndex;
+      buffer = readAheadPages.get(index);
+    }
+    if (archiveIndex == null || index < 0 || index >= archiveIndex.size()) {
+      return false;
+    }
+
+    if (buffer != null) {
+      try {
+        buffer.writeTo(os);
+        return true;
+      } catch (IOException e) {
+        e.printStackTrace();
+        return false;
+      }
+    }
+
+    A7ZipArchive archive = openArchive(null);
+    if (archive == null) {
+      return false;
+    }
+    try {
+      archive.extract(archiveIndex.getEntryIndex(index), os);
+      return true;
+    } catch (ArchiveException e) {
+      e.printStackTrace();
+      return false;
+    } finally {
+      archive.close();
+    }
+  }
+
+  /**
+   * Writes entries of pages in [start, end) to files with {@code writerCount}
+   * threads. Each writer extracts with its own handle. It blocks until all
+   * pages are written, don't call it in UI thread.
+   *
+   * @return the count of pages written
+   */
+  int export(int start, int end, int writerCount, Exporter exporter) throws InterruptedException {
+    ArchiveIndex archiveIndex;
+    synchronized (lock) {
+      archiveIndex = this.archiveIndex;
+    }
+    if (archiveIndex == null) {
+      return 0;
+    }
+    start = Math.max(0, start);
+    end = Math.min(archiveIndex.size(), end);
+    if (start >= end) {
+      return 0;
+    }
+
+    ExportTask task = new ExportTask(archiveIndex, start, end, exporter);
+    Thread[] writers = new Thread[Math.max(1, Math.min(writerCount, end - start))];
+    int id = sIdGenerator.incrementAndGet();
+    for (int i = 0; i < writers.length; i++) {
+      writers[i] = new PriorityThread(task, "ArchiveExporter-" + id + '-' + i,
+          Process.THREAD_PRIORITY_BACKGROUND);
+      writers[i].start();
+    }
+    try {
+      for (Thread writer : writers) {
+        writer.join();
+      }
+    } catch (InterruptedException e) {
+      for (Thread writer : writers) {
+        writer.interrupt();
+      }
+      throw e;
+    }
+    return task.written.get();
+  }
+
+  private boolean canReadAhead() {
+    return !readAheadRequests.isEmpty() && readAheadBytes < MAX_READ_AHEAD_BYTES;
+  }
+
+  void cancel(int index) {
+    synchronized (lock) {
+      requests.remove(index);
+    }
+  }
+
+  /**
+   * Takes the request nearest to current index, the next page wins a tie.
+   *
+   * @param limit requests not less than it are left
+   * @return -1 if there isn't one
+   */
+  private int pollNearestRequest(int limit) {
+    int nearest = -1;
+    int nearestDistance = Integer.MAX_VALUE;
+    for (int index : requests) {
+      if (index >= limit) {
+        continue;
+      }
+      int distance = Math.abs(index - currentIndex);
+      if (distance < nearestDistance || (distance == nearestDistance && index > nearest)) {
+        nearest = index;
+        nearestDistance = distance;
+      }
+    }
+    if (nearest != -1) {
+      requests.remove(nearest);
+      loading.add(nearest);
+    }
+    return nearest;
+  }
+
+  /**
+   * @return true if the read-ahead page is requested
+   */
+  private boolean endReadAhead(int index) {
+    synchronized (lock) {
+      readingAhead.remove(index);
+      return loading.contains(index);
+    }
+  }
+
+  private void finishPage(int index) {
+    synchronized (lock) {
+      loading.remove(index);
+    }
+  }
+
+  /**
+   * @return true if the entry is still of the page
+   */
+  private boolean isServed(int index, int entryIndex) {
+    synchronized (lock) {
+      return archiveIndex != null && index < archiveIndex.size()
+          && archiveIndex.getEntryIndex(index) == entryIndex;
+    }
+  }
+
+  @Nullable
+  private A7ZipArchive openArchive(@Nullable String[] error) {
+    UniRandomAccessFile uraf = null;
+    if (file != null) {
+      try {
+        uraf = file.createRandomAccessFile("r");
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    if (uraf == null) {
+      if (error != null) {
+        error[0] = GetText.getString(R.string.error_reading_failed);
+      }
+      return null;
+    }
+
+    try {
+      return A7ZipArchive.create(uraf);
+    } catch (ArchiveException e) {
+      e.printStackTrace();
+      try {
+        uraf.close();
+      } catch (IOException ex) {
+        ex.printStackTrace();
+      }
+      if (error != null) {
+        error[0] = GetText.getString(R.string.error_invalid_archive);
+      }
+      return null;
+    }
+  }
+
+  private void publish(ArchiveIndex archiveIndex, boolean provisional) {
+    synchronized (lock) {
+      this.archiveIndex = archiveIndex;
+      this.provisional = provisional;
+      lock.notifyAll();
+    }
+    callback.onOpen(archiveIndex.size());
+  }
+
+  @Nullable
+  private ArchiveIndex readIndex(String uri, long length, long lastModified) {
+    if (indexCache == null) {
+      return null;
+    }
+    InputStreamPipe pipe = indexCache.getInputStreamPipe(ArchiveIndex.getKey(uri));
+    if (pipe == null) {
+      INDEX_MISS_COUNTER.inc();
+      return null;
+    }
+    try {
+      pipe.obtain();
+      ArchiveIndex archiveIndex = ArchiveIndex.read(pipe.open(), uri, length, lastModified);
+      (archiveIndex != null ? INDEX_HIT_COUNTER : INDEX_MISS_COUNTER).inc();
+      return archiveIndex;
+    } catch (IOException e) {
+      INDEX_MISS_COUNTER.inc();
+      return null;
+    } finally {
+      pipe.close();
+      pipe.release();
+    }
+  }
+
+  private void writeIndex(ArchiveIndex archiveIndex, String uri) {
+    if (indexCache == null) {
+      return;
+    }
+    OutputStreamPipe pipe = indexCache.getOutputStreamPipe(ArchiveIndex.getKey(uri));
+    try {
+      pipe.obtain();
+      archiveIndex.write(pipe.open());
+    } catch (IOException e) {
+      // Ignore
+    } finally {
+      pipe.close();
+      pipe.release();
+    }
+  }
+
+  /**
+   * Opens the archive, and lists entries if they are not known.
+   */
+  @Nullable
+  private A7ZipArchive open() {
+    // Last modified time of some document providers is 0, can't tell changes
+    String uri = null;
+    long length = 0;
+    long lastModified = 0;
+    if (file != null) {
+      uri = file.getUri().toString();
+      length = file.length();
+      lastModified = file.lastModified();
+    }
+    boolean cacheable = uri != null && lastModified > 0;
+
+    ArchiveIndex savedIndex = cacheable ? readIndex(uri, length, lastModified) : null;
+    if (savedIndex != null) {
+      publish(savedIndex, false);
+    }
+
+    String[] error = new String[1];
+    A7ZipArchive archive = openArchive(error);
+    if (archive == null) {
+      synchronized (lock) {
+        openFailed = true;
+        lock.notifyAll();
+      }
+      callback.onOpenFailed(error[0]);
+      return null;
+    }
+
+    if (savedIndex == null) {
+      // Listing and sorting take a while for large archives, show the first entry found
+      final String finalUri = uri;
+      final long finalLength = length;
+      final long finalLastModified = lastModified;
+      final ArchiveIndex[] provisionalIndex = new ArchiveIndex[1];
+      List<A7ZipArchive.A7ZipArchiveEntry> entries = archive.getArchiveEntries(entry -> {
+        if (provisionalIndex[0] == null) {
+          provisionalIndex[0] = ArchiveIndex.create(finalUri, finalLength, finalLastModified,
+              Collections.singletonList(entry));
+          publish(provisionalIndex[0], true);
+        }
+      });
+
+      ArchiveIndex archiveIndex = ArchiveIndex.create(uri, length, lastModified, sortByPath(entries));
+      publish(archiveIndex, false);
+      if (provisionalIndex[0] != null
+          && provisionalIndex[0].getEntryIndex(0) != archiveIndex.getEntryIndex(0)) {
+        callback.onPageChanged(0);
+      }
+      if (cacheable) {
+        writeIndex(archiveIndex, uri);
+      }
+    }
+
+    return archive;
+  }
+
+  private class ExtractTask implements Runnable {
+
+    private final int id;
+
+    ExtractTask(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public void run() {
+      A7ZipArchive archive = null;
+
+      // The first extractor opens the archive and lists entries
+      if (id == 0) {
+        archive = open();
+        if (archive == null) {
+          return;
+        }
+      }
+
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          ArchiveIndex archiveIndex;
+          int index;
+          boolean readAhead;
+          synchronized (lock) {
+            if (openFailed) {
+              break;
+            }
+            archiveIndex = ArchivePageLoader.this.archiveIndex;
+            // Pages beyond the provisional index wait for the final one
+            if (archiveIndex != null && !requests.isEmpty() && extracted.size() < maxExtractedCount
+                && (index = pollNearestRequest(provisional ? archiveIndex.size() : Integer.MAX_VALUE)) != -1) {
+              readAhead = false;
+            } else if (archiveIndex != null && canReadAhead()) {
+              index = readAheadRequests.pollFirst();
+              readingAhead.add(index);
+              readAhead = true;
+            } else {
+              try {
+                lock.wait();
+              } catch (InterruptedException e) {
+                // Interrupted
+                break;
+              }
+              continue;
+            }
+          }
+
+          // Check index valid
+          if (index < 0 || index >= archiveIndex.size()) {
+            if (!readAhead || endReadAhead(index)) {
+              finishPage(index);
+              callback.onPageFailed(index, GetText.getString(R.string.error_out_of_range));
+            }
+            continue;
+          }
+
+          // Other extractors open their own handles when they are needed
+          if (archive == null) {
+            archive = openArchive(null);
+            if (archive == null) {
+              if (!readAhead || endReadAhead(index)) {
+                finishPage(index);
+                callback.onPageFailed(index, GetText.getString(R.string.error_reading_failed));
+              }
+              continue;
+            }
+          }
+
+          PageBuffer buffer = new PageBuffer(archiveIndex.getEntryIndex(index));
+          boolean succeed;
+          try {
+            archive.extract(archiveIndex.getEntryIndex(index), buffer);
+            succeed = true;
+          } catch (ArchiveException e) {
+            e.printStackTrace();
+            succeed = false;
+          }
+
+          boolean requested;
+          synchronized (lock) {
+            if (readAhead) {
+              readingAhead.remove(index);
+            }
+            // Read-ahead pages might be requested while extracting
+            requested = !readAhead || loading.contains(index);
+            if (succeed && requested) {
+              extracted.addLast(new ExtractedPage(index, buffer));
+            } else if (succeed) {
+              readAheadPages.put(index, buffer);
+              readAheadBytes += buffer.size();
+            }
+            lock.notifyAll();
+          }
+
+          if (!succeed && requested) {
+            finishPage(index);
+            callback.onPageFailed(index, GetText.getString(R.string.error_reading_failed));
+          }
+        }
+      } finally {
+        if (archive != null) {
+          archive.close();
+        }
+      }
+    }
+  }
+
+  private class ExportTask implements Runnable {
+
+    private final ArchiveIndex archiveIndex;
+    private final int end;
+    private final Exporter exporter;
+    private final AtomicInteger next;
+    final AtomicInteger written = new AtomicInteger();
+
+    ExportTask(ArchiveIndex archiveIndex, int start, int end, Exporter exporter) {
+      this.archiveIndex = archiveIndex;
+      this.end = end;
+      this.exporter = exporter;
+      this.next = new AtomicInteger(start);
+    }
+
+    @Override
+    public void run() {
+      A7ZipArchive archive = openArchive(null);
+      if (archive == null) {
+        return;
+      }
+
+      try {
+        int index;
+        while (!Thread.currentThread().isInterrupted() && (index = next.getAndIncrement()) < end) {
+          UniFile file = exporter.createFile(index, archiveIndex.getPath(index));
+          if (file == null) {
+            continue;
+          }
+
+          OutputStream os = null;
+          try {
+            os = file.openOutputStream();
+            archive.extract(archiveIndex.getEntryIndex(index), os);
+            written.incrementAndGet();
+          } catch (IOException | ArchiveException e) {
+            e.printStackTrace();
+          } finally {
+            IOUtils.closeQuietly(os);
+          }
+        }
+      } finally {
+        archive.close();
+      }
+    }
+  }
+
+  private class DecodeTask implements Runnable {
+    @Override
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        ExtractedPage page;
+        synchronized (lock) {
+          if (extracted.isEmpty()) {
+            try {
+              lock.wait();
+            } catch (InterruptedException e) {
+              // Interrupted
+              break;
+            }
+            continue;
+          }
+          page = pollNearestPage();
+          // Let extractors go on
+          lock.notifyAll();
+        }
+
+        boolean delivered = false;
+        try {
+          Image image = pageDecoder.decode(page.index, page.buffer.toInputStream());
+          if (!isServed(page.index, page.buffer.entryIndex)) {
+            // Entries are sorted while decoding
+            if (image != null) {
+              image.recycle();
+            }
+          } else if (image != null) {
+            callback.onPageSucceed(page.index, image);
+            delivered = true;
+          } else {
+            callback.onPageFailed(page.index, GetText.getString(R.string.error_decoding_failed));
+            delivered = true;
+          }
+        } finally {
+          finishPage(page.index);
+        }
+
+        // Sorted entries might be published before the page is delivered,
+        // check after it's finished, so the page can be requested again
+        if (!delivered || !isServed(page.index, page.buffer.entryIndex)) {
+          callback.onPageChanged(page.index);
+        }
+      }
+    }
+  }
+
+  private ExtractedPage pollNearestPage() {
+    ExtractedPage nearest = null;
+    int nearestDistance = Integer.MAX_VALUE;
+    for (Iterator<ExtractedPage> iterator = extracted.iterator(); iterator.hasNext(); ) {
+      ExtractedPage page = iterator.next();
+      int distance = Math.abs(page.index - currentIndex);
+      if (distance < nearestDistance) {
+        nearest = page;
+        nearestDistance = distance;
+      }
+    }
+    extracted.remove(nearest);
+    return nearest;
+  }
+
+  private static class ExtractedPage {
+
+    final int index;
+    final PageBuffer buffer;
+
+    ExtractedPage(int index, PageBuffer buffer) {
+      this.index = index;
+      this.buffer = buffer;
+    }
+  }
+
+  /**
+   * Reads the extracted bytes without copying them.
+   */
+  private static class PageBuffer extends ByteArrayOutputStream {
+
+    // The entry extracted, the page might get another one
+    final int entryIndex;
+
+    PageBuffer(int entryIndex) {
+      super(INITIAL_BUFFER_SIZE);
+      this.entryIndex = entryIndex;
+    }
+
+    InputStream toInputStream() {
+      return new ByteArrayInputStream(buf, 0, count);
+    }
+  }
+
+  private static List<A7ZipArchive.A7ZipArchiveEntry> sortByPath(List<A7ZipArchive.A7ZipArchiveEntry> entries) {
+    List<NaturalComparator.Key<A7ZipArchive.A7ZipArchiveEntry>> keys = new ArrayList<>(entries.size());
+    for (A7ZipArchive.A7ZipArchiveEntry entry : entries) {
+      keys.add(NaturalComparator.createKey(entry.getPath(), entry));
+    }
+    Collections.sort(keys);
+    List<A7ZipArchive.A7ZipArchiveEntry> result = new ArrayList<>(keys.size());
+    for (NaturalComparator.Key<A7ZipArchive.A7ZipArchiveEntry> key : keys) {
+      result.add(key.value);
+    }
+    return result;
+  }
+}
@@ -16,14 +16,21 @@
 
 package com.hippo.ehviewer.gallery;
 
+import android.content.Context;
 import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.hippo.beerbelly.SimpleDiskCache;
+import com.hippo.ehviewer.EhApplication;
 import com.hippo.ehviewer.GetText;
+import com.hippo.ehviewer.Metrics;
 import com.hippo.ehviewer.R;
 import com.hippo.glgallery.GalleryPageView;
 import com.hippo.image.Image;
+import com.hippo.streampipe.InputStreamPipe;
+import com.hippo.streampipe.OutputStreamPipe;
 import com.hippo.unifile.FilenameFilter;
 import com.hippo.unifile.UniFile;
 import com.hippo.util.NaturalComparator;
@@ -34,35 +41,64 @@ import com.hippo.yorozuya.thread.PriorityThread;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Pages are served while the directory is being listed, in natural order of
+ * the names listed so far. The order is final after listing, pages served
+ * in another order are decoded again. The sorted names are saved, so opening
+ * the directory again doesn't list it if it isn't modified.
+ */
 public class DirGalleryProvider extends GalleryProvider2 implements Runnable {
 
     private static final String TAG = DirGalleryProvider.class.getSimpleName();
     private static final AtomicInteger sIdGenerator = new AtomicInteger();
 
+    private static final long PUBLISH_INTERVAL = 300; // ms
+
+    private static final Metrics.Counter INDEX_HIT_COUNTER = Metrics.counter("cache.dir_index.hit");
+    private static final Metrics.Counter INDEX_MISS_COUNTER = Metrics.counter("cache.dir_index.miss");
+
     private final UniFile mDir;
+    private final SimpleDiskCache mIndexCache;
+    // Guards mRequests, mNames, mListed, mEstimatedSize and mProvisionalPages
     private final Stack<Integer> mRequests = new Stack<>();
     private final AtomicInteger mDecodingIndex = new AtomicInteger(GalleryPageView.INVALID_INDEX);
-    private final AtomicReference<UniFile[]> mFileList = new AtomicReference<>();
     @Nullable
     private Thread mBgThread;
+    @Nullable
+    private Thread mListThread;
     private volatile int mSize = STATE_WAIT;
     private String mError;
 
-    public DirGalleryProvider(@NonNull UniFile dir) {
+    // Sorted names listed so far
+    @Nullable
+    private String[] mNames;
+    private boolean mListed;
+    private int mEstimatedSize;
+    // Page index to file name, for pages served before listing ends
+    private final Map<Integer, String> mProvisionalPages = new HashMap<>();
+
+    public DirGalleryProvider(@NonNull Context context, @NonNull UniFile dir) {
         mDir = dir;
+        mIndexCache = EhApplication.getDirIndexCache(context);
     }
 
     @Override
     public void start() {
         super.start();
 
-        mBgThread = new PriorityThread(this, TAG + '-' + sIdGenerator.incrementAndGet(),
+        int id = sIdGenerator.incrementAndGet();
+        mListThread = new PriorityThread(this::list, TAG + "-List-" + id,
+                Process.THREAD_PRIORITY_BACKGROUND);
+        mListThread.start();
+        mBgThread = new PriorityThread(this, TAG + '-' + id,
                 Process.THREAD_PRIORITY_BACKGROUND);
         mBgThread.start();
     }
@@ -71,6 +107,10 @@ public class DirGalleryProvider extends GalleryProvider2 implements Runnable {
     public void stop() {
         super.stop();
 
+        if (mListThread != null) {
+            mListThread.interrupt();
+            mListThread = null;
+        }
         if (mBgThread != null) {
             mBgThread.interrupt();
             mBgThread = null;
@@ -117,17 +157,29 @@ public class DirGalleryProvider extends GalleryProvider2 implements Runnable {
         return Integer.toString(index);
     }
 
+    @Nullable
+    private UniFile getFile(int index) {
+        String name;
+        synchronized (mRequests) {
+            if (mNames == null || index < 0 || index >= mNames.length) {
+                return null;
+            }
+            name = mNames[index];
+        }
+        return mDir.subFile(name);
+    }
+
     @Override
     public boolean save(int index, @NonNull UniFile file) {
-        UniFile[] fileList = mFileList.get();
-        if (null == fileList || index < 0 || index >= fileList.length) {
+        UniFile src = getFile(index);
+        if (null == src) {
             return false;
         }
 
         InputStream is = null;
         OutputStream os = null;
         try {
-            is = fileList[index].openInputStream();
+            is = src.openInputStream();
             os = file.openOutputStream();
             IOUtils.copy(is, os);
             return true;
@@ -142,12 +194,11 @@ public class DirGalleryProvider extends GalleryProvider2 implements Runnable {
     @Nullable
     @Override
     public UniFile save(int index, @NonNull UniFile dir, @NonNull String filename) {
-        UniFile[] fileList = mFileList.get();
-        if (null == fileList || index < 0 || index >= fileList.length) {
+        UniFile src = getFile(index);
+        if (null == src) {
             return null;
         }
 
-        UniFile src = fileList[index];
         String extension = FileUtils.getExtensionFromFilename(src.getName());
         UniFile dst = dir.subFile(null != extension ? filename + "." + extension : filename);
         if (null == dst) {
@@ -169,36 +220,159 @@ public class DirGalleryProvider extends GalleryProvider2 implements Runnable {
         }
     }
 
-    @Override
-    public void run() {
-        // It may take a long time, so run it in new thread
-        UniFile[] files = mDir.listFiles(imageFilter);
+    /**
+     * Publishes names, and the size if it changes.
+     */
+    private void publish(@NonNull String[] names, boolean listed) {
+        int size;
+        List<Integer> changedPages = null;
+        synchronized (mRequests) {
+            mNames = names;
+            mListed = listed;
+            if (listed) {
+                size = names.length;
+                for (Map.Entry<Integer, String> entry : mProvisionalPages.entrySet()) {
+                    int index = entry.getKey();
+                    if (index >= names.length || !names[index].equals(entry.getValue())) {
+                        if (changedPages == null) {
+                            changedPages = new ArrayList<>();
+                        }
+                        changedPages.add(index);
+                    }
+                }
+                mProvisionalPages.clear();
+            } else {
+                size = Math.max(names.length, mEstimatedSize);
+            }
+            // Waiting requests might be ready
+            mRequests.notify();
+        }
+
+        if (changedPages != null) {
+            for (int index : changedPages) {
+                removeCache(index);
+            }
+        }
+        if (size != mSize || changedPages != null) {
+            mSize = size;
+            notifyDataChanged();
+        }
+    }
+
+    private void publishSize(int size) {
+        if (size != mSize) {
+            mSize = size;
+            notifyDataChanged();
+        }
+    }
+
+    private void list() {
+        String uri = mDir.getUri().toString();
+        long lastModified = mDir.lastModified();
+        // Last modified time of some document providers is 0, can't tell changes
+        boolean cacheable = lastModified > 0;
+
+        DirIndex savedIndex = readIndex(uri);
+        if (savedIndex != null) {
+            if (cacheable && savedIndex.getLastModified() == lastModified) {
+                publish(savedIndex.getNames(), true);
+                return;
+            }
+            // The directory changed, but the old size is a good guess
+            synchronized (mRequests) {
+                mEstimatedSize = savedIndex.getNames().length;
+            }
+            publishSize(savedIndex.getNames().length);
+        }
+
+        // It may take a long time, so publish names on the way
+        Lister lister = new Lister();
+        UniFile[] files = mDir.listFiles(lister);
 
         if (files == null) {
-            mSize = STATE_ERROR;
             mError = GetText.getString(R.string.error_not_folder_path);
+            synchronized (mRequests) {
+                mNames = new String[0];
+                mListed = true;
+                mRequests.notify();
+            }
+            mSize = STATE_ERROR;
 
             // Notify to to show error
             notifyDataChanged();
 
-            Log.i(TAG, "ImageDecoder end with error");
+            Log.i(TAG, "Lister end with error");
+            return;
+        }
+        if (Thread.currentThread().isInterrupted()) {
             return;
         }
 
-        // Sort it
-        Arrays.sort(files, naturalComparator);
+        String[] names = lister.getNames();
+        publish(names, true);
+        if (cacheable) {
+            writeIndex(new DirIndex(uri, lastModified, names));
+        }
+    }
 
-        // Put file list
-        mFileList.lazySet(files);
+    @Nullable
+    private DirIndex readIndex(String uri) {
+        InputStreamPipe pipe = mIndexCache.getInputStreamPipe(DirIndex.getKey(uri));
+        if (pipe == null) {
+            INDEX_MISS_COUNTER.inc();
+            return null;
+        }
+        try {
+            pipe.obtain();
+            DirIndex dirIndex = DirIndex.read(pipe.open(), uri);
+            (dirIndex != null ? INDEX_HIT_COUNTER : INDEX_MISS_COUNTER).inc();
+            return dirIndex;
+        } catch (IOException e) {
+            INDEX_MISS_COUNTER.inc();
+            return null;
+        } finally {
+            pipe.close();
+            pipe.release();
+        }
+    }
+
+    private void writeIndex(DirIndex dirIndex) {
+        OutputStreamPipe pipe = mIndexCache.getOutputStreamPipe(DirIndex.getKey(dirIndex.getUri()));
+        try {
+            pipe.obtain();
+            dirIndex.write(pipe.open());
+        } catch (IOException e) {
+            // Ignore
+        } finally {
+            pipe.close();
+            pipe.release();
+        }
+    }
 
-        // Set state normal and notify
-        mSize = files.length;
-        notifyDataChanged();
+    /**
+     * Pops the latest request that can be served now.
+     *
+     * @return {@link GalleryPageView#INVALID_INDEX} if none
+     */
+    private int popRequest() {
+        for (int i = mRequests.size() - 1; i >= 0; i--) {
+            int index = mRequests.get(i);
+            if (mListed || index < 0 || (mNames != null && index < mNames.length)) {
+                mRequests.remove(i);
+                return index;
+            }
+        }
+        return GalleryPageView.INVALID_INDEX;
+    }
 
+    @Override
+    public void run() {
         while (!Thread.currentThread().isInterrupted()) {
             int index;
+            String name;
             synchronized (mRequests) {
-                if (mRequests.isEmpty()) {
+                index = popRequest();
+                if (index == GalleryPageView.INVALID_INDEX) {
                     try {
                         mRequests.wait();
                     } catch (InterruptedException e) {
@@ -207,12 +381,13 @@ public class DirGalleryProvider extends GalleryProvider2 implements Runnable {
                     }
                     continue;
                 }
-                index = mRequests.pop();
+                name = mNames != null && index >= 0 && index < mNames.length ? mNames[index] : null;
                 mDecodingIndex.lazySet(index);
             }
 
             // Check index valid
-            if (index < 0 || index >= files.length) {
+            UniFile file = name != null ? mDir.subFile(name) : null;
+            if (file == null) {
                 mDecodingIndex.lazySet(GalleryPageView.INVALID_INDEX);
                 notifyPageFailed(index, GetText.getString(R.string.error_out_of_range));
                 continue;
@@ -220,11 +395,23 @@ public class DirGalleryProvider extends GalleryProvider2 implements Runnable {
 
             InputStream is = null;
             try {
-                is = files[index].openInputStream();
-                Image image = Image.decode(is, true);
+                is = file.openInputStream();
+                Image image = getPageDecoder().decode(index, is);
                 mDecodingIndex.lazySet(GalleryPageView.INVALID_INDEX);
                 if (image != null) {
-                    notifyPageSucceed(index, image);
+                    if (checkServed(index, name)) {
+                        notifyPageSucceed(index, image);
+                        // Listing may end between the check and the delivery,
+                        // removing the cache before the image is put
+                        if (!checkServed(index, name)) {
+                            removeCache(index);
+                            onRequest(index);
+                        }
+                    } else {
+                        // The order changed while decoding
+                        image.recycle();
+                        onRequest(index);
+                    }
                 } else {
                     notifyPageFailed(index, GetText.getString(R.string.error_decoding_failed));
                 }
@@ -237,20 +424,58 @@ public class DirGalleryProvider extends GalleryProvider2 implements Runnable {
             mDecodingIndex.lazySet(GalleryPageView.INVALID_INDEX);
         }
 
-        // Clear file list
-        mFileList.lazySet(null);
-
         Log.i(TAG, "ImageDecoder end");
     }
 
+    /**
+     * Checks whether the name is still at the index, and remembers it
+     * if listing isn't done.
+     */
+    private boolean checkServed(int index, String name) {
+        synchronized (mRequests) {
+            if (mNames == null || index >= mNames.length || !name.equals(mNames[index])) {
+                return false;
+            }
+            if (!mListed) {
+                mProvisionalPages.put(index, name);
+            }
+            return true;
+        }
+    }
+
     private static FilenameFilter imageFilter =
         (dir, name) -> StringUtils.endsWith(name.toLowerCase(), SUPPORT_IMAGE_EXTENSIONS);
 
-    private static Comparator<UniFile> naturalComparator = new Comparator<UniFile>() {
-        private NaturalComparator comparator = new NaturalComparator();
+    /**
+     * Collects image names and publishes them at intervals.
+     * It accepts nothing, UniFile objects of names aren't needed.
+     */
+    private class Lister implements FilenameFilter {
+
+        private final List<NaturalComparator.Key<String>> mKeys = new ArrayList<>();
+        private long mLastPublishTime = SystemClock.uptimeMillis();
+
         @Override
-        public int compare(UniFile o1, UniFile o2) {
-            return comparator.compare(o1.getName(), o2.getName());
+        public boolean accept(UniFile dir, String filename) {
+            if (!Thread.currentThread().isInterrupted() && imageFilter.accept(dir, filename)) {
+                mKeys.add(NaturalComparator.createKey(filename, filename));
+                long now = SystemClock.uptimeMillis();
+                if (now - mLastPublishTime >= PUBLISH_INTERVAL) {
+                    publish(getNames(), false);
+                    mLastPublishTime = now;
+                }
+            }
+            return false;
         }
-    };
+
+        String[] getNames() {
+            // Keys published last time are still a sorted run for TimSort
+            Collections.sort(mKeys);
+            String[] names = new String[mKeys.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = mKeys.get(i).value;
+            }
+            return names;
+        }
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.gallery;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Image file names of a directory in natural order.
+ * It's saved with the uri and last modified time of the directory.
+ * Adding, removing or renaming a file changes the last modified time,
+ * the saved one is only a guess of the size after that.
+ */
+class DirIndex {
+
+  private static final int VERSION = 1;
+  private static final int MAX_SIZE = 1 << 20;
+
+  private final String uri;
+  private final long lastModified;
+  private final String[] names;
+
+  DirIndex(String uri, long lastModified, String[] names) {
+    this.uri = uri;
+    this.lastModified = lastModified;
+    this.names = names;
+  }
+
+  static String getKey(String uri) {
+    return "dir_" + ArchiveIndex.hash(uri);
+  }
+
+  String getUri() {
+    return uri;
+  }
+
+  long getLastModified() {
+    return lastModified;
+  }
+
+  String[] getNames() {
+    return names;
+  }
+
+  /**
+   * @return null if it's invalid or for another directory
+   */
+  @Nullable
+  static DirIndex read(@NonNull InputStream is, String uri) {
+    try {
+      DataInputStream dis = new DataInputStream(is);
+      if (dis.readInt() != VERSION || !uri.equals(dis.readUTF())) {
+        return null;
+      }
+      long lastModified = dis.readLong();
+      int size = dis.readInt();
+      if (size < 0 || size > MAX_SIZE) {
+        return null;
+      }
+      String[] names = new String[size];
+      for (int i = 0; i < size; i++) {
+        names[i] = dis.readUTF();
+      }
+      return new DirIndex(uri, lastModified, names);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  void write(@NonNull OutputStream os) throws IOException {
+    DataOutputStream dos = new DataOutputStream(os);
+    dos.writeInt(VERSION);
+    dos.writeUTF(uri);
+    dos.writeLong(lastModified);
+    dos.writeInt(names.length);
+    for (String name : names) {
+      dos.writeUTF(name);
+    }
+    dos.flush();
+  }
+}
@@ -20,6 +20,7 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.hippo.ehviewer.client.data.GalleryInfo;
+import com.hippo.ehviewer.client.data.GalleryPreview;
 import com.hippo.ehviewer.spider.SpiderQueen;
 import com.hippo.glgallery.GalleryProvider;
 import com.hippo.image.Image;
@@ -29,6 +30,9 @@ import java.util.Locale;
 
 public class EhGalleryProvider extends GalleryProvider2 implements SpiderQueen.OnSpiderListener {
 
+    // Pages are downloaded to disk, so it could be more than other providers
+    private static final int MAX_READ_AHEAD = 20;
+
     private final Context mContext;
     private final GalleryInfo mGalleryInfo;
     @Nullable
@@ -45,6 +49,7 @@ public class EhGalleryProvider extends GalleryProvider2 implements SpiderQueen.O
 
         mSpiderQueen = SpiderQueen.obtainSpiderQueen(mContext, mGalleryInfo, SpiderQueen.MODE_READ);
         mSpiderQueen.addOnSpiderListener(this);
+        mSpiderQueen.setPageDecoder(getPageDecoder());
     }
 
     @Override
@@ -68,6 +73,16 @@ public class EhGalleryProvider extends GalleryProvider2 implements SpiderQueen.O
         }
     }
 
+    @Nullable
+    @Override
+    public GalleryPreview getPreview(int index) {
+        if (mSpiderQueen != null) {
+            return mSpiderQueen.getPreview(index);
+        } else {
+            return null;
+        }
+    }
+
     @NonNull
     @Override
     public String getImageFilename(int index) {
@@ -109,9 +124,22 @@ public class EhGalleryProvider extends GalleryProvider2 implements SpiderQueen.O
         }
     }
 
+    @Override
+    protected int getMaxReadAhead() {
+        return MAX_READ_AHEAD;
+    }
+
+    @Override
+    protected void onReadAhead(int index, int direction, int window) {
+        if (mSpiderQueen != null) {
+            mSpiderQueen.setPreload(direction, window);
+        }
+    }
+
     @Override
     protected void onRequest(int index) {
         if (mSpiderQueen != null) {
+            onPageRequested(index);
             Object object = mSpiderQueen.request(index);
             if (object instanceof Float) {
                 notifyPagePercent(index, (Float) object);
@@ -126,6 +154,7 @@ public class EhGalleryProvider extends GalleryProvider2 implements SpiderQueen.O
     @Override
     protected void onForceRequest(int index) {
         if (mSpiderQueen != null) {
+            onPageRequested(index);
             Object object = mSpiderQueen.forceRequest(index);
             if (object instanceof Float) {
                 notifyPagePercent(index, (Float) object);
@@ -139,6 +168,7 @@ public class EhGalleryProvider extends GalleryProvider2 implements SpiderQueen.O
 
     @Override
     protected void onCancelRequest(int index) {
+        onPageLoadFailed(index);
         if (mSpiderQueen != null) {
             mSpiderQueen.cancelRequest(index);
         }
@@ -177,6 +207,7 @@ public class EhGalleryProvider extends GalleryProvider2 implements SpiderQueen.O
 
     @Override
     public void onPageFailure(int index, String error, int finished, int downloaded, int total) {
+        onPageLoadFailed(index);
         notifyPageFailed(index, error);
     }
 
@@ -184,13 +215,20 @@ public class EhGalleryProvider extends GalleryProvider2 implements SpiderQueen.O
     public void onFinish(int finished, int downloaded, int total) {
     }
 
+    @Override
+    public void onGetPreviews(int previewIndex) {
+        notifyPreviewsChanged();
+    }
+
     @Override
     public void onGetImageSuccess(int index, Image image) {
+        onPageLoaded(index);
         notifyPageSucceed(index, image);
     }
 
     @Override
     public void onGetImageFailure(int index, String error) {
+        onPageLoadFailed(index);
         notifyPageFailed(index, error);
     }
 
@@ -16,11 +16,21 @@
 
 package com.hippo.ehviewer.gallery;
 
+import android.os.SystemClock;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import com.hippo.ehviewer.client.data.GalleryPreview;
 import com.hippo.glgallery.GalleryProvider;
 import com.hippo.unifile.UniFile;
+import com.hippo.yorozuya.SimpleHandler;
+import java.util.HashMap;
 
+/**
+ * Decoded pages are cached by {@link GalleryProvider}, and GL views recycle
+ * the images they get. Subclasses must not keep an image after notifying it,
+ * call {@link GalleryProvider#removeCache(int)} to decode a page again.
+ */
 public abstract class GalleryProvider2 extends GalleryProvider {
 
     // With dot
@@ -31,12 +41,145 @@ public abstract class GalleryProvider2 extends GalleryProvider {
             ".gif", // Graphics Interchange Format
     };
 
+    private final PageDecoder mPageDecoder = new PageDecoder();
+    private final ReadAhead mReadAhead = new ReadAhead();
+    // Page index to request time
+    private final HashMap<Integer, Long> mRequestTimes = new HashMap<>();
+    @Nullable
+    private PreviewListener mPreviewListener;
+
+    private final Runnable mNotifyPreviewsChanged = new Runnable() {
+        @Override
+        public void run() {
+            PreviewListener listener = mPreviewListener;
+            if (listener != null) {
+                listener.onPreviewsChanged();
+            }
+        }
+    };
+
     public int getStartPage() {
         return 0;
     }
 
     public void putStartPage(int page) {}
 
+    /**
+     * Called when the page shown changes, so pages near it could be loaded first.
+     */
+    public void setCurrentIndex(int index) {
+        mReadAhead.onUpdateCurrentIndex(index, SystemClock.uptimeMillis());
+        int maxWindow = getMaxReadAhead();
+        if (maxWindow > 0) {
+            onReadAhead(index, mReadAhead.getDirection(), mReadAhead.getWindow(maxWindow));
+        }
+    }
+
+    /**
+     * @return the max count of pages to load ahead, 0 for no read-ahead
+     */
+    protected int getMaxReadAhead() {
+        return 0;
+    }
+
+    /**
+     * Loads pages after {@code index} in {@code direction} before they are requested.
+     *
+     * @param direction 1 or -1
+     * @param window the count of pages
+     */
+    protected void onReadAhead(int index, int direction, int window) {}
+
+    /**
+     * Call it when a page is requested, to measure page load time.
+     */
+    protected void onPageRequested(int index) {
+        synchronized (mRequestTimes) {
+            if (!mRequestTimes.containsKey(index)) {
+                mRequestTimes.put(index, SystemClock.uptimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Call it when a requested page is loaded, to measure page load time.
+     */
+    protected void onPageLoaded(int index) {
+        Long time;
+        synchronized (mRequestTimes) {
+            time = mRequestTimes.remove(index);
+        }
+        if (time != null) {
+            mReadAhead.onPageLoaded(SystemClock.uptimeMillis() - time);
+        }
+    }
+
+    /**
+     * Call it when a requested page is failed or cancelled.
+     */
+    protected void onPageLoadFailed(int index) {
+        synchronized (mRequestTimes) {
+            mRequestTimes.remove(index);
+        }
+    }
+
+    @NonNull
+    protected PageDecoder getPageDecoder() {
+        return mPageDecoder;
+    }
+
+    /**
+     * Sets the size pages are shown in, so pages much larger than it are
+     * decoded at a sample size. Pass 0 for no limit in the dimension.
+     * Pages decoded smaller before are decoded again.
+     */
+    public void setDecodeTargetSize(int width, int height) {
+        for (int index : mPageDecoder.setTargetSize(width, height)) {
+            removeCache(index);
+            notifyDataChanged(index);
+        }
+    }
+
+    /**
+     * Decodes the page again in full size.
+     */
+    public void requestFullSize(int index) {
+        mPageDecoder.setFullSize(index);
+        removeCache(index);
+        forceRequest(index);
+    }
+
+    /**
+     * @return bytes of pixels not decoded in this session, thanks to sample sizes
+     */
+    public long getDecodeSavedBytes() {
+        return mPageDecoder.getSavedBytes();
+    }
+
+    /**
+     * Returns the small preview of the page, to show while scrubbing
+     * without requesting the page. It might start loading previews,
+     * {@link PreviewListener#onPreviewsChanged()} is called after that.
+     *
+     * @return null if it isn't loaded or there isn't one
+     */
+    @Nullable
+    public GalleryPreview getPreview(int index) {
+        return null;
+    }
+
+    @UiThread
+    public void setPreviewListener(@Nullable PreviewListener listener) {
+        mPreviewListener = listener;
+    }
+
+    /**
+     * Call it when more previews could be got, in any thread.
+     */
+    protected void notifyPreviewsChanged() {
+        SimpleHandler.getInstance().post(mNotifyPreviewsChanged);
+    }
+
     /**
      * @return without extension
      */
@@ -50,4 +193,10 @@ public abstract class GalleryProvider2 extends GalleryProvider {
      */
     @Nullable
     public abstract UniFile save(int index, @NonNull UniFile dir, @NonNull String filename);
+
+    public interface PreviewListener {
+
+        @UiThread
+        void onPreviewsChanged();
+    }
 }
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.gallery;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.hippo.image.Image;
+import com.hippo.util.BitmapUtils;
+import com.hippo.yorozuya.IOUtils;
+import com.hippo.yorozuya.MathUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes pages for the reader.
+ * <p>
+ * Bounds are decoded first. Most pages go to {@link Image#decode(InputStream, boolean)}
+ * as they are. Pages larger than the pixel budget, like long strips and
+ * huge originals, are decoded tile by tile with {@link BitmapRegionDecoder}
+ * at a sample size, so the full resolution page is never in memory.
+ * <p>
+ * With a target size, pages much larger than they are shown are decoded
+ * at a sample size too, unless they are asked in full size. Pages asked
+ * in full size go to {@link Image} even if they are larger than the pixel
+ * budget, as long as the system has memory for them.
+ */
+public final class PageDecoder {
+
+  private static final int BYTES_PER_PIXEL = 4;
+  // 64MB in ARGB_8888
+  private static final long MAX_PIXELS = 16 * 1024 * 1024;
+  // Rows of a decoded tile
+  private static final int TILE_HEIGHT = 512;
+  private static final int MAX_SAMPLE_SIZE = 32;
+
+  private static final String MIME_TYPE_GIF = "image/gif";
+
+  // Guards targetWidth, targetHeight, sampledPages and fullSizePages
+  private final Object lock = new Object();
+  private int targetWidth;
+  private int targetHeight;
+  // Page index to sample size, for pages decoded smaller than they are
+  private final Map<Integer, Integer> sampledPages = new HashMap<>();
+  private final Set<Integer> fullSizePages = new HashSet<>();
+  private final AtomicLong savedBytes = new AtomicLong();
+
+  /**
+   * Sets the size pages are shown in, 0 for no limit in the dimension.
+   * A page is decoded no smaller than the target in any limited dimension.
+   *
+   * @return indexes of pages decoded at a sample size, they might need more
+   * pixels now, decode them again
+   */
+  @NonNull
+  public List<Integer> setTargetSize(int width, int height) {
+    synchronized (lock) {
+      width = Math.max(0, width);
+      height = Math.max(0, height);
+      if (width == targetWidth && height == targetHeight) {
+        return new ArrayList<>();
+      }
+      targetWidth = width;
+      targetHeight = height;
+      List<Integer> pages = new ArrayList<>(sampledPages.keySet());
+      sampledPages.clear();
+      return pages;
+    }
+  }
+
+  /**
+   * Decodes the page in full size next time, like zoomed in.
+   */
+  public void setFullSize(int index) {
+    synchronized (lock) {
+      fullSizePages.add(index);
+    }
+  }
+
+  /**
+   * @return bytes of pixels not decoded, thanks to sample sizes
+   */
+  public long getSavedBytes() {
+    return savedBytes.get();
+  }
+
+  /**
+   * Decodes the page with the target size.
+   *
+   * @see #decode(InputStream, int, int, int[])
+   */
+  @Nullable
+  public Image decode(int index, @NonNull InputStream is) {
+    boolean fullSize;
+    int width;
+    int height;
+    synchronized (lock) {
+      fullSize = fullSizePages.contains(index);
+      width = fullSize ? 0 : targetWidth;
+      height = fullSize ? 0 : targetHeight;
+    }
+
+    int[] info = new int[3];
+    Image image = decode(is, width, height, fullSize, info);
+    if (image != null) {
+      int sampleSize = info[0];
+      synchronized (lock) {
+        if (sampleSize > 1) {
+          sampledPages.put(index, sampleSize);
+        } else {
+          sampledPages.remove(index);
+        }
+      }
+      if (sampleSize > 1) {
+        long pixels = (long) info[1] * info[2];
+        long sampledPixels = (long) MathUtils.ceilDivide(info[1], sampleSize) * MathUtils.ceilDivide(info[2], sampleSize);
+        savedBytes.addAndGet((pixels - sampledPixels) * BYTES_PER_PIXEL);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Decodes the page. The stream is closed when it's done, like
+   * {@link Image#decode(InputStream, boolean)}, partially decoded images
+   * might still read it.
+   *
+   * @param targetWidth the width the page is shown in, 0 for no limit
+   * @param targetHeight the height the page is shown in, 0 for no limit
+   * @param info sample size, width and height of the page are put in it if it's not null
+   */
+  @Nullable
+  public static Image decode(@NonNull InputStream is, int targetWidth, int targetHeight,
+      @Nullable int[] info) {
+    return decode(is, targetWidth, targetHeight, false, info);
+  }
+
+  @Nullable
+  private static Image decode(@NonNull InputStream is, int targetWidth, int targetHeight,
+      boolean fullSize, @Nullable int[] info) {
+    // However much the bounds decoder reads, like a huge header or
+    // a format only Image knows, the page can still be read from the start
+    RewindableInputStream rewindable = new RewindableInputStream(is);
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeStream(rewindable, null, options);
+    rewindable.rewind();
+    is = rewindable;
+
+    int width = options.outWidth;
+    int height = options.outHeight;
+    if (info != null) {
+      info[0] = 1;
+      info[1] = width;
+      info[2] = height;
+    }
+
+    // Unknown bounds and GIF go to Image as they are, it handles animation
+    if (width <= 0 || height <= 0 || MIME_TYPE_GIF.equals(options.outMimeType)) {
+      return Image.decode(is, true);
+    }
+    int minSampleSize = getTargetSampleSize(width, height, targetWidth, targetHeight);
+    if (minSampleSize == 1 && canDecodeWhole(width, height, fullSize,
+        fullSize ? BitmapUtils.availableSystemMemory() : 0)) {
+      return Image.decode(is, true);
+    }
+
+    try {
+      return decodeTiled(is, width, height, minSampleSize, info);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  /**
+   * Pixels of {@link Image} are in native memory. A page in full size
+   * may take half of what the system has left.
+   */
+  static boolean canDecodeWhole(int width, int height, boolean fullSize, long availableMemory) {
+    long pixels = (long) width * height;
+    return pixels <= MAX_PIXELS || (fullSize && pixels * BYTES_PER_PIXEL <= availableMemory / 2);
+  }
+
+  /**
+   * The bitmap of tiled decoding is in Java heap before Android O,
+   * so it can't take all of it.
+   */
+  private static long getMaxTiledPixels() {
+    long heapPixels = BitmapUtils.availableMemory() / BYTES_PER_PIXEL / 2;
+    return Math.max(0, Math.min(MAX_PIXELS, heapPixels));
+  }
+
+  /**
+   * @return the smallest power of 2 that makes the page fit in {@code maxPixels}
+   */
+  static int getSampleSize(int width, int height, long maxPixels) {
+    int sampleSize = 1;
+    while (sampleSize < MAX_SAMPLE_SIZE
+        && (long) MathUtils.ceilDivide(width, sampleSize) * MathUtils.ceilDivide(height, sampleSize) > maxPixels) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  /**
+   * @return the largest power of 2 that keeps the page no smaller than the
+   * target in any limited dimension
+   */
+  static int getTargetSampleSize(int width, int height, int targetWidth, int targetHeight) {
+    int sampleSize = 1;
+    while (sampleSize < MAX_SAMPLE_SIZE
+        && ((targetWidth > 0 && width / (sampleSize * 2) >= targetWidth)
+        || (targetHeight > 0 && height / (sampleSize * 2) >= targetHeight))) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  @Nullable
+  private static Image decodeTiled(InputStream is, int width, int height, int minSampleSize,
+      @Nullable int[] info) {
+    BitmapRegionDecoder decoder;
+    try {
+      decoder = BitmapRegionDecoder.newInstance(is, false);
+    } catch (IOException e) {
+      return null;
+    }
+    if (decoder == null) {
+      return null;
+    }
+
+    try {
+      // Try a larger sample size if out of memory
+      int sampleSize = Math.max(minSampleSize, getSampleSize(width, height, getMaxTiledPixels()));
+      for (; sampleSize <= MAX_SAMPLE_SIZE; sampleSize *= 2) {
+        Bitmap bitmap = null;
+        try {
+          bitmap = decodeTiles(decoder, width, height, sampleSize);
+          if (bitmap == null) {
+            return null;
+          }
+          if (info != null) {
+            info[0] = sampleSize;
+          }
+          return Image.create(bitmap);
+        } catch (OutOfMemoryError e) {
+          // Ignore
+        } finally {
+          if (bitmap != null) {
+            bitmap.recycle();
+          }
+        }
+      }
+      return null;
+    } finally {
+      decoder.recycle();
+    }
+  }
+
+  @Nullable
+  private static Bitmap decodeTiles(BitmapRegionDecoder decoder, int width, int height, int sampleSize) {
+    Bitmap bitmap = Bitmap.createBitmap(MathUtils.ceilDivide(width, sampleSize),
+        MathUtils.ceilDivide(height, sampleSize), Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inSampleSize = sampleSize;
+    options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+    Rect rect = new Rect();
+
+    // Tiles are full width strips, a multiple of sample size high,
+    // so they line up in the bitmap
+    int tileHeight = TILE_HEIGHT * sampleSize;
+    for (int top = 0; top < height; top += tileHeight) {
+      Bitmap tile = null;
+      try {
+        if (Thread.currentThread().isInterrupted()) {
+          bitmap.recycle();
+          return null;
+        }
+        rect.set(0, top, width, Math.min(height, top + tileHeight));
+        tile = decoder.decodeRegion(rect, options);
+        if (tile == null) {
+          bitmap.recycle();
+          return null;
+        }
+        canvas.drawBitmap(tile, 0, top / sampleSize, null);
+      } catch (OutOfMemoryError e) {
+        bitmap.recycle();
+        throw e;
+      } finally {
+        if (tile != null) {
+          tile.recycle();
+        }
+      }
+    }
+
+    return bitmap;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.gallery;
+
+/**
+ * Estimates how many pages should be loaded ahead, so the next page is
+ * ready before the reader flips to it.
+ * <p>
+ * Page index always grows in reading order, whatever the layout mode is,
+ * so the direction here is the direction in index.
+ */
+class ReadAhead {
+
+  private static final float ALPHA = 0.3f;
+
+  // Jumps by slider or page dialog aren't flips
+  private static final int MAX_FLIP_DELTA = 2;
+  // The reader may take a break
+  private static final long MAX_FLIP_INTERVAL = 30 * 1000;
+
+  private int lastIndex = -1;
+  private long lastTime;
+
+  private float flipInterval = MAX_FLIP_INTERVAL;
+  private float loadTime;
+  // Moving average of +1 and -1
+  private float direction = 1.0f;
+
+  synchronized void onUpdateCurrentIndex(int index, long time) {
+    if (lastIndex >= 0) {
+      int delta = index - lastIndex;
+      if (delta != 0 && Math.abs(delta) <= MAX_FLIP_DELTA) {
+        float interval = (float) Math.min(time - lastTime, MAX_FLIP_INTERVAL) / Math.abs(delta);
+        flipInterval += ALPHA * (interval - flipInterval);
+        direction += ALPHA * (Integer.signum(delta) - direction);
+      }
+    }
+    lastIndex = index;
+    lastTime = time;
+  }
+
+  /**
+   * @param time the time from request to page loaded, in milliseconds
+   */
+  synchronized void onPageLoaded(long time) {
+    if (loadTime == 0.0f) {
+      loadTime = time;
+    } else {
+      loadTime += ALPHA * (time - loadTime);
+    }
+  }
+
+  /**
+   * @return 1 for reading forward, -1 for reading backward
+   */
+  synchronized int getDirection() {
+    return direction >= 0.0f ? 1 : -1;
+  }
+
+  /**
+   * @return the count of pages to load ahead, in [1, maxWindow]
+   */
+  synchronized int getWindow(int maxWindow) {
+    int window = (int) Math.ceil(loadTime / Math.max(1.0f, flipInterval)) + 1;
+    return Math.max(1, Math.min(window, maxWindow));
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer.gallery;
+
+import androidx.annotation.NonNull;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Keeps the bytes read until {@link #rewind()}, then reads them again
+ * before the rest of the stream. Unlike {@link InputStream#reset()},
+ * it never runs out of a mark limit.
+ */
+final class RewindableInputStream extends InputStream {
+
+  private static final int INITIAL_SIZE = 8 * 1024;
+
+  private final InputStream in;
+  private byte[] buffer = new byte[INITIAL_SIZE];
+  // Bytes kept
+  private int count;
+  // Position in the bytes kept, -1 before rewind
+  private int position = -1;
+
+  RewindableInputStream(@NonNull InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * Reads from the start again. It can be called only once.
+   */
+  void rewind() {
+    if (position != -1) {
+      throw new IllegalStateException("Already rewound");
+    }
+    position = 0;
+    if (count == 0) {
+      buffer = null;
+    }
+  }
+
+  private void keep(byte[] b, int off, int len) {
+    if (count + len > buffer.length) {
+      byte[] newBuffer = new byte[Math.max(buffer.length * 2, count + len)];
+      System.arraycopy(buffer, 0, newBuffer, 0, count);
+      buffer = newBuffer;
+    }
+    System.arraycopy(b, off, buffer, count, len);
+    count += len;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    int n = read(b, 0, 1);
+    return n == -1 ? -1 : b[0] & 0xff;
+  }
+
+  @Override
+  public int read(@NonNull byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+
+    if (buffer != null && position != -1) {
+      // Replay
+      int n = Math.min(len, count - position);
+      System.arraycopy(buffer, position, b, off, n);
+      position += n;
+      if (position == count) {
+        buffer = null;
+      }
+      return n;
+    }
+
+    int n = in.read(b, off, len);
+    if (n > 0 && position == -1) {
+      keep(b, off, n);
+    }
+    return n;
+  }
+
+  @Override
+  public int available() throws IOException {
+    int kept = buffer != null && position != -1 ? count - position : 0;
+    return kept + in.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    buffer = null;
+    in.close();
+  }
+}
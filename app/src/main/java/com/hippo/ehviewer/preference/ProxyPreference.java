@@ -176,9 +176,7 @@ public class ProxyPreference extends DialogPreference implements View.OnClickLis
         }
         mPortInputLayout.setError(null);
 
-        Settings.putProxyType(type);
-        Settings.putProxyIp(ip);
-        Settings.putProxyPort(port);
+        Settings.putProxy(type, ip, port);
 
         updateSummary(type, ip, port);
 
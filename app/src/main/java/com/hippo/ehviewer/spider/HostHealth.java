@@ -0,0 +1,185 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer.spider;
+
+import androidx.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers how image servers behaved, so that a page on a known-bad
+ * H@H node can be moved to another node before trying it.
+ * <p>
+ * Each host has an EWMA of time to first byte, an EWMA of error rate
+ * and a circuit breaker. The breaker opens when the host looks bad, and
+ * lets one trial request through after a cool-down which doubles every
+ * time the trial fails.
+ */
+class HostHealth {
+
+  private static final int MAX_HOSTS = 256;
+
+  // Weight of the latest sample
+  private static final float ALPHA = 0.25f;
+
+  private static final int MIN_SAMPLES = 4;
+  private static final int MAX_CONSECUTIVE_FAILURES = 3;
+  private static final float MAX_ERROR_RATE = 0.5f;
+  private static final long MAX_LATENCY = TimeUnit.SECONDS.toNanos(10);
+
+  private static final long MIN_COOL_DOWN = TimeUnit.SECONDS.toNanos(30);
+  private static final long MAX_COOL_DOWN = TimeUnit.MINUTES.toNanos(10);
+  // Let another trial through if the last one never reported
+  private static final long TRIAL_TIMEOUT = TimeUnit.MINUTES.toNanos(1);
+
+  private static final int STATE_CLOSED = 0;
+  private static final int STATE_OPEN = 1;
+  private static final int STATE_HALF_OPEN = 2;
+
+  // Access order, the least recently used host is dropped
+  private final LinkedHashMap<String, Host> hosts = new LinkedHashMap<String, Host>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Host> eldest) {
+      return size() > MAX_HOSTS;
+    }
+  };
+
+  long now() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Returns {@code false} if requests to the host should be avoided.
+   * Once the cool-down is over, it returns {@code true} for one trial request.
+   */
+  public synchronized boolean isAvailable(@Nullable String host) {
+    Host h = host != null ? hosts.get(host) : null;
+    if (h == null) {
+      return true;
+    }
+    long now = now();
+    switch (h.state) {
+      case STATE_OPEN:
+        if (now - h.openedAt < h.coolDown) {
+          return false;
+        }
+        h.state = STATE_HALF_OPEN;
+        h.trialAt = now;
+        return true;
+      case STATE_HALF_OPEN:
+        if (now - h.trialAt < TRIAL_TIMEOUT) {
+          // Wait for the trial request
+          return false;
+        }
+        h.trialAt = now;
+        return true;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Returns the usual time to the response of the host in nanoseconds,
+   * or {@code -1} if it's unknown.
+   */
+  public synchronized long getLatency(@Nullable String host) {
+    Host h = host != null ? hosts.get(host) : null;
+    return h != null && h.latency > 0 ? h.latency : -1;
+  }
+
+  /**
+   * Records a successful request.
+   *
+   * @param latency nanoseconds to the response
+   */
+  public synchronized void onSuccess(@Nullable String host, long latency) {
+    if (host == null) {
+      return;
+    }
+    Host h = obtain(host);
+    // No latency before the first success
+    h.latency = h.latency == 0 ? latency : (long) (h.latency + ALPHA * (latency - h.latency));
+    h.errorRate -= ALPHA * h.errorRate;
+    h.consecutiveFailures = 0;
+    h.samples++;
+
+    if (h.state == STATE_HALF_OPEN && latency < MAX_LATENCY) {
+      // The host is back, start from fresh statistics
+      h.state = STATE_CLOSED;
+      h.latency = latency;
+      h.errorRate = 0.0f;
+      h.samples = 1;
+      h.coolDown = MIN_COOL_DOWN;
+    } else {
+      update(h);
+    }
+  }
+
+  /**
+   * Records a failed request, like a bad status code, an IO error
+   * or an incomplete body.
+   */
+  public synchronized void onFailure(@Nullable String host) {
+    if (host == null) {
+      return;
+    }
+    Host h = obtain(host);
+    h.errorRate += ALPHA * (1.0f - h.errorRate);
+    h.consecutiveFailures++;
+    h.samples++;
+    update(h);
+  }
+
+  private Host obtain(String host) {
+    Host h = hosts.get(host);
+    if (h == null) {
+      h = new Host();
+      hosts.put(host, h);
+    }
+    return h;
+  }
+
+  private void update(Host h) {
+    if (h.state == STATE_HALF_OPEN) {
+      // The trial failed
+      h.coolDown = Math.min(h.coolDown * 2, MAX_COOL_DOWN);
+      h.state = STATE_OPEN;
+      h.openedAt = now();
+    } else if (h.state == STATE_CLOSED && isBad(h)) {
+      h.state = STATE_OPEN;
+      h.openedAt = now();
+    }
+  }
+
+  private static boolean isBad(Host h) {
+    return h.consecutiveFailures >= MAX_CONSECUTIVE_FAILURES ||
+        (h.samples >= MIN_SAMPLES && (h.errorRate >= MAX_ERROR_RATE || h.latency >= MAX_LATENCY));
+  }
+
+  private static class Host {
+    private int state = STATE_CLOSED;
+    private long latency;
+    private float errorRate;
+    private int consecutiveFailures;
+    private int samples;
+    private long openedAt;
+    private long trialAt;
+    private long coolDown = MIN_COOL_DOWN;
+  }
+}
@@ -22,6 +22,7 @@ import android.webkit.MimeTypeMap;
 import androidx.annotation.Nullable;
 import com.hippo.beerbelly.SimpleDiskCache;
 import com.hippo.ehviewer.EhDB;
+import com.hippo.ehviewer.Metrics;
 import com.hippo.ehviewer.Settings;
 import com.hippo.ehviewer.client.EhCacheKeyFactory;
 import com.hippo.ehviewer.client.EhUtils;
@@ -52,6 +53,11 @@ public final class SpiderDen {
     @Nullable
     private static SimpleDiskCache sCache;
 
+    private static final Metrics.Counter CACHE_HIT_COUNTER = Metrics.counter("cache.image.hit");
+    private static final Metrics.Counter CACHE_MISS_COUNTER = Metrics.counter("cache.image.miss");
+    // Looking up a page in the cache and the download dir
+    private static final Metrics.Timer CONTAIN_TIMER = Metrics.timer("spider_den.contain");
+
     public static void initialize(Context context) {
         sCache = new SimpleDiskCache(new File(context.getCacheDir(), "image"),
                 MathUtils.clamp(Settings.getReadCacheSize(), 40, 640) * 1024 * 1024);
@@ -155,7 +161,9 @@ public final class SpiderDen {
         }
 
         String key = EhCacheKeyFactory.getImageKey(mGid, index);
-        return sCache.contain(key);
+        boolean contain = sCache.contain(key);
+        (contain ? CACHE_HIT_COUNTER : CACHE_MISS_COUNTER).inc();
+        return contain;
     }
 
     /**
@@ -248,12 +256,17 @@ public final class SpiderDen {
     }
 
     public boolean contain(int index) {
-        if (mMode == SpiderQueen.MODE_READ) {
-            return containInCache(index) || containInDownloadDir(index);
-        } else if (mMode == SpiderQueen.MODE_DOWNLOAD) {
-            return containInDownloadDir(index) || copyFromCacheToDownloadDir(index);
-        } else {
-            return false;
+        long start = System.nanoTime();
+        try {
+            if (mMode == SpiderQueen.MODE_READ) {
+                return containInCache(index) || containInDownloadDir(index);
+            } else if (mMode == SpiderQueen.MODE_DOWNLOAD) {
+                return containInDownloadDir(index) || copyFromCacheToDownloadDir(index);
+            } else {
+                return false;
+            }
+        } finally {
+            CONTAIN_TIMER.stop(start);
         }
     }
 
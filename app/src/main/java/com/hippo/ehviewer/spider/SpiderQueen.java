@@ -31,12 +31,14 @@ import androidx.annotation.UiThread;
 import com.hippo.beerbelly.SimpleDiskCache;
 import com.hippo.ehviewer.EhApplication;
 import com.hippo.ehviewer.GetText;
+import com.hippo.ehviewer.Metrics;
 import com.hippo.ehviewer.R;
 import com.hippo.ehviewer.Settings;
 import com.hippo.ehviewer.client.EhEngine;
 import com.hippo.ehviewer.client.EhRequestBuilder;
 import com.hippo.ehviewer.client.EhUrl;
 import com.hippo.ehviewer.client.data.GalleryInfo;
+import com.hippo.ehviewer.client.data.GalleryPreview;
 import com.hippo.ehviewer.client.data.PreviewSet;
 import com.hippo.ehviewer.client.exception.Image509Exception;
 import com.hippo.ehviewer.client.exception.ParseException;
@@ -45,6 +47,7 @@ import com.hippo.ehviewer.client.parser.GalleryPageApiParser;
 import com.hippo.ehviewer.client.parser.GalleryPageParser;
 import com.hippo.ehviewer.client.parser.GalleryPageUrlParser;
 import com.hippo.ehviewer.gallery.GalleryProvider2;
+import com.hippo.ehviewer.gallery.PageDecoder;
 import com.hippo.glgallery.GalleryPageView;
 import com.hippo.glgallery.GalleryProvider;
 import com.hippo.image.Image;
@@ -63,21 +66,26 @@ import com.hippo.yorozuya.thread.PriorityThread;
 import com.hippo.yorozuya.thread.PriorityThreadFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import okhttp3.Call;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -91,6 +99,34 @@ public final class SpiderQueen implements Runnable {
     private static final boolean DEBUG_LOG = false;
     private static final boolean DEBUG_PTOKEN = true;
 
+    // From requesting an image to writing all of it
+    private static final Metrics.Timer DOWNLOAD_TIMER = Metrics.timer("spider.download");
+    private static final Metrics.Histogram DOWNLOAD_SIZE = Metrics.histogram("spider.download_bytes");
+    private static final Metrics.Counter DOWNLOAD_FAILURE_COUNTER = Metrics.counter("spider.download_failure");
+    private static final Metrics.Timer DECODE_TIMER = Metrics.timer("spider.decode");
+    private static final Metrics.Counter SKIP_BAD_HOST_COUNTER = Metrics.counter("spider.skip_bad_host");
+    private static final Metrics.Counter HEDGE_COUNTER = Metrics.counter("spider.hedge");
+    private static final Metrics.Counter HEDGE_WIN_COUNTER = Metrics.counter("spider.hedge_win");
+
+    // Image server health, shared by all queens
+    private static final HostHealth sHostHealth = new HostHealth();
+
+    // Used if the image server has no latency yet
+    private static final long DEFAULT_LATENCY = TimeUnit.SECONDS.toNanos(1);
+    // Stall timeout bounds, below OkHttp read timeout
+    private static final long MIN_STALL_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_STALL_TIMEOUT = TimeUnit.SECONDS.toNanos(8);
+
+    // Watches stalled downloads for hedges, shared by all queens
+    private static final ScheduledThreadPoolExecutor sHedgeScheduler;
+
+    static {
+        sHedgeScheduler = new ScheduledThreadPoolExecutor(1,
+                new PriorityThreadFactory("SpiderHedge", Process.THREAD_PRIORITY_BACKGROUND));
+        sHedgeScheduler.setKeepAliveTime(10, TimeUnit.SECONDS);
+        sHedgeScheduler.allowCoreThreadTimeOut(true);
+    }
+
     @IntDef({MODE_READ, MODE_DOWNLOAD})
     @Retention(RetentionPolicy.SOURCE)
     public @interface Mode {}
@@ -147,6 +183,12 @@ public final class SpiderQueen implements Runnable {
     private final AtomicReference<SpiderInfo> mSpiderInfo = new AtomicReference<>();
     private final Queue<Integer> mRequestPTokenQueue = new ConcurrentLinkedQueue<>();
 
+    // Preview page index to preview set, for scrubbing. Guards the two below
+    private final SparseArray<PreviewSet> mPreviewSets = new SparseArray<>();
+    // Only one preview page is loaded at a time, the latest wanted one waits
+    private int mLoadingPreviewIndex = -1;
+    private int mPendingPreviewIndex = -1;
+
     private final Object mPageStateLock = new Object();
     private volatile int[] mPageStateArray;
 
@@ -174,15 +216,24 @@ public final class SpiderQueen implements Runnable {
 
     private final int mWorkerMaxCount;
     private final int mPreloadNumber;
+    // Set by read-ahead, preload pages backward if it's -1
+    private volatile int mPreloadDirection = 1;
+    private volatile int mPreloadCount;
+    // Set by the reader, it knows the size pages are shown in
+    @NonNull
+    private volatile PageDecoder mPageDecoder = new PageDecoder();
 
     private SpiderQueen(EhApplication application, @NonNull GalleryInfo galleryInfo) {
         mHttpClient = EhApplication.getOkHttpClient(application);
         mSpiderInfoCache = EhApplication.getSpiderInfoCache(application);
+        // Opened in background after startup, it's usually done
+        EhApplication.getStartup(application).ensure(EhApplication.STARTUP_IMAGE_CACHE);
         mGalleryInfo = galleryInfo;
         mSpiderDen = new SpiderDen(mGalleryInfo);
 
         mWorkerMaxCount = MathUtils.clamp(Settings.getMultiThreadDownload(), 1, 10);
         mPreloadNumber = MathUtils.clamp(Settings.getPreloadImage(), 0, 100);
+        mPreloadCount = mPreloadNumber;
 
         for (int i = 0; i < DECODE_THREAD_NUM; i++) {
             mDecodeIndexArray[i] = GalleryPageView.INVALID_INDEX;
@@ -268,6 +319,14 @@ public final class SpiderQueen implements Runnable {
         }
     }
 
+    private void notifyGetPreviews(int previewIndex) {
+        synchronized (mSpiderListeners) {
+            for (OnSpiderListener listener : mSpiderListeners) {
+                listener.onGetPreviews(previewIndex);
+            }
+        }
+    }
+
     private void notifyGetImageSuccess(int index, Image image) {
         synchronized (mSpiderListeners) {
             for (OnSpiderListener listener : mSpiderListeners) {
@@ -431,6 +490,21 @@ public final class SpiderQueen implements Runnable {
         }
     }
 
+    /**
+     * Updates preload pages for the next request. The user setting is
+     * the least count, and 0 in the setting disables preload.
+     *
+     * @param direction 1 or -1
+     */
+    public void setPreload(int direction, int count) {
+        mPreloadDirection = direction;
+        mPreloadCount = mPreloadNumber == 0 ? 0 : Math.max(mPreloadNumber, count);
+    }
+
+    public void setPageDecoder(@NonNull PageDecoder pageDecoder) {
+        mPageDecoder = pageDecoder;
+    }
+
     public Object forceRequest(int index) {
         return request(index, true, true, false);
     }
@@ -521,9 +595,14 @@ public final class SpiderQueen implements Runnable {
                 } else {
                     size = Integer.MAX_VALUE;
                 }
-                for (int i = index + 1, n = index + 1 + mPreloadNumber; i < n && i < size; i++) {
-                    if (STATE_NONE == getPageState(i)) {
-                        mRequestPageQueue2.add(i);
+                int direction = mPreloadDirection;
+                for (int i = 1, n = mPreloadCount; i <= n; i++) {
+                    int page = index + direction * i;
+                    if (page < 0 || page >= size) {
+                        break;
+                    }
+                    if (STATE_NONE == getPageState(page)) {
+                        mRequestPageQueue2.add(page);
                     }
                 }
             }
@@ -716,6 +795,9 @@ public final class SpiderQueen implements Runnable {
         spiderInfo.pages = GalleryDetailParser.parsePages(body);
         spiderInfo.previewPages = GalleryDetailParser.parsePreviewPages(body);
         PreviewSet previewSet = GalleryDetailParser.parsePreviewSet(body);
+        synchronized (mPreviewSets) {
+            mPreviewSets.put(index, previewSet);
+        }
 
         if (previewSet.size() > 0) {
             if (index == 0) {
@@ -756,15 +838,9 @@ public final class SpiderQueen implements Runnable {
         }
     }
 
-    private String getPTokenFromInternet(int index) {
-        SpiderInfo spiderInfo = mSpiderInfo.get();
-        if (spiderInfo == null) {
-            return null;
-        }
-
-        // Check previewIndex
+    private static int getPreviewIndex(SpiderInfo spiderInfo, int index) {
         int previewIndex;
-        if (spiderInfo.previewPerPage >= 0) {
+        if (spiderInfo.previewPerPage > 0) {
             previewIndex = index / spiderInfo.previewPerPage;
         } else {
             previewIndex = 0;
@@ -772,22 +848,35 @@ public final class SpiderQueen implements Runnable {
         if (spiderInfo.previewPages > 0) {
             previewIndex = Math.min(previewIndex, spiderInfo.previewPages - 1);
         }
+        return previewIndex;
+    }
 
-        try {
-            String url = EhUrl.getGalleryDetailUrl(
-                    mGalleryInfo.gid, mGalleryInfo.token, previewIndex, false);
-            String referer = EhUrl.getReferer();
-            if (DEBUG_PTOKEN) {
-                Log.d(TAG, "index " + index + ", previewIndex " + previewIndex +
-                        ", previewPerPage " + spiderInfo.previewPerPage+ ", url " + url);
-            }
-            Request request = new EhRequestBuilder(url, referer).build();
-            Response response = mHttpClient.newCall(request).execute();
-            String body = response.body().string();
-            readPreviews(body, previewIndex, spiderInfo);
+    private void readPreviewsFromInternet(int previewIndex, SpiderInfo spiderInfo)
+            throws IOException, ParseException {
+        String url = EhUrl.getGalleryDetailUrl(
+                mGalleryInfo.gid, mGalleryInfo.token, previewIndex, false);
+        String referer = EhUrl.getReferer();
+        if (DEBUG_PTOKEN) {
+            Log.d(TAG, "previewIndex " + previewIndex +
+                    ", previewPerPage " + spiderInfo.previewPerPage+ ", url " + url);
+        }
+        Request request = new EhRequestBuilder(url, referer).build();
+        Response response = mHttpClient.newCall(request).execute();
+        String body = response.body().string();
+        readPreviews(body, previewIndex, spiderInfo);
+
+        // Save to local
+        writeSpiderInfoToLocal(spiderInfo);
+    }
 
-            // Save to local
-            writeSpiderInfoToLocal(spiderInfo);
+    private String getPTokenFromInternet(int index) {
+        SpiderInfo spiderInfo = mSpiderInfo.get();
+        if (spiderInfo == null) {
+            return null;
+        }
+
+        try {
+            readPreviewsFromInternet(getPreviewIndex(spiderInfo, index), spiderInfo);
 
             String pToken;
             synchronized (mPTokenLock) {
@@ -800,6 +889,48 @@ public final class SpiderQueen implements Runnable {
         }
     }
 
+    /**
+     * Returns the preview of the page from the preview sets read so far.
+     * If the preview set of the page isn't read, it's loaded in background,
+     * {@link OnSpiderListener#onGetPreviews(int)} is called after that.
+     *
+     * @return null if it isn't loaded yet
+     */
+    @Nullable
+    public GalleryPreview getPreview(int index) {
+        SpiderInfo spiderInfo = mSpiderInfo.get();
+        if (spiderInfo == null) {
+            return null;
+        }
+
+        int previewIndex = getPreviewIndex(spiderInfo, index);
+        PreviewSet previewSet;
+        boolean load = false;
+        synchronized (mPreviewSets) {
+            previewSet = mPreviewSets.get(previewIndex);
+            if (previewSet == null && previewIndex != mLoadingPreviewIndex) {
+                if (mLoadingPreviewIndex == -1) {
+                    mLoadingPreviewIndex = previewIndex;
+                    load = true;
+                } else {
+                    mPendingPreviewIndex = previewIndex;
+                }
+            }
+        }
+        if (load) {
+            IoThreadPoolExecutor.getInstance().execute(new PreviewTask(previewIndex, spiderInfo));
+        }
+
+        if (previewSet != null) {
+            for (int i = 0, n = previewSet.size(); i < n; i++) {
+                if (previewSet.getPosition(i) == index) {
+                    return previewSet.getGalleryPreview(mGalleryInfo.gid, i);
+                }
+            }
+        }
+        return null;
+    }
+
     private synchronized void writeSpiderInfoToLocal(@NonNull SpiderInfo spiderInfo) {
         // Write to download dir
         UniFile downloadDir = mSpiderDen.getDownloadDir();
@@ -1007,6 +1138,229 @@ public final class SpiderQueen implements Runnable {
         }
     }
 
+    private class PreviewTask implements Runnable {
+
+        private int mPreviewIndex;
+        private final SpiderInfo mSpiderInfo;
+
+        public PreviewTask(int previewIndex, SpiderInfo spiderInfo) {
+            mPreviewIndex = previewIndex;
+            mSpiderInfo = spiderInfo;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                boolean success;
+                try {
+                    readPreviewsFromInternet(mPreviewIndex, mSpiderInfo);
+                    success = true;
+                } catch (Throwable e) {
+                    ExceptionUtils.throwIfFatal(e);
+                    success = false;
+                }
+                if (success) {
+                    notifyGetPreviews(mPreviewIndex);
+                }
+
+                synchronized (mPreviewSets) {
+                    int pending = mPendingPreviewIndex;
+                    mPendingPreviewIndex = -1;
+                    if (pending == -1 || mPreviewSets.get(pending) != null) {
+                        mLoadingPreviewIndex = -1;
+                        return;
+                    }
+                    mLoadingPreviewIndex = pending;
+                    mPreviewIndex = pending;
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static String getExtension(ResponseBody responseBody) {
+        String extension = null;
+        MediaType mediaType = responseBody.contentType();
+        if (mediaType != null) {
+            extension = MimeTypeMap.getSingleton().getExtensionFromMimeType(mediaType.toString());
+        }
+        // Ensure extension
+        if (!Utilities.contain(GalleryProvider2.SUPPORT_IMAGE_EXTENSIONS, extension)) {
+            extension = GalleryProvider2.SUPPORT_IMAGE_EXTENSIONS[0];
+        }
+        return extension;
+    }
+
+    private static long getStallTimeout(String host, int multiple) {
+        long latency = sHostHealth.getLatency(host);
+        if (latency < 0) {
+            latency = DEFAULT_LATENCY;
+        }
+        return Math.max(MIN_STALL_TIMEOUT, Math.min(MAX_STALL_TIMEOUT, latency * multiple));
+    }
+
+    /**
+     * Races a request through another H@H node against a stalled one.
+     * <p>
+     * The watchdog starts the hedge if the primary request gets no bytes
+     * for the stall timeout. The hedge gets a page url with the skip hath key,
+     * downloads the image to memory, and cancels the primary request if it
+     * finishes first. The primary request cancels the hedge if it finishes first.
+     */
+    private class Hedge implements Runnable {
+
+        private final String mPageUrl;
+        private final long mStallTimeout;
+
+        private volatile long mLastProgress;
+        private Call mPrimaryCall;
+        private Future<?> mWatchdog;
+
+        // Guarded by this
+        private boolean mStarted;
+        private boolean mFinished;
+        private boolean mCancelled;
+        private Call mCall;
+        private byte[] mData;
+        private String mExtension;
+
+        private final Runnable mCheckTask = this::check;
+
+        public Hedge(String pageUrl, long stallTimeout) {
+            mPageUrl = pageUrl;
+            mStallTimeout = stallTimeout;
+        }
+
+        /**
+         * Starts watching the primary request. Call it before executing it.
+         */
+        public synchronized void watch(Call primaryCall) {
+            mPrimaryCall = primaryCall;
+            mLastProgress = System.nanoTime();
+            mWatchdog = sHedgeScheduler.schedule(mCheckTask, mStallTimeout, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * The primary request got some bytes.
+         */
+        public void onProgress() {
+            mLastProgress = System.nanoTime();
+        }
+
+        private synchronized void check() {
+            if (mCancelled || mStarted) {
+                return;
+            }
+            long stall = System.nanoTime() - mLastProgress;
+            if (stall < mStallTimeout) {
+                mWatchdog = sHedgeScheduler.schedule(mCheckTask, mStallTimeout - stall, TimeUnit.NANOSECONDS);
+                return;
+            }
+            mStarted = true;
+            HEDGE_COUNTER.inc();
+            IoThreadPoolExecutor.getInstance().execute(this);
+        }
+
+        private synchronized void stopWatching() {
+            if (mWatchdog != null) {
+                mWatchdog.cancel(false);
+                mWatchdog = null;
+            }
+        }
+
+        /**
+         * Cancels the hedge, for the primary request finished or the worker stops.
+         */
+        public synchronized void cancel() {
+            stopWatching();
+            mCancelled = true;
+            if (mCall != null) {
+                mCall.cancel();
+            }
+        }
+
+        /**
+         * Waits for the hedge if it's started.
+         * Returns {@code true} if the hedge got the image.
+         */
+        public synchronized boolean await() {
+            stopWatching();
+            if (!mStarted) {
+                mCancelled = true;
+                return false;
+            }
+            while (!mFinished) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                    return false;
+                }
+            }
+            return mData != null;
+        }
+
+        @Override
+        public void run() {
+            byte[] data = null;
+            String extension = null;
+            String host = null;
+            try {
+                GalleryPageParser.Result result = EhEngine.getGalleryPage(null, mHttpClient, mPageUrl,
+                        mGalleryInfo.gid, mGalleryInfo.token);
+                if (result.imageUrl != null && !StringUtils.endsWith(result.imageUrl, URL_509_SUFFIX_ARRAY)) {
+                    Call call = mHttpClient.newCall(new EhRequestBuilder(result.imageUrl, null).build());
+                    boolean cancelled;
+                    synchronized (this) {
+                        cancelled = mCancelled;
+                        if (!cancelled) {
+                            mCall = call;
+                        }
+                    }
+                    if (!cancelled) {
+                        host = call.request().url().host();
+                        long start = System.nanoTime();
+                        Response response = call.execute();
+                        long latency = System.nanoTime() - start;
+                        try {
+                            ResponseBody responseBody = response.body();
+                            if (response.code() < 400 && responseBody != null) {
+                                // It checks content length
+                                data = responseBody.bytes();
+                                extension = getExtension(responseBody);
+                                sHostHealth.onSuccess(host, latency);
+                            } else {
+                                sHostHealth.onFailure(host);
+                            }
+                        } finally {
+                            response.close();
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                ExceptionUtils.throwIfFatal(e);
+                synchronized (this) {
+                    if (!mCancelled && host != null) {
+                        sHostHealth.onFailure(host);
+                    }
+                }
+            }
+
+            boolean win;
+            synchronized (this) {
+                mData = data;
+                mExtension = extension;
+                mFinished = true;
+                win = data != null && !mCancelled;
+                notifyAll();
+            }
+            if (win) {
+                mPrimaryCall.cancel();
+            }
+        }
+    }
+
     private class SpiderWorker implements Runnable {
 
         private final long mGid;
@@ -1058,8 +1412,42 @@ public final class SpiderQueen implements Runnable {
             return result;
         }
 
+        // Write the image the hedge got. Returns true if it's done
+        private boolean finishWithHedge(@Nullable Hedge hedge, int index) {
+            if (hedge == null || !hedge.await()) {
+                return false;
+            }
+
+            // Remove the part the primary request wrote
+            mSpiderDen.remove(index);
+            OutputStreamPipe pipe = mSpiderDen.openOutputStreamPipe(index, hedge.mExtension);
+            if (pipe == null) {
+                return false;
+            }
+            try {
+                pipe.obtain();
+                OutputStream os = pipe.open();
+                os.write(hedge.mData);
+                os.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            } finally {
+                pipe.close();
+                pipe.release();
+            }
+
+            int size = hedge.mData.length;
+            notifyPageDownload(index, size, size, size);
+            HEDGE_WIN_COUNTER.inc();
+            DOWNLOAD_SIZE.record(size);
+            updatePageState(index, STATE_FINISHED);
+            return true;
+        }
+
         // false for stop
-        private boolean downloadImage(long gid, int index, String pToken, String previousPToken, boolean force) {
+        private boolean downloadImage(long gid, int index, String pToken, String previousPToken,
+                boolean force, boolean waited) {
             String skipHathKey = null;
             List<String> skipHathKeys = new ArrayList<>(5);
             String originImageUrl = null;
@@ -1068,8 +1456,18 @@ public final class SpiderQueen implements Runnable {
             boolean forceHtml = false;
             boolean interrupt = false;
             boolean leakSkipHathKey = false;
+            boolean skippedBadHost = false;
+            // Only for pages the reader is waiting for
+            int stallMultiple = waited ? Settings.getHedgeStallMultiple() : 0;
+            Hedge hedge = null;
 
             for (int i = 0; i < 5; i++) {
+                // The last attempt failed, the hedge may have got the image
+                if (finishWithHedge(hedge, index)) {
+                    return true;
+                }
+                hedge = null;
+
                 String imageUrl = null;
                 String localShowKey;
 
@@ -1156,17 +1554,33 @@ public final class SpiderQueen implements Runnable {
 
                 String targetImageUrl;
                 String referer;
+                // Only track H@H nodes, origin images are always from the gallery site
+                String imageHost = null;
                 if (Settings.getDownloadOriginImage() && !TextUtils.isEmpty(originImageUrl)) {
                     targetImageUrl = originImageUrl;
                     referer = EhUrl.getPageUrl(gid, index, pToken);
                 } else {
                     targetImageUrl = imageUrl;
                     referer = null;
+                    HttpUrl url = imageUrl != null ? HttpUrl.parse(imageUrl) : null;
+                    imageHost = url != null ? url.host() : null;
                 }
                 if (targetImageUrl == null) {
                     error = "TargetImageUrl error";
                     break;
                 }
+
+                // Ask for another node once if this one is known-bad
+                if (!skippedBadHost && !leakSkipHathKey && !TextUtils.isEmpty(skipHathKey) &&
+                        !sHostHealth.isAvailable(imageHost)) {
+                    if (DEBUG_LOG) {
+                        Log.d(TAG, "Skip bad host " + imageHost);
+                    }
+                    SKIP_BAD_HOST_COUNTER.inc();
+                    skippedBadHost = true;
+                    forceHtml = true;
+                    continue;
+                }
                 if (DEBUG_LOG) {
                     Log.d(TAG, targetImageUrl);
                 }
@@ -1179,34 +1593,34 @@ public final class SpiderQueen implements Runnable {
                         Log.d(TAG, "Start download image " + index);
                     }
 
+                    long start = System.nanoTime();
                     Call call = mHttpClient.newCall(new EhRequestBuilder(targetImageUrl, referer).build());
+                    if (stallMultiple > 0 && imageHost != null && !leakSkipHathKey && !TextUtils.isEmpty(skipHathKey)) {
+                        hedge = new Hedge(getPageUrl(gid, index, pToken, pageUrl, skipHathKey),
+                                getStallTimeout(imageHost, stallMultiple));
+                        hedge.watch(call);
+                    }
                     Response response = call.execute();
+                    long latency = System.nanoTime() - start;
                     ResponseBody responseBody = response.body();
 
                     if (response.code() >= 400) {
                         // Maybe 404
                         response.close();
+                        sHostHealth.onFailure(imageHost);
                         error = "Bad code: " + response.code();
                         forceHtml = true;
                         continue;
                     }
 
                     if (responseBody == null) {
+                        sHostHealth.onFailure(imageHost);
                         error = "Empty response body";
                         forceHtml = true;
                         continue;
                     }
 
-                    // Get extension
-                    String extension = null;
-                    MediaType mediaType = responseBody.contentType();
-                    if (mediaType != null) {
-                        extension = MimeTypeMap.getSingleton().getExtensionFromMimeType(mediaType.toString());
-                    }
-                    // Ensure extension
-                    if (!Utilities.contain(GalleryProvider2.SUPPORT_IMAGE_EXTENSIONS, extension)) {
-                        extension = GalleryProvider2.SUPPORT_IMAGE_EXTENSIONS[0];
-                    }
+                    String extension = getExtension(responseBody);
 
                     // Get out put pipe
                     pipe = mSpiderDen.openOutputStreamPipe(index, extension);
@@ -1233,6 +1647,9 @@ public final class SpiderQueen implements Runnable {
                         }
                         os.write(data, 0, bytesRead);
                         receivedSize += bytesRead;
+                        if (hedge != null) {
+                            hedge.onProgress();
+                        }
                         // Update page percent
                         if (contentLength > 0) {
                             mPagePercentMap.put(index, (float) receivedSize / contentLength);
@@ -1246,6 +1663,9 @@ public final class SpiderQueen implements Runnable {
                     if (contentLength >= 0) {
                         if (receivedSize < contentLength) {
                             Log.e(TAG, "Can't download all of image data");
+                            if (!Thread.currentThread().isInterrupted()) {
+                                sHostHealth.onFailure(imageHost);
+                            }
                             error = "Incomplete";
                             forceHtml = true;
                             continue;
@@ -1266,10 +1686,19 @@ public final class SpiderQueen implements Runnable {
                     }
 
                     // Download finished
+                    if (hedge != null) {
+                        hedge.cancel();
+                    }
+                    sHostHealth.onSuccess(imageHost, latency);
+                    DOWNLOAD_TIMER.stop(start);
+                    DOWNLOAD_SIZE.record(receivedSize);
                     updatePageState(index, STATE_FINISHED);
                     return true;
                 } catch (IOException e) {
                     e.printStackTrace();
+                    if (!(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException) {
+                        sHostHealth.onFailure(imageHost);
+                    }
                     error = GetText.getString(R.string.error_socket);
                     forceHtml = true;
                 } finally {
@@ -1285,8 +1714,18 @@ public final class SpiderQueen implements Runnable {
                 }
             }
 
+            if (!interrupt && finishWithHedge(hedge, index)) {
+                return true;
+            }
+            if (hedge != null) {
+                hedge.cancel();
+            }
+
             // Remove download failed image
             mSpiderDen.remove(index);
+            if (!interrupt) {
+                DOWNLOAD_FAILURE_COUNTER.inc();
+            }
 
             updatePageState(index, STATE_FAILED, error);
             return !interrupt;
@@ -1305,12 +1744,16 @@ public final class SpiderQueen implements Runnable {
             int index;
             // From force request
             boolean force = false;
+            // The reader is waiting for it
+            boolean waited = false;
             synchronized (mRequestPageQueue) {
                 if (!mForceRequestPageQueue.isEmpty()) {
                     index = mForceRequestPageQueue.remove();
                     force = true;
+                    waited = true;
                 } else if (!mRequestPageQueue.isEmpty()) {
                     index = mRequestPageQueue.remove();
+                    waited = true;
                 } else if (!mRequestPageQueue2.isEmpty()) {
                     index = mRequestPageQueue2.remove();
                 } else if (mDownloadPage >= 0 && mDownloadPage < size) {
@@ -1431,7 +1874,7 @@ public final class SpiderQueen implements Runnable {
             }
 
             // Get image url
-            return downloadImage(mGid, index, pToken, previousPToken, force);
+            return downloadImage(mGid, index, pToken, previousPToken, force, waited);
         }
 
         @Override
@@ -1533,7 +1976,9 @@ public final class SpiderQueen implements Runnable {
                 }
 
                 if (is != null) {
-                    image = Image.decode(is, true);
+                    long start = System.nanoTime();
+                    image = mPageDecoder.decode(index, is);
+                    DECODE_TIMER.stop(start);
                     if (image == null) {
                         error = GetText.getString(R.string.error_decoding_failed);
                     }
@@ -1605,5 +2050,11 @@ public final class SpiderQueen implements Runnable {
         void onGetImageSuccess(int index, Image image);
 
         void onGetImageFailure(int index, String error);
+
+        /**
+         * The preview set of the preview page is read, called only for
+         * the ones loaded by {@link #getPreview(int)}
+         */
+        void onGetPreviews(int previewIndex);
     }
 }
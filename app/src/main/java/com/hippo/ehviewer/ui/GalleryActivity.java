@@ -32,6 +32,7 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -49,11 +50,13 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.SwitchCompat;
 import com.hippo.android.resource.AttrResources;
+import com.hippo.app.EditTextDialogBuilder;
 import com.hippo.ehviewer.AppConfig;
 import com.hippo.ehviewer.BuildConfig;
 import com.hippo.ehviewer.R;
 import com.hippo.ehviewer.Settings;
 import com.hippo.ehviewer.client.data.GalleryInfo;
+import com.hippo.ehviewer.client.data.GalleryPreview;
 import com.hippo.ehviewer.gallery.ArchiveGalleryProvider;
 import com.hippo.ehviewer.gallery.DirGalleryProvider;
 import com.hippo.ehviewer.gallery.EhGalleryProvider;
@@ -66,11 +69,15 @@ import com.hippo.glgallery.GalleryView;
 import com.hippo.glgallery.SimpleAdapter;
 import com.hippo.glview.view.GLRootView;
 import com.hippo.unifile.UniFile;
+import com.hippo.util.AppHelper;
 import com.hippo.util.ExceptionUtils;
+import com.hippo.util.IoThreadPoolExecutor;
 import com.hippo.util.SystemUiHelper;
 import com.hippo.widget.ColorView;
+import com.hippo.widget.LoadImageView;
 import com.hippo.yorozuya.AnimationUtils;
 import com.hippo.yorozuya.ConcurrentPool;
+import com.hippo.yorozuya.FileUtils;
 import com.hippo.yorozuya.IOUtils;
 import com.hippo.yorozuya.MathUtils;
 import com.hippo.yorozuya.ResourcesUtils;
@@ -82,9 +89,13 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChangeListener,
-        GalleryView.Listener {
+        GalleryView.Listener, GalleryProvider2.PreviewListener {
+
+    private static final String TAG = GalleryActivity.class.getSimpleName();
 
     public static final String ACTION_DIR = "dir";
     public static final String ACTION_EH = "eh";
@@ -98,6 +109,8 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
 
     private static final long SLIDER_ANIMATION_DURING = 150;
     private static final long HIDE_SLIDER_DELAY = 3000;
+    // Go to the page if the finger rests this long while scrubbing
+    private static final long SCRUB_SETTLE_DELAY = 300;
 
     private static final int WRITE_REQUEST_CODE = 43;
 
@@ -137,12 +150,16 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
     private TextView mRightText;
     @Nullable
     private ReversibleSeekBar mSeekBar;
+    @Nullable
+    private LoadImageView mScrubPreview;
 
     private ObjectAnimator mSeekBarPanelAnimator;
 
     private int mLayoutMode;
     private int mSize;
     private int mCurrentIndex;
+    private boolean mScrubbing;
+    private int mScrubPreviewIndex = -1;
 
     private final ConcurrentPool<NotifyTask> mNotifyTaskPool = new ConcurrentPool<>(3);
 
@@ -172,6 +189,15 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
         }
     };
 
+    private final Runnable mScrubSettleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mSeekBar != null) {
+                goToScrubbedPage(mSeekBar.getProgress());
+            }
+        }
+    };
+
     private final Runnable mHideSliderRunnable = new Runnable() {
         @Override
         public void run() {
@@ -201,7 +227,7 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
 
         if (ACTION_DIR.equals(mAction)) {
             if (mFilename != null) {
-                mGalleryProvider = new DirGalleryProvider(UniFile.fromFile(new File(mFilename)));
+                mGalleryProvider = new DirGalleryProvider(this, UniFile.fromFile(new File(mFilename)));
             }
         } else if (ACTION_EH.equals(mAction)) {
             if (mGalleryInfo != null) {
@@ -315,6 +341,9 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
         mGLRootView.setContentPane(mGalleryView);
         mGalleryProvider.setListener(mGalleryAdapter);
         mGalleryProvider.setGLRoot(mGLRootView);
+        mGalleryProvider.setPreviewListener(this);
+        mGLRootView.addOnLayoutChangeListener((v, left, top, right, bottom,
+                oldLeft, oldTop, oldRight, oldBottom) -> updateDecodeTargetSize());
 
         // System UI helper
         if (Settings.getReadingFullscreen()) {
@@ -343,11 +372,13 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
         mRightText = (TextView) ViewUtils.$$(mSeekBarPanel, R.id.right);
         mSeekBar = (ReversibleSeekBar) ViewUtils.$$(mSeekBarPanel, R.id.seek_bar);
         mSeekBar.setOnSeekBarChangeListener(this);
+        mScrubPreview = (LoadImageView) ViewUtils.$$(this, R.id.scrub_preview);
 
         mSize = mGalleryProvider.size();
         mCurrentIndex = startPage;
         mLayoutMode = mGalleryView.getLayoutMode();
         updateSlider();
+        updateDecodeTargetSize();
 
         // Update keep screen on
         if (Settings.getKeepScreenOn()) {
@@ -396,7 +427,12 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
             mGalleryAdapter = null;
         }
         if (mGalleryProvider != null) {
+            long savedBytes = mGalleryProvider.getDecodeSavedBytes();
+            if (savedBytes > 0) {
+                Log.i(TAG, "Memory saved by downsampling: " + FileUtils.humanReadableByteCount(savedBytes, false));
+            }
             mGalleryProvider.setListener(null);
+            mGalleryProvider.setPreviewListener(null);
             mGalleryProvider.stop();
             mGalleryProvider = null;
         }
@@ -409,8 +445,10 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
         mLeftText = null;
         mRightText = null;
         mSeekBar = null;
+        mScrubPreview = null;
 
         SimpleHandler.getInstance().removeCallbacks(mHideSliderRunnable);
+        SimpleHandler.getInstance().removeCallbacks(mScrubSettleRunnable);
     }
 
     @Override
@@ -531,6 +569,46 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
         return super.onKeyUp(keyCode, event);
     }
 
+    /**
+     * Pages are decoded no smaller than they are shown in the view,
+     * and in full size with origin or fixed scale.
+     */
+    private void updateDecodeTargetSize() {
+        if (mGalleryProvider == null || mGLRootView == null) {
+            return;
+        }
+
+        int width = 0;
+        int height = 0;
+        if (Settings.getDownsamplePages()) {
+            int viewWidth = mGLRootView.getWidth();
+            int viewHeight = mGLRootView.getHeight();
+            if (viewWidth <= 0 || viewHeight <= 0) {
+                // Not laid out, use screen size
+                viewWidth = getResources().getDisplayMetrics().widthPixels;
+                viewHeight = getResources().getDisplayMetrics().heightPixels;
+            }
+            if (mLayoutMode == GalleryView.LAYOUT_TOP_TO_BOTTOM) {
+                // Pages always fit width when scrolling
+                width = viewWidth;
+            } else {
+                switch (Settings.getPageScaling()) {
+                    case GalleryView.SCALE_FIT_WIDTH:
+                        width = viewWidth;
+                        break;
+                    case GalleryView.SCALE_FIT_HEIGHT:
+                        height = viewHeight;
+                        break;
+                    case GalleryView.SCALE_FIT:
+                        width = viewWidth;
+                        height = viewHeight;
+                        break;
+                }
+            }
+        }
+        mGalleryProvider.setDecodeTargetSize(width, height);
+    }
+
     private GalleryPageView findPageByIndex(int index) {
         if (mGalleryView != null) {
             return mGalleryView.findPageByIndex(index);
@@ -586,26 +664,79 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
         if (fromUser && null != start) {
             start.setText(Integer.toString(progress + 1));
         }
+        if (fromUser && mScrubbing) {
+            // Only show the preview, pages are requested when the finger settles
+            updateScrubPreview(progress, false);
+            SimpleHandler.getInstance().removeCallbacks(mScrubSettleRunnable);
+            SimpleHandler.getInstance().postDelayed(mScrubSettleRunnable, SCRUB_SETTLE_DELAY);
+        }
     }
 
     @Override
     public void onStartTrackingTouch(SeekBar seekBar) {
         SimpleHandler.getInstance().removeCallbacks(mHideSliderRunnable);
+        mScrubbing = true;
+        updateScrubPreview(seekBar.getProgress(), false);
     }
 
     @Override
     public void onStopTrackingTouch(SeekBar seekBar) {
         SimpleHandler.getInstance().postDelayed(mHideSliderRunnable, HIDE_SLIDER_DELAY);
-        int progress = seekBar.getProgress();
+        SimpleHandler.getInstance().removeCallbacks(mScrubSettleRunnable);
+        mScrubbing = false;
+        hideScrubPreview();
+        goToScrubbedPage(seekBar.getProgress());
+    }
+
+    private void goToScrubbedPage(int progress) {
         if (progress != mCurrentIndex && null != mGalleryView) {
             mGalleryView.setCurrentPage(progress);
         }
     }
 
+    @Override
+    public void onPreviewsChanged() {
+        if (mScrubbing && mSeekBar != null) {
+            updateScrubPreview(mSeekBar.getProgress(), true);
+        }
+    }
+
+    private void updateScrubPreview(int index, boolean force) {
+        if (mScrubPreview == null || mSeekBarPanel == null || mGalleryProvider == null) {
+            return;
+        }
+        if (index == mScrubPreviewIndex && !force) {
+            return;
+        }
+        mScrubPreviewIndex = index;
+
+        // Previews of the same preview page share a sprite sheet, it's cached by Conaco
+        GalleryPreview preview = mGalleryProvider.getPreview(index);
+        if (preview == null) {
+            mScrubPreview.unload();
+            mScrubPreview.setVisibility(View.INVISIBLE);
+            return;
+        }
+        preview.load(mScrubPreview);
+        // Stand on the slider
+        View parent = (View) mScrubPreview.getParent();
+        mScrubPreview.setTranslationY(mSeekBarPanel.getTop() - parent.getHeight());
+        mScrubPreview.setVisibility(View.VISIBLE);
+    }
+
+    private void hideScrubPreview() {
+        mScrubPreviewIndex = -1;
+        if (mScrubPreview != null) {
+            mScrubPreview.unload();
+            mScrubPreview.setVisibility(View.INVISIBLE);
+        }
+    }
+
     @Override
     public void onUpdateCurrentIndex(int index) {
         if (null != mGalleryProvider) {
             mGalleryProvider.putStartPage(index);
+            mGalleryProvider.setCurrentIndex(index);
         }
 
         NotifyTask task = mNotifyTaskPool.pop();
@@ -860,6 +991,7 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
             // Update slider
             mLayoutMode = layoutMode;
             updateSlider();
+            updateDecodeTargetSize();
 
             if (oldReadingFullscreen != readingFullscreen) {
                 recreate();
@@ -996,29 +1128,108 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
         }
     }
 
+    private void showSavePagesDialog(int page) {
+        final int size = mSize;
+        if (size <= 0) {
+            return;
+        }
+
+        final EditTextDialogBuilder builder = new EditTextDialogBuilder(this,
+                (page + 1) + "-" + size, getString(R.string.save_pages_hint, size));
+        final AlertDialog dialog = builder.setTitle(R.string.page_menu_save_pages)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+        dialog.getButton(DialogInterface.BUTTON_POSITIVE).setOnClickListener(v -> {
+            // Like 3-10, or 3 for a single page
+            String text = builder.getText().trim();
+            int dash = text.indexOf('-');
+            int start;
+            int end;
+            try {
+                if (dash == -1) {
+                    start = Integer.parseInt(text);
+                    end = start;
+                } else {
+                    start = Integer.parseInt(text.substring(0, dash).trim());
+                    end = Integer.parseInt(text.substring(dash + 1).trim());
+                }
+            } catch (NumberFormatException e) {
+                builder.setError(getString(R.string.error_invalid_number));
+                return;
+            }
+            if (start < 1 || end > size || start > end) {
+                builder.setError(getString(R.string.error_out_of_range));
+                return;
+            }
+            builder.setError(null);
+            savePages(start - 1, end);
+            AppHelper.hideSoftInput(dialog);
+            dialog.dismiss();
+        });
+    }
+
+    /**
+     * Saves pages in [start, end) to the image directory in background.
+     * Only archives support it.
+     */
+    private void savePages(final int start, final int end) {
+        if (!(mGalleryProvider instanceof ArchiveGalleryProvider)) {
+            return;
+        }
+        final ArchiveGalleryProvider provider = (ArchiveGalleryProvider) mGalleryProvider;
+
+        final File dir = AppConfig.getExternalImageDir();
+        if (null == dir) {
+            Toast.makeText(this, R.string.error_cant_save_image, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        // The activity might be gone when it's done
+        final Context context = getApplicationContext();
+        Toast.makeText(context, R.string.saving_pages, Toast.LENGTH_SHORT).show();
+        IoThreadPoolExecutor.getInstance().execute(() -> {
+            int count;
+            try {
+                count = provider.export(start, end, UniFile.fromFile(dir));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            final int saved = count;
+            SimpleHandler.getInstance().post(() -> {
+                if (saved == 0) {
+                    Toast.makeText(context, R.string.error_cant_save_image, Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(context, context.getString(R.string.pages_saved, saved, dir.getPath()),
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
+    }
+
     private void showPageDialog(final int page) {
         Resources resources = GalleryActivity.this.getResources();
         AlertDialog.Builder builder = new AlertDialog.Builder(GalleryActivity.this);
         builder.setTitle(resources.getString(R.string.page_menu_title, page + 1));
 
-        final CharSequence[] items;
+        final List<CharSequence> items = new ArrayList<>();
+        items.add(getString(R.string.page_menu_refresh));
+        items.add(getString(R.string.page_menu_share));
+        items.add(getString(R.string.page_menu_save));
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT){
-            items = new CharSequence[]{
-                    getString(R.string.page_menu_refresh),
-                    getString(R.string.page_menu_share),
-                    getString(R.string.page_menu_save),
-                    getString(R.string.page_menu_save_to)};
-        }else {
-            items = new CharSequence[]{
-                    getString(R.string.page_menu_refresh),
-                    getString(R.string.page_menu_share),
-                    getString(R.string.page_menu_save)};
-        }
-        pageDialogListener(builder, items, page);
+            items.add(getString(R.string.page_menu_save_to));
+        }
+        // Archive pages are saved as they are, many at once
+        int savePagesIndex = -1;
+        if (mGalleryProvider instanceof ArchiveGalleryProvider) {
+            savePagesIndex = items.size();
+            items.add(getString(R.string.page_menu_save_pages));
+        }
+        pageDialogListener(builder, items.toArray(new CharSequence[items.size()]), page, savePagesIndex);
         builder.show();
     }
 
-    private void pageDialogListener(AlertDialog.Builder builder, CharSequence[] items, int page){
+    private void pageDialogListener(AlertDialog.Builder builder, CharSequence[] items, int page, int savePagesIndex){
         builder.setItems(items, new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
@@ -1026,10 +1237,15 @@ public class GalleryActivity extends EhActivity implements SeekBar.OnSeekBarChan
                     return;
                 }
 
+                if (which == savePagesIndex) {
+                    showSavePagesDialog(page);
+                    return;
+                }
+
                 switch (which) {
                     case 0: // Refresh
-                        mGalleryProvider.removeCache(page);
-                        mGalleryProvider.forceRequest(page);
+                        // It might be decoded smaller than it is
+                        mGalleryProvider.requestFullSize(page);
                         break;
                     case 1: // Share
                         shareImage(page);
@@ -28,16 +28,23 @@ import androidx.appcompat.app.AlertDialog;
 import com.hippo.ehviewer.AppConfig;
 import com.hippo.ehviewer.EhApplication;
 import com.hippo.ehviewer.EhDB;
+import com.hippo.ehviewer.Metrics;
 import com.hippo.ehviewer.R;
 import com.hippo.util.LogCat;
 import com.hippo.util.ReadableTime;
+import com.hippo.yorozuya.IOUtils;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Arrays;
 
 public class AdvancedFragment extends PreferenceFragment
     implements Preference.OnPreferenceClickListener, Preference.OnPreferenceChangeListener {
 
     private static final String KEY_DUMP_LOGCAT = "dump_logcat";
+    private static final String KEY_DUMP_METRICS = "dump_metrics";
     private static final String KEY_CLEAR_MEMORY_CACHE = "clear_memory_cache";
     private static final String KEY_APP_LANGUAGE = "app_language";
     private static final String KEY_EXPORT_DATA = "export_data";
@@ -49,12 +56,14 @@ public class AdvancedFragment extends PreferenceFragment
         addPreferencesFromResource(R.xml.advanced_settings);
 
         Preference dumpLogcat = findPreference(KEY_DUMP_LOGCAT);
+        Preference dumpMetrics = findPreference(KEY_DUMP_METRICS);
         Preference clearMemoryCache = findPreference(KEY_CLEAR_MEMORY_CACHE);
         Preference appLanguage = findPreference(KEY_APP_LANGUAGE);
         Preference exportData = findPreference(KEY_EXPORT_DATA);
         Preference importData = findPreference(KEY_IMPORT_DATA);
 
         dumpLogcat.setOnPreferenceClickListener(this);
+        dumpMetrics.setOnPreferenceClickListener(this);
         clearMemoryCache.setOnPreferenceClickListener(this);
         exportData.setOnPreferenceClickListener(this);
         importData.setOnPreferenceClickListener(this);
@@ -85,6 +94,21 @@ public class AdvancedFragment extends PreferenceFragment
                     ok ? resources.getString(R.string.settings_advanced_dump_logcat_to, file.getPath()) :
                             resources.getString(R.string.settings_advanced_dump_logcat_failed), Toast.LENGTH_SHORT).show();
             return true;
+        } else if (KEY_DUMP_METRICS.equals(key)) {
+            boolean ok;
+            File file = null;
+            File dir = AppConfig.getExternalLogcatDir();
+            if (dir != null) {
+                file = new File(dir, "metrics-" + ReadableTime.getFilenamableTime(System.currentTimeMillis()) + ".txt");
+                ok = saveMetrics(getActivity(), file);
+            } else {
+                ok = false;
+            }
+            Resources resources = getResources();
+            Toast.makeText(getActivity(),
+                    ok ? resources.getString(R.string.settings_advanced_dump_metrics_to, file.getPath()) :
+                            resources.getString(R.string.settings_advanced_dump_metrics_failed), Toast.LENGTH_SHORT).show();
+            return true;
         } else if (KEY_CLEAR_MEMORY_CACHE.equals(key)) {
             ((EhApplication) getActivity().getApplication()).clearMemoryCache();
             Runtime.getRuntime().gc();
@@ -108,6 +132,22 @@ public class AdvancedFragment extends PreferenceFragment
         return false;
     }
 
+    private static boolean saveMetrics(Context context, File file) {
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            writer.write(Metrics.dump());
+            writer.write("\nStartup\n");
+            writer.write(EhApplication.getStartup(context).dump());
+            writer.flush();
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+
     private static void importData(final Context context) {
         final File dir = AppConfig.getExternalDataDir();
         if (null == dir) {
@@ -29,6 +29,7 @@ import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.util.Log;
 import android.util.SparseBooleanArray;
 import android.view.Display;
@@ -58,6 +59,7 @@ import com.github.amlcurran.showcaseview.targets.ViewTarget;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.hippo.android.resource.AttrResources;
 import com.hippo.app.CheckBoxDialogBuilder;
+import com.hippo.app.EditTextDialogBuilder;
 import com.hippo.conaco.DataContainer;
 import com.hippo.conaco.ProgressNotifier;
 import com.hippo.drawerlayout.DrawerLayout;
@@ -85,6 +87,7 @@ import com.hippo.ripple.Ripple;
 import com.hippo.scene.Announcer;
 import com.hippo.streampipe.InputStreamPipe;
 import com.hippo.unifile.UniFile;
+import com.hippo.util.AppHelper;
 import com.hippo.util.DrawableManager;
 import com.hippo.util.IoThreadPoolExecutor;
 import com.hippo.view.ViewTransition;
@@ -95,6 +98,7 @@ import com.hippo.yorozuya.AssertUtils;
 import com.hippo.yorozuya.FileUtils;
 import com.hippo.yorozuya.IOUtils;
 import com.hippo.yorozuya.ObjectUtils;
+import com.hippo.yorozuya.SimpleHandler;
 import com.hippo.yorozuya.ViewUtils;
 import com.hippo.yorozuya.collect.LongList;
 import java.io.IOException;
@@ -116,6 +120,7 @@ public class DownloadsScene extends ToolbarScene
 
     public static final String KEY_ACTION = "action";
     private static final String KEY_LABEL = "label";
+    private static final String KEY_KEYWORD = "keyword";
 
     public static final String ACTION_CLEAR_DOWNLOAD_SERVICE = "clear_download_service";
 
@@ -126,6 +131,11 @@ public class DownloadsScene extends ToolbarScene
     private DownloadManager mDownloadManager;
     @Nullable
     private String mLabel;
+    // Search in the label if not null
+    @Nullable
+    private String mKeyword;
+    // Only the result of the latest search is shown
+    private int mSearchGeneration;
     @Nullable
     private List<DownloadInfo> mList;
 
@@ -166,6 +176,7 @@ public class DownloadsScene extends ToolbarScene
             DownloadInfo info = mDownloadManager.getDownloadInfo(gid);
             if (null != info) {
                 mLabel = info.getLabel();
+                mKeyword = null;
                 updateForLabel();
                 updateView();
 
@@ -241,6 +252,13 @@ public class DownloadsScene extends ToolbarScene
                 mList = mDownloadManager.getDefaultDownloadInfoList();
             }
         }
+        // Drop the result of any search in progress
+        mSearchGeneration++;
+        if (mKeyword != null) {
+            // Empty until the search is done
+            mList = new ArrayList<>();
+            search();
+        }
 
         if (mAdapter != null) {
             mAdapter.notifyDataSetChanged();
@@ -250,9 +268,65 @@ public class DownloadsScene extends ToolbarScene
         Settings.putRecentDownloadLabel(mLabel);
     }
 
+    /**
+     * Searches download info in the label matching the keyword in background,
+     * then shows them, the best matched first.
+     */
+    private void search() {
+        final String label = mLabel;
+        final String keyword = mKeyword;
+        final int generation = ++mSearchGeneration;
+        IoThreadPoolExecutor.getInstance().execute(() -> {
+            List<Long> gids = EhDB.searchDownloadInfo(keyword);
+            SimpleHandler.getInstance().post(() -> {
+                if (generation != mSearchGeneration || null == mDownloadManager) {
+                    return;
+                }
+
+                List<DownloadInfo> list = new ArrayList<>(gids.size());
+                for (Long gid : gids) {
+                    DownloadInfo info = mDownloadManager.getDownloadInfo(gid);
+                    if (info != null && ObjectUtils.equal(info.getLabel(), label)) {
+                        list.add(info);
+                    }
+                }
+                mList = list;
+                if (mAdapter != null) {
+                    mAdapter.notifyDataSetChanged();
+                }
+                updateView();
+            });
+        });
+    }
+
     private void updateTitle() {
-        setTitle(getString(R.string.scene_download_title,
-                mLabel != null ? mLabel : getString(R.string.default_download_label_name)));
+        String label = mLabel != null ? mLabel : getString(R.string.default_download_label_name);
+        if (mKeyword == null) {
+            setTitle(getString(R.string.scene_download_title, label));
+        } else {
+            setTitle(getString(R.string.scene_download_title_2, label, mKeyword));
+        }
+    }
+
+    private void showSearchDialog() {
+        Context context = getContext2();
+        if (null == context) {
+            return;
+        }
+
+        final EditTextDialogBuilder builder = new EditTextDialogBuilder(context,
+                mKeyword, getString(R.string.local_search_hint));
+        final AlertDialog dialog = builder.setTitle(R.string.search)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+        dialog.getButton(DialogInterface.BUTTON_POSITIVE).setOnClickListener(v -> {
+            String keyword = builder.getText().trim();
+            mKeyword = TextUtils.isEmpty(keyword) ? null : keyword;
+            updateForLabel();
+            updateView();
+            AppHelper.hideSoftInput(dialog);
+            dialog.dismiss();
+        });
     }
 
     private void onInit() {
@@ -264,6 +338,7 @@ public class DownloadsScene extends ToolbarScene
 
     private void onRestore(@NonNull Bundle savedInstanceState) {
         mLabel = savedInstanceState.getString(KEY_LABEL);
+        mKeyword = savedInstanceState.getString(KEY_KEYWORD);
         updateForLabel();
     }
 
@@ -271,6 +346,7 @@ public class DownloadsScene extends ToolbarScene
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
         outState.putString(KEY_LABEL, mLabel);
+        outState.putString(KEY_KEYWORD, mKeyword);
     }
 
     @Nullable
@@ -476,6 +552,10 @@ public class DownloadsScene extends ToolbarScene
 
         int id = item.getItemId();
         switch (id) {
+            case R.id.action_search: {
+                showSearchDialog();
+                return true;
+            }
             case R.id.action_start_all: {
                 Intent intent = new Intent(activity, DownloadService.class);
                 intent.setAction(DownloadService.ACTION_START_ALL);
@@ -610,6 +690,10 @@ public class DownloadsScene extends ToolbarScene
 
         if (mRecyclerView != null && mRecyclerView.isInCustomChoice()) {
             mRecyclerView.outOfCustomChoiceMode();
+        } else if (mKeyword != null) {
+            mKeyword = null;
+            updateForLabel();
+            updateView();
         } else {
             super.onBackPressed();
         }
@@ -773,6 +857,11 @@ public class DownloadsScene extends ToolbarScene
 
     @Override
     public void onAdd(@NonNull DownloadInfo info, @NonNull List<DownloadInfo> list, int position) {
+        if (mKeyword != null) {
+            // Positions are of the label list, search again
+            search();
+            return;
+        }
         if (mList != list) {
             return;
         }
@@ -784,11 +873,11 @@ public class DownloadsScene extends ToolbarScene
 
     @Override
     public void onUpdate(@NonNull DownloadInfo info, @NonNull List<DownloadInfo> list) {
-        if (mList != list) {
+        if (mList == null || (mKeyword == null && mList != list)) {
             return;
         }
 
-        int index = list.indexOf(info);
+        int index = mList.indexOf(info);
         if (index >= 0 && mAdapter != null) {
             mAdapter.notifyItemChanged(index);
         }
@@ -803,7 +892,9 @@ public class DownloadsScene extends ToolbarScene
 
     @Override
     public void onReload() {
-        if (mAdapter != null) {
+        if (mKeyword != null) {
+            search();
+        } else if (mAdapter != null) {
             mAdapter.notifyDataSetChanged();
         }
         updateView();
@@ -829,7 +920,14 @@ public class DownloadsScene extends ToolbarScene
 
     @Override
     public void onRemove(@NonNull DownloadInfo info, @NonNull List<DownloadInfo> list, int position) {
-        if (mList != list) {
+        if (mKeyword != null) {
+            // Removing doesn't change the order, no need to search again
+            position = null != mList ? mList.indexOf(info) : -1;
+            if (position < 0) {
+                return;
+            }
+            mList.remove(position);
+        } else if (mList != list) {
             return;
         }
         if (mAdapter != null) {
@@ -86,6 +86,7 @@ import com.hippo.widget.ContentLayout;
 import com.hippo.widget.FabLayout;
 import com.hippo.widget.SearchBarMover;
 import com.hippo.yorozuya.AssertUtils;
+import com.hippo.yorozuya.MathUtils;
 import com.hippo.yorozuya.ObjectUtils;
 import com.hippo.yorozuya.SimpleHandler;
 import com.hippo.yorozuya.ViewUtils;
@@ -101,6 +102,8 @@ public class FavoritesScene extends BaseScene implements
         EasyRecyclerView.CustomChoiceListener {
 
     private static final long ANIMATE_TIME = 300L;
+    // Local favorites in a page
+    private static final int LOCAL_PAGE_SIZE = 50;
 
     private static final String KEY_URL_BUILDER = "url_builder";
     private static final String KEY_SEARCH_MODE = "search_mode";
@@ -1006,27 +1009,28 @@ public class FavoritesScene extends BaseScene implements
     }
 
     @SuppressWarnings("unchecked")
-    private void onGetFavoritesLocal(String keyword, int taskId) {
+    private void onGetFavoritesLocal(String keyword, int taskId, int page) {
         if (mHelper != null && mHelper.isCurrentTask(taskId)) {
-            List<GalleryInfo> list;
             if (TextUtils.isEmpty(keyword)) {
-                list = EhDB.getAllLocalFavorites();
-            } else {
-                list = EhDB.searchLocalFavorites(keyword);
-            }
-
-            if (list.size() == 0) {
-                mHelper.onGetPageData(taskId, 0, 0, Collections.EMPTY_LIST);
-            } else {
-                mHelper.onGetPageData(taskId, 1, 0, list);
-            }
+                // Pages are loaded as they are scrolled to
+                int count = (int) EhDB.getLocalFavoritesCount();
+                int pages = MathUtils.ceilDivide(count, LOCAL_PAGE_SIZE);
+                List<GalleryInfo> list = EhDB.getLocalFavorites(page, LOCAL_PAGE_SIZE);
+                mHelper.onGetPageData(taskId, pages, page + 1, list);
 
-            if (TextUtils.isEmpty(keyword)) {
-                mFavLocalCount = list.size();
+                mFavLocalCount = count;
                 Settings.putFavLocalCount(mFavLocalCount);
                 if (mDrawerAdapter != null) {
                     mDrawerAdapter.notifyDataSetChanged();
                 }
+            } else {
+                // Search results are all in one page, the best matched first
+                List<GalleryInfo> list = EhDB.searchLocalFavorites(keyword);
+                if (list.size() == 0) {
+                    mHelper.onGetPageData(taskId, 0, 0, Collections.EMPTY_LIST);
+                } else {
+                    mHelper.onGetPageData(taskId, 1, 0, list);
+                }
             }
         }
     }
@@ -1166,7 +1170,7 @@ public class FavoritesScene extends BaseScene implements
                     request.setMethod(EhClient.METHOD_ADD_FAVORITES_RANGE);
                     request.setCallback(new AddFavoritesListener(getContext(),
                             activity.getStageId(), getTag(),
-                            taskId, mUrlBuilder.getKeyword(), modifyGiListBackup));
+                            taskId, page, mUrlBuilder.getKeyword(), modifyGiListBackup));
                     request.setArgs(gidArray, tokenArray, mModifyFavCat);
                     mClient.execute(request);
                 } else {
@@ -1189,7 +1193,7 @@ public class FavoritesScene extends BaseScene implements
                     request.setMethod(EhClient.METHOD_MODIFY_FAVORITES);
                     request.setCallback(new GetFavoritesListener(getContext(),
                             activity.getStageId(), getTag(),
-                            taskId, local, mUrlBuilder.getKeyword()));
+                            taskId, page, local, mUrlBuilder.getKeyword()));
                     request.setArgs(url, gidArray, mModifyFavCat, Settings.getShowJpnTitle());
                     mClient.execute(request);
                 }
@@ -1198,7 +1202,7 @@ public class FavoritesScene extends BaseScene implements
                 SimpleHandler.getInstance().post(new Runnable() {
                     @Override
                     public void run() {
-                        onGetFavoritesLocal(keyword, taskId);
+                        onGetFavoritesLocal(keyword, taskId, page);
                     }
                 });
             } else {
@@ -1208,7 +1212,7 @@ public class FavoritesScene extends BaseScene implements
                 request.setMethod(EhClient.METHOD_GET_FAVORITES);
                 request.setCallback(new GetFavoritesListener(getContext(),
                         activity.getStageId(), getTag(),
-                        taskId, false, mUrlBuilder.getKeyword()));
+                        taskId, page, false, mUrlBuilder.getKeyword()));
                 request.setArgs(url, Settings.getShowJpnTitle());
                 mClient.execute(request);
             }
@@ -1270,13 +1274,15 @@ public class FavoritesScene extends BaseScene implements
     private static class AddFavoritesListener extends EhCallback<FavoritesScene, Void> {
 
         private final int mTaskId;
+        private final int mPage;
         private final String mKeyword;
         private final List<GalleryInfo> mBackup;
 
         private AddFavoritesListener(Context context, int stageId,
-                String sceneTag, int taskId, String keyword, List<GalleryInfo> backup) {
+                String sceneTag, int taskId, int page, String keyword, List<GalleryInfo> backup) {
             super(context, stageId, sceneTag);
             mTaskId = taskId;
+            mPage = page;
             mKeyword = keyword;
             mBackup = backup;
         }
@@ -1285,7 +1291,7 @@ public class FavoritesScene extends BaseScene implements
         public void onSuccess(Void result) {
             FavoritesScene scene = getScene();
             if (scene != null) {
-                scene.onGetFavoritesLocal(mKeyword, mTaskId);
+                scene.onGetFavoritesLocal(mKeyword, mTaskId, mPage);
             }
         }
 
@@ -1297,7 +1303,7 @@ public class FavoritesScene extends BaseScene implements
 
             FavoritesScene scene = getScene();
             if (scene != null) {
-                scene.onGetFavoritesLocal(mKeyword, mTaskId);
+                scene.onGetFavoritesLocal(mKeyword, mTaskId, mPage);
             }
         }
 
@@ -1313,14 +1319,16 @@ public class FavoritesScene extends BaseScene implements
     private static class GetFavoritesListener extends EhCallback<FavoritesScene, FavoritesParser.Result> {
 
         private final int mTaskId;
+        private final int mPage;
         // Local fav is shown now, but operation need be done for cloud fav
         private final boolean mLocal;
         private final String mKeyword;
 
         private GetFavoritesListener(Context context, int stageId,
-                String sceneTag, int taskId, boolean local, String keyword) {
+                String sceneTag, int taskId, int page, boolean local, String keyword) {
             super(context, stageId, sceneTag);
             mTaskId = taskId;
+            mPage = page;
             mLocal = local;
             mKeyword = keyword;
         }
@@ -1333,7 +1341,7 @@ public class FavoritesScene extends BaseScene implements
             FavoritesScene scene = getScene();
             if (scene != null) {
                 if (mLocal) {
-                    scene.onGetFavoritesLocal(mKeyword, mTaskId);
+                    scene.onGetFavoritesLocal(mKeyword, mTaskId, mPage);
                 } else {
                     scene.onGetFavoritesSuccess(result, mTaskId);
                 }
@@ -1346,7 +1354,7 @@ public class FavoritesScene extends BaseScene implements
             if (scene != null) {
                 if (mLocal) {
                     e.printStackTrace();
-                    scene.onGetFavoritesLocal(mKeyword, mTaskId);
+                    scene.onGetFavoritesLocal(mKeyword, mTaskId, mPage);
                 } else {
                     scene.onGetFavoritesFailure(e, mTaskId);
                 }
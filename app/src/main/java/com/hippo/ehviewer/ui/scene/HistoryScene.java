@@ -24,6 +24,7 @@ import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
@@ -45,6 +46,7 @@ import com.h6ah4i.android.widget.advrecyclerview.swipeable.action.SwipeResultAct
 import com.h6ah4i.android.widget.advrecyclerview.touchguard.RecyclerViewTouchActionGuardManager;
 import com.h6ah4i.android.widget.advrecyclerview.utils.AbstractSwipeableItemViewHolder;
 import com.hippo.android.resource.AttrResources;
+import com.hippo.app.EditTextDialogBuilder;
 import com.hippo.easyrecyclerview.EasyRecyclerView;
 import com.hippo.easyrecyclerview.FastScroller;
 import com.hippo.easyrecyclerview.HandlerDrawable;
@@ -62,6 +64,7 @@ import com.hippo.ehviewer.widget.SimpleRatingView;
 import com.hippo.ripple.Ripple;
 import com.hippo.scene.Announcer;
 import com.hippo.scene.SceneFragment;
+import com.hippo.util.AppHelper;
 import com.hippo.util.DrawableManager;
 import com.hippo.view.ViewTransition;
 import com.hippo.widget.LoadImageView;
@@ -69,11 +72,14 @@ import com.hippo.widget.recyclerview.AutoStaggeredGridLayoutManager;
 import com.hippo.yorozuya.AssertUtils;
 import com.hippo.yorozuya.ViewUtils;
 import de.greenrobot.dao.query.LazyList;
+import java.util.List;
 
 public class HistoryScene extends ToolbarScene
         implements EasyRecyclerView.OnItemClickListener,
         EasyRecyclerView.OnItemLongClickListener{
 
+    private static final String KEY_KEYWORD = "keyword";
+
     /*---------------
      View life cycle
      ---------------*/
@@ -85,12 +91,32 @@ public class HistoryScene extends ToolbarScene
     private RecyclerView.Adapter<?> mAdapter;
     @Nullable
     private LazyList<HistoryInfo> mLazyList;
+    // The lazy list, or search result if mKeyword isn't null
+    @Nullable
+    private List<HistoryInfo> mList;
+
+    @Nullable
+    private String mKeyword;
 
     @Override
     public int getNavCheckedItem() {
         return R.id.nav_history;
     }
 
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            mKeyword = savedInstanceState.getString(KEY_KEYWORD);
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(KEY_KEYWORD, mKeyword);
+    }
+
     @Nullable
     @Override
     public View onCreateView3(LayoutInflater inflater,
@@ -154,7 +180,7 @@ public class HistoryScene extends ToolbarScene
     @Override
     public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        setTitle(R.string.history);
+        updateTitle();
         setNavigationIcon(R.drawable.v_arrow_left_dark_x24);
     }
 
@@ -165,6 +191,9 @@ public class HistoryScene extends ToolbarScene
         if (null != mLazyList) {
             mLazyList.close();
             mLazyList = null;
+        }
+        if (null != mList) {
+            mList = null;
             if (mAdapter != null) {
                 mAdapter.notifyDataSetChanged();
             }
@@ -180,11 +209,49 @@ public class HistoryScene extends ToolbarScene
 
     // Remember to notify
     private void updateLazyList() {
-        LazyList<HistoryInfo> lazyList = EhDB.getHistoryLazyList();
+        LazyList<HistoryInfo> lazyList = mKeyword == null ? EhDB.getHistoryLazyList() : null;
         if (mLazyList != null) {
             mLazyList.close();
         }
         mLazyList = lazyList;
+        mList = mKeyword == null ? lazyList : EhDB.searchHistoryInfo(mKeyword);
+    }
+
+    private void updateTitle() {
+        if (mKeyword == null) {
+            setTitle(R.string.history);
+        } else {
+            setTitle(getString(R.string.history_title_2, mKeyword));
+        }
+    }
+
+    private void search(@Nullable String keyword) {
+        mKeyword = keyword;
+        updateLazyList();
+        if (mAdapter != null) {
+            mAdapter.notifyDataSetChanged();
+        }
+        updateView(true);
+        updateTitle();
+    }
+
+    private void showSearchDialog() {
+        Context context = getContext2();
+        if (null == context) {
+            return;
+        }
+
+        final EditTextDialogBuilder builder = new EditTextDialogBuilder(context,
+                mKeyword, getString(R.string.local_search_hint));
+        final AlertDialog dialog = builder.setTitle(R.string.search)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+        dialog.getButton(DialogInterface.BUTTON_POSITIVE).setOnClickListener(v -> {
+            String keyword = builder.getText().trim();
+            search(TextUtils.isEmpty(keyword) ? null : keyword);
+            AppHelper.hideSoftInput(dialog);
+            dialog.dismiss();
+        });
     }
 
     private void updateView(boolean animation) {
@@ -204,6 +271,15 @@ public class HistoryScene extends ToolbarScene
         onBackPressed();
     }
 
+    @Override
+    public void onBackPressed() {
+        if (mKeyword != null) {
+            search(null);
+        } else {
+            super.onBackPressed();
+        }
+    }
+
     @Override
     public int getMenuResId() {
         return R.menu.scene_history;
@@ -237,6 +313,10 @@ public class HistoryScene extends ToolbarScene
 
         int id = item.getItemId();
         switch (id) {
+            case R.id.action_search: {
+                showSearchDialog();
+                return true;
+            }
             case R.id.action_clear_all: {
                 showClearAllDialog();
                 return true;
@@ -247,13 +327,13 @@ public class HistoryScene extends ToolbarScene
 
     @Override
     public boolean onItemClick(EasyRecyclerView parent, View view, int position, long id) {
-        if (null == mLazyList) {
+        if (null == mList) {
             return false;
         }
 
         Bundle args = new Bundle();
         args.putString(GalleryDetailScene.KEY_ACTION, GalleryDetailScene.ACTION_GALLERY_INFO);
-        args.putParcelable(GalleryDetailScene.KEY_GALLERY_INFO, mLazyList.get(position));
+        args.putParcelable(GalleryDetailScene.KEY_GALLERY_INFO, mList.get(position));
         Announcer announcer = new Announcer(GalleryDetailScene.class).setArgs(args);
         View thumb;
         if (null != (thumb = view.findViewById(R.id.thumb))) {
@@ -267,11 +347,11 @@ public class HistoryScene extends ToolbarScene
     public boolean onItemLongClick(EasyRecyclerView parent, View view, int position, long id) {
         final Context context = getContext2();
         final MainActivity activity = getActivity2();
-        if (null == context || null == activity || null == mLazyList) {
+        if (null == context || null == activity || null == mList) {
             return false;
         }
 
-        final GalleryInfo gi = mLazyList.get(position);
+        final GalleryInfo gi = mList.get(position);
         new AlertDialog.Builder(context)
                 .setTitle(EhUtils.getSuitableTitle(gi))
                 .setItems(R.array.gallery_list_menu_entries, new DialogInterface.OnClickListener() {
@@ -340,10 +420,10 @@ public class HistoryScene extends ToolbarScene
 
         @Override
         public long getItemId(int position) {
-            if (null == mLazyList) {
+            if (null == mList) {
                 return super.getItemId(position);
             } else {
-                return mLazyList.get(position).gid;
+                return mList.get(position).gid;
             }
         }
 
@@ -361,11 +441,11 @@ public class HistoryScene extends ToolbarScene
 
         @Override
         public void onBindViewHolder(HistoryHolder holder, int position) {
-            if (null == mLazyList) {
+            if (null == mList) {
                 return;
             }
 
-            GalleryInfo gi = mLazyList.get(position);
+            GalleryInfo gi = mList.get(position);
             holder.thumb.load(EhCacheKeyFactory.getThumbKey(gi.gid), gi.thumb);
             holder.title.setText(EhUtils.getSuitableTitle(gi));
             holder.uploader.setText(gi.uploader);
@@ -388,7 +468,7 @@ public class HistoryScene extends ToolbarScene
 
         @Override
         public int getItemCount() {
-            return null != mLazyList ? mLazyList.size() : 0;
+            return null != mList ? mList.size() : 0;
         }
 
         @Override
@@ -426,11 +506,11 @@ public class HistoryScene extends ToolbarScene
         @Override
         protected void onPerformAction() {
             super.onPerformAction();
-            if (null == mLazyList || null == mAdapter) {
+            if (null == mList || null == mAdapter) {
                 return;
             }
 
-            HistoryInfo info = mLazyList.get(mPosition);
+            HistoryInfo info = mList.get(mPosition);
             EhDB.deleteHistoryInfo(info);
             updateLazyList();
             mAdapter.notifyDataSetChanged();
@@ -224,6 +224,21 @@ class CookieDatabase {
     cookieIdMap.remove(cookie);
   }
 
+  /**
+   * Removes cookies in one transaction.
+   */
+  public void remove(List<Cookie> cookies) {
+    db.beginTransaction();
+    try {
+      for (Cookie cookie : cookies) {
+        remove(cookie);
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
   public void clear() {
     db.delete(TABLE_COOKIE, null, null);
     cookieIdMap.clear();
@@ -21,12 +21,14 @@ package com.hippo.network;
  */
 
 import android.content.Context;
+import com.hippo.util.IoThreadPoolExecutor;
 import com.hippo.yorozuya.ObjectUtils;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import okhttp3.Cookie;
 import okhttp3.CookieJar;
@@ -34,8 +36,26 @@ import okhttp3.HttpUrl;
 
 public class CookieRepository implements CookieJar {
 
+  // Image servers have lots of hosts, don't keep all of them
+  private static final int MAX_CACHED_HOSTS = 64;
+
+  // RFC 6265 Section-5.4 step 2, sort the cookie-list
+  // Cookies with longer paths are listed before cookies with shorter paths.
+  // Ignore creation-time, we don't store them.
+  private static final Comparator<Cookie> PATH_LENGTH_COMPARATOR =
+      (o1, o2) -> o2.path().length() - o1.path().length();
+
   private CookieDatabase db;
+  // Cookie domain -> cookies
   private Map<String, CookieSet> map;
+  // Request host -> cookies of all domains matching the host, cleared on any change
+  private final Map<String, HostCookies> cache = new ConcurrentHashMap<>();
+
+  // Expired persistent cookies found on requests, removed from database in batch
+  private final List<Cookie> expiredCookies = new ArrayList<>();
+  private boolean removeExpiredScheduled;
+  private boolean closed;
+  private final Runnable removeExpiredTask = this::removeExpiredCookies;
 
   public CookieRepository(Context context, String name) {
     db = new CookieDatabase(context, name);
@@ -83,37 +103,65 @@ public class CookieRepository implements CookieJar {
         db.add(toAdd);
       }
     }
+
+    cache.clear();
+  }
+
+  public List<Cookie> getCookies(HttpUrl url) {
+    String host = url.host();
+    HostCookies hostCookies = cache.get(host);
+    if (hostCookies == null || hostCookies.expiresAt <= System.currentTimeMillis()) {
+      hostCookies = loadHostCookies(host);
+    }
+    return hostCookies.get(url);
   }
 
-  public synchronized List<Cookie> getCookies(HttpUrl url) {
-    List<Cookie> accepted = new ArrayList<>();
+  private synchronized HostCookies loadHostCookies(String host) {
+    long now = System.currentTimeMillis();
+    List<Cookie> cookies = new ArrayList<>();
     List<Cookie> expired = new ArrayList<>();
 
-    for (Map.Entry<String, CookieSet> entry : map.entrySet()) {
-      String domain = entry.getKey();
-      CookieSet cookieSet = entry.getValue();
-      if (domainMatch(url, domain)) {
-        cookieSet.get(url, accepted, expired);
+    // Only the host and its parent domains can match the host,
+    // look them up instead of checking every domain
+    CookieSet cookieSet = map.get(host);
+    if (cookieSet != null) {
+      cookieSet.get(now, cookies, expired);
+    }
+    if (!verifyAsIpAddress(host)) {
+      for (int i = host.indexOf('.'); i != -1; i = host.indexOf('.', i + 1)) {
+        cookieSet = map.get(host.substring(i + 1));
+        if (cookieSet != null) {
+          cookieSet.get(now, cookies, expired);
+        }
       }
     }
 
     for (Cookie cookie : expired) {
       if (cookie.persistent()) {
-        db.remove(cookie);
+        expiredCookies.add(cookie);
       }
     }
+    if (!expiredCookies.isEmpty() && !removeExpiredScheduled) {
+      removeExpiredScheduled = true;
+      IoThreadPoolExecutor.getInstance().execute(removeExpiredTask);
+    }
 
-    // RFC 6265 Section-5.4 step 2, sort the cookie-list
-    // Cookies with longer paths are listed before cookies with shorter paths.
-    // Ignore creation-time, we don't store them.
-    Collections.sort(accepted, new Comparator<Cookie>() {
-      @Override
-      public int compare(Cookie o1, Cookie o2) {
-        return o2.path().length() - o1.path().length();
-      }
-    });
+    Collections.sort(cookies, PATH_LENGTH_COMPARATOR);
 
-    return accepted;
+    HostCookies hostCookies = new HostCookies(cookies);
+    if (cache.size() >= MAX_CACHED_HOSTS) {
+      cache.clear();
+    }
+    cache.put(host, hostCookies);
+    return hostCookies;
+  }
+
+  private synchronized void removeExpiredCookies() {
+    removeExpiredScheduled = false;
+    if (!closed && !expiredCookies.isEmpty()) {
+      db.remove(expiredCookies);
+    }
+    expiredCookies.clear();
   }
 
   public boolean contains(HttpUrl url, String name) {
@@ -130,10 +178,14 @@ public class CookieRepository implements CookieJar {
    */
   public synchronized void clear() {
     map.clear();
+    cache.clear();
+    expiredCookies.clear();
     db.clear();
   }
 
   public synchronized void close() {
+    removeExpiredCookies();
+    closed = true;
     db.close();
   }
 
@@ -184,4 +236,42 @@ public class CookieRepository implements CookieJar {
 
     return false;
   }
+
+  /**
+   * Cookies of all domains matching a host, sorted for requests.
+   */
+  private static class HostCookies {
+
+    private final List<Cookie> cookies;
+    // The time the first cookie expires
+    private final long expiresAt;
+
+    HostCookies(List<Cookie> cookies) {
+      long expiresAt = Long.MAX_VALUE;
+      for (Cookie cookie : cookies) {
+        expiresAt = Math.min(expiresAt, cookie.expiresAt());
+      }
+      this.cookies = Collections.unmodifiableList(cookies);
+      this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Returns cookies matching path and scheme of the url.
+     * The cached list itself is returned if all cookies match.
+     */
+    List<Cookie> get(HttpUrl url) {
+      List<Cookie> result = null;
+      for (int i = 0, n = cookies.size(); i < n; i++) {
+        Cookie cookie = cookies.get(i);
+        if (cookie.matches(url)) {
+          if (result != null) {
+            result.add(cookie);
+          }
+        } else if (result == null) {
+          result = new ArrayList<>(cookies.subList(0, i));
+        }
+      }
+      return result != null ? result : cookies;
+    }
+  }
 }
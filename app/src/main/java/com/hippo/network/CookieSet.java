@@ -27,7 +27,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import okhttp3.Cookie;
-import okhttp3.HttpUrl;
 
 class CookieSet {
 
@@ -52,18 +51,18 @@ class CookieSet {
   }
 
   /**
-   * Get cookies for the url. Fill {@code accepted} and {@code expired}.
+   * Get all cookies which are not expired at {@code now}.
+   * Fill {@code alive} and {@code expired}, expired cookies are removed.
    */
-  public void get(HttpUrl url, List<Cookie> accepted, List<Cookie> expired) {
-    long now = System.currentTimeMillis();
+  public void get(long now, List<Cookie> alive, List<Cookie> expired) {
     Iterator<Map.Entry<Key, Cookie>> iterator = map.entrySet().iterator();
     while (iterator.hasNext()) {
       Cookie cookie = iterator.next().getValue();
       if (cookie.expiresAt() <= now) {
         iterator.remove();
         expired.add(cookie);
-      } else if (cookie.matches(url)) {
-        accepted.add(cookie);
+      } else {
+        alive.add(cookie);
       }
     }
   }
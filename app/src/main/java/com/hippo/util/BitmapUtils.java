@@ -45,6 +45,19 @@ public final class BitmapUtils {
         return total - used;
     }
 
+    /**
+     * Returns memory the system can give before it starts killing
+     * processes. Native allocations, unlike Java heap, count on it.
+     */
+    public static long availableSystemMemory() {
+        final ActivityManager activityManager = (ActivityManager) sContext.
+                getSystemService(Context.ACTIVITY_SERVICE);
+        final ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
+
+        return Math.max(0, memoryInfo.availMem - memoryInfo.threshold);
+    }
+
     public static Bitmap decodeStream(@NonNull InputStreamPipe isp, int maxWidth, int maxHeight,
             int pixels, boolean checkMemory, boolean justCalc, int[] sampleSize) {
         try {
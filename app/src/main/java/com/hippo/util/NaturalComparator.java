@@ -16,10 +16,16 @@
 
 package com.hippo.util;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import java.util.Comparator;
 
 /**
  * Implements natural sort order.
+ * <p>
+ * It walks indexes of strings, nothing is allocated for comparing. To sort
+ * many strings, {@link #createKey(String, Object)} folds case once per string
+ * instead of once per comparison, and gives the same order.
  */
 public class NaturalComparator implements Comparator<String> {
 
@@ -34,102 +40,163 @@ public class NaturalComparator implements Comparator<String> {
     if (o2 == null) {
       return 1;
     }
+    return compare(o1, 0, o1.length(), o2, 0, o2.length(), false);
+  }
 
-    int index1 = 0;
-    int index2 = 0;
-    while (true) {
-      String data1 = nextSlice(o1, index1);
-      String data2 = nextSlice(o2, index2);
+  /**
+   * Compares {@code s1[start1, end1)} and {@code s2[start2, end2)}.
+   *
+   * @param folded true if case of both strings is folded by {@link #fold(String)}
+   */
+  static int compare(String s1, int start1, int end1, String s2, int start2, int end2, boolean folded) {
+    // Slices in the same prefix are equal, start from the last slice of it
+    int prefix = 0;
+    for (int n = Math.min(end1 - start1, end2 - start2); prefix < n; prefix++) {
+      if (s1.charAt(start1 + prefix) != s2.charAt(start2 + prefix)) {
+        break;
+      }
+    }
+    prefix = sliceStart(s1, start1, start1 + prefix) - start1;
 
-      if (data1 == null && data2 == null) {
+    int index1 = start1 + prefix;
+    int index2 = start2 + prefix;
+    while (true) {
+      if (index1 == end1 && index2 == end2) {
         return 0;
       }
-      if (data1 == null) {
+      if (index1 == end1) {
         return -1;
       }
-      if (data2 == null) {
+      if (index2 == end2) {
         return 1;
       }
 
-      index1 += data1.length();
-      index2 += data2.length();
+      int sliceEnd1 = nextSliceEnd(s1, index1, end1);
+      int sliceEnd2 = nextSliceEnd(s2, index2, end2);
 
       int result;
-      if (isDigit(data1) && isDigit(data2)) {
-        result = compareNumberString(data1, data2);
+      if (isDigit(s1.charAt(index1)) && isDigit(s2.charAt(index2))) {
+        result = compareNumber(s1, index1, sliceEnd1, s2, index2, sliceEnd2);
+      } else if (folded) {
+        result = compareChars(s1, index1, sliceEnd1, s2, index2, sliceEnd2);
       } else {
-        result = data1.compareToIgnoreCase(data2);
+        result = compareCharsIgnoreCase(s1, index1, sliceEnd1, s2, index2, sliceEnd2);
       }
 
       if (result != 0) {
         return result;
       }
+
+      index1 = sliceEnd1;
+      index2 = sliceEnd2;
     }
   }
 
-  private static boolean isDigit(String str) {
-    // Just check the first char
-    char ch = str.charAt(0);
+  private static boolean isDigit(char ch) {
     return ch >= '0' && ch <= '9';
   }
 
-  private static String nextSlice(String str, int index) {
-    int length = str.length();
-    if (index == length) {
-      return null;
+  /**
+   * Returns the start of the slice which ends at {@code index}.
+   */
+  private static int sliceStart(String str, int start, int index) {
+    if (index == start) {
+      return index;
     }
-
-    char ch = str.charAt(index);
+    char ch = str.charAt(index - 1);
     if (ch == '.' || ch == ' ') {
-      return str.substring(index, index + 1);
-    } else if (ch >= '0' && ch <= '9') {
-      return str.substring(index, nextNumberBound(str, index + 1));
-    } else {
-      return str.substring(index, nextOtherBound(str, index + 1));
+      return index;
     }
-  }
-
-  private static int nextNumberBound(String str, int index) {
-    for (int length = str.length(); index < length; index++) {
-      char ch = str.charAt(index);
-      if (ch < '0' || ch > '9') {
+    boolean digit = isDigit(ch);
+    for (; index > start; index--) {
+      ch = str.charAt(index - 1);
+      if (ch == '.' || ch == ' ' || isDigit(ch) != digit) {
         break;
       }
     }
     return index;
   }
 
-  private static int nextOtherBound(String str, int index) {
-    for (int length = str.length(); index < length; index++) {
-      char ch = str.charAt(index);
-      if (ch == '.' || ch == ' ' || (ch >= '0' && ch <= '9')) {
-        break;
+  /**
+   * A slice is a '.', a ' ', a number, or other chars.
+   */
+  private static int nextSliceEnd(String str, int index, int end) {
+    char ch = str.charAt(index++);
+    if (ch == '.' || ch == ' ') {
+      return index;
+    } else if (isDigit(ch)) {
+      for (; index < end; index++) {
+        if (!isDigit(str.charAt(index))) {
+          break;
+        }
+      }
+    } else {
+      for (; index < end; index++) {
+        ch = str.charAt(index);
+        if (ch == '.' || ch == ' ' || isDigit(ch)) {
+          break;
+        }
       }
     }
     return index;
   }
 
-  private static String removeLeadingZero(String s) {
-    if (s.length() < 1) {
-      return s;
+  /**
+   * Same as {@link String#compareTo(String)} for slices.
+   */
+  private static int compareChars(String s1, int start1, int end1, String s2, int start2, int end2) {
+    int length1 = end1 - start1;
+    int length2 = end2 - start2;
+    for (int i = 0, n = Math.min(length1, length2); i < n; i++) {
+      char c1 = s1.charAt(start1 + i);
+      char c2 = s2.charAt(start2 + i);
+      if (c1 != c2) {
+        return c1 - c2;
+      }
     }
+    return length1 - length2;
+  }
 
-    // At least keep the last number
-    for (int i = 0, n = s.length() - 1; i < n; i++) {
-      if (s.charAt(i) != '0') {
-        return s.substring(i);
+  /**
+   * Same as {@link String#compareToIgnoreCase(String)} for slices.
+   */
+  private static int compareCharsIgnoreCase(String s1, int start1, int end1, String s2, int start2, int end2) {
+    int length1 = end1 - start1;
+    int length2 = end2 - start2;
+    for (int i = 0, n = Math.min(length1, length2); i < n; i++) {
+      char c1 = s1.charAt(start1 + i);
+      char c2 = s2.charAt(start2 + i);
+      if (c1 != c2) {
+        c1 = Character.toUpperCase(c1);
+        c2 = Character.toUpperCase(c2);
+        if (c1 != c2) {
+          c1 = Character.toLowerCase(c1);
+          c2 = Character.toLowerCase(c2);
+          if (c1 != c2) {
+            return c1 - c2;
+          }
+        }
       }
     }
+    return length1 - length2;
+  }
 
-    return s.substring(s.length() - 1);
+  private static int skipLeadingZero(String str, int start, int end) {
+    // At least keep the last number
+    for (int n = end - 1; start < n; start++) {
+      if (str.charAt(start) != '0') {
+        break;
+      }
+    }
+    return start;
   }
 
-  private static int compareNumberString(String s1, String s2) {
-    String p1 = removeLeadingZero(s1);
-    String p2 = removeLeadingZero(s2);
+  private static int compareNumber(String s1, int start1, int end1, String s2, int start2, int end2) {
+    int p1 = skipLeadingZero(s1, start1, end1);
+    int p2 = skipLeadingZero(s2, start2, end2);
 
-    int l1 = p1.length();
-    int l2 = p2.length();
+    int l1 = end1 - p1;
+    int l2 = end2 - p2;
 
     if (l1 > l2) {
       return 1;
@@ -137,8 +204,8 @@ public class NaturalComparator implements Comparator<String> {
       return -1;
     } else {
       for (int i = 0; i < l1; i++) {
-        char c1 = p1.charAt(i);
-        char c2 = p2.charAt(i);
+        char c1 = s1.charAt(p1 + i);
+        char c2 = s2.charAt(p2 + i);
         if (c1 > c2) {
           return 1;
         } else if (c1 < c2) {
@@ -147,6 +214,60 @@ public class NaturalComparator implements Comparator<String> {
       }
     }
 
-    return -Integer.compare(s1.length(), s2.length());
+    return -Integer.compare(end1 - start1, end2 - start2);
+  }
+
+  /**
+   * Maps each char like {@link String#compareToIgnoreCase(String)} does,
+   * then chars could be compared directly.
+   */
+  static String fold(String str) {
+    char[] chars = null;
+    for (int i = 0, n = str.length(); i < n; i++) {
+      char ch = str.charAt(i);
+      char folded = Character.toLowerCase(Character.toUpperCase(ch));
+      if (folded != ch) {
+        if (chars == null) {
+          chars = str.toCharArray();
+        }
+        chars[i] = folded;
+      }
+    }
+    return chars != null ? new String(chars) : str;
+  }
+
+  /**
+   * Creates a sort key for {@code name}, with {@code value} attached.
+   * Sorting keys gives the same order as sorting names with {@code NaturalComparator}.
+   */
+  @NonNull
+  public static <T> Key<T> createKey(@Nullable String name, T value) {
+    return new Key<>(name != null ? fold(name) : null, value);
+  }
+
+  public static final class Key<T> implements Comparable<Key<T>> {
+
+    @Nullable
+    private final String folded;
+    public final T value;
+
+    private Key(@Nullable String folded, T value) {
+      this.folded = folded;
+      this.value = value;
+    }
+
+    @Override
+    public int compareTo(@NonNull Key<T> o) {
+      if (folded == null && o.folded == null) {
+        return 0;
+      }
+      if (folded == null) {
+        return -1;
+      }
+      if (o.folded == null) {
+        return 1;
+      }
+      return compare(folded, 0, folded.length(), o.folded, 0, o.folded.length(), true);
+    }
   }
 }
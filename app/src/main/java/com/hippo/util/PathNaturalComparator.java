@@ -14,8 +14,6 @@ public class PathNaturalComparator implements Comparator<String> {
   private static final boolean TYPE_SEPARATOR = false;
   private static final boolean TYPE_NORMAL = true;
 
-  private Comparator<String> naturalComparator = new NaturalComparator();
-
   @Override
   public int compare(String o1, String o2) {
     if (o1 == null && o2 == null) {
@@ -32,17 +30,17 @@ public class PathNaturalComparator implements Comparator<String> {
     int index2 = 0;
 
     while (true) {
-      String data1;
-      String data2;
+      // Segment is [start, index)
+      int start1 = -1;
+      int start2 = -1;
 
       for (;;) {
         int newIndex1 = nextSegmentStart(o1, index1);
         if (newIndex1 == index1) {
-          data1 = null;
           break;
         }
         if (getType(o1.charAt(newIndex1 - 1)) == TYPE_NORMAL) {
-          data1 = o1.substring(index1, newIndex1);
+          start1 = index1;
           index1 = newIndex1;
           break;
         }
@@ -52,28 +50,27 @@ public class PathNaturalComparator implements Comparator<String> {
       for (;;) {
         int newIndex2 = nextSegmentStart(o2, index2);
         if (newIndex2 == index2) {
-          data2 = null;
           break;
         }
         if (getType(o2.charAt(newIndex2 - 1)) == TYPE_NORMAL) {
-          data2 = o2.substring(index2, newIndex2);
+          start2 = index2;
           index2 = newIndex2;
           break;
         }
         index2 = newIndex2;
       }
 
-      if (data1 == null && data2 == null) {
+      if (start1 == -1 && start2 == -1) {
         return 0;
       }
-      if (data1 == null) {
+      if (start1 == -1) {
         return -1;
       }
-      if (data2 == null) {
+      if (start2 == -1) {
         return 1;
       }
 
-      int result = naturalComparator.compare(data1, data2);
+      int result = NaturalComparator.compare(o1, start1, index1, o2, start2, index2, false);
       if (result != 0) {
         return result;
       }
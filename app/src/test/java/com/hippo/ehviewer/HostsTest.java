@@ -124,4 +124,23 @@ public class HostsTest {
     assertEquals("wo.hao", all.get(1).first);
     assertEquals("127.0.0.2", all.get(1).second);
   }
+
+  @Test
+  public void testPersist() {
+    Hosts hosts = new Hosts(RuntimeEnvironment.application, "hosts.db");
+
+    hosts.put("ni.hao", "127.0.0.1");
+    hosts.put("wo.hao", "127.0.0.2");
+    hosts.put("ni.hao", "127.0.0.3");
+    hosts.put("ta.hao", "127.0.0.4");
+    hosts.delete("ta.hao");
+    hosts.flush();
+
+    List<Pair<String, String>> all = new Hosts(RuntimeEnvironment.application, "hosts.db").getAll();
+    assertEquals(2, all.size());
+    assertEquals("ni.hao", all.get(0).first);
+    assertEquals("127.0.0.3", all.get(0).second);
+    assertEquals("wo.hao", all.get(1).first);
+    assertEquals("127.0.0.2", all.get(1).second);
+  }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MetricsTest {
+
+  @Test
+  public void testCounter() {
+    Metrics.Counter counter = Metrics.counter("test.counter");
+    assertSame(counter, Metrics.counter("test.counter"));
+    counter.inc();
+    counter.add(2);
+    assertEquals(3, counter.get());
+    assertTrue(Metrics.dump().contains("counter test.counter 3\n"));
+  }
+
+  @Test
+  public void testHistogram() {
+    Metrics.Histogram histogram = new Metrics.Histogram(10);
+    assertEquals(0, histogram.getPercentile(0.5));
+    for (int i = 1; i <= 10; i++) {
+      histogram.record(i);
+    }
+    assertEquals(5, histogram.getPercentile(0.5));
+    assertEquals(9, histogram.getPercentile(0.9));
+    assertEquals(10, histogram.getPercentile(1.0));
+
+    // Only the latest samples are kept
+    for (int i = 0; i < 10; i++) {
+      histogram.record(100);
+    }
+    assertEquals(20, histogram.getCount());
+    assertEquals(100, histogram.getPercentile(0.1));
+    assertEquals("count=20 mean=52.8 p50=100.0 p90=100.0 p99=100.0 max=100.0",
+        histogram.format(1.0, ""));
+  }
+
+  @Test
+  public void testTimer() {
+    Metrics.Timer timer = Metrics.timer("test.timer");
+    long start = System.nanoTime() - 5000000;
+    long now = timer.stop(start);
+    assertTrue(now - start >= 5000000);
+    assertEquals(1, timer.getCount());
+    assertTrue(timer.getPercentile(0.5) >= 5000000);
+    assertTrue(Metrics.dump().contains("timer test.timer count=1 "));
+  }
+}
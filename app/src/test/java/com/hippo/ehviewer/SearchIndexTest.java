@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+public class SearchIndexTest {
+
+  @Test
+  public void testBuildMatchQuery() {
+    assertEquals("\"abc*\"", SearchIndex.buildMatchQuery("abc"));
+    assertEquals("\"abc*\" \"def*\"", SearchIndex.buildMatchQuery("  abc   def "));
+    assertEquals("\"abc*\" \"def*\"", SearchIndex.buildMatchQuery("\"abc\" -def*"));
+    assertEquals("\"a*\" \"b*\"", SearchIndex.buildMatchQuery("a:b"));
+    assertNull(SearchIndex.buildMatchQuery(""));
+    assertNull(SearchIndex.buildMatchQuery(" \"* "));
+  }
+
+  @Test
+  public void testNeedLikeQuery() {
+    assertFalse(SearchIndex.needLikeQuery("touhou"));
+    assertTrue(SearchIndex.needLikeQuery("東方"));
+    assertTrue(SearchIndex.needLikeQuery("とうほう"));
+    assertTrue(SearchIndex.needLikeQuery("touhou トウホウ"));
+  }
+
+  private static byte[] matchInfo(int... ints) {
+    ByteBuffer buffer = ByteBuffer.allocate(ints.length * 4).order(ByteOrder.nativeOrder());
+    for (int i : ints) {
+      buffer.putInt(i);
+    }
+    return buffer.array();
+  }
+
+  @Test
+  public void testScore() {
+    // 1 phrase, 3 columns, 100 rows, hit in title
+    float title = SearchIndex.score(matchInfo(1, 3, 100, 1, 5, 5, 0, 0, 0, 0, 0, 0));
+    // 1 phrase, 3 columns, 100 rows, hit in uploader
+    float uploader = SearchIndex.score(matchInfo(1, 3, 100, 0, 0, 0, 0, 0, 0, 1, 5, 5));
+    // 1 phrase, 3 columns, 100 rows, no hit
+    float none = SearchIndex.score(matchInfo(1, 3, 100, 0, 5, 5, 0, 0, 0, 0, 5, 5));
+    assertTrue(title > uploader);
+    assertTrue(uploader > none);
+    assertEquals(0.0f, none, 0.0f);
+
+    // Rare word is better
+    float rare = SearchIndex.score(matchInfo(1, 3, 100, 1, 1, 1, 0, 0, 0, 0, 0, 0));
+    assertTrue(rare > title);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.preference.PreferenceManager;
+import com.hippo.ehviewer.client.EhUrl;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@Config(manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class SettingsTest {
+
+  @Before
+  public void setUp() {
+    Settings.initialize(RuntimeEnvironment.application);
+  }
+
+  @Test
+  public void testPut() {
+    Settings.putGallerySite(EhUrl.SITE_EX);
+    assertEquals(EhUrl.SITE_EX, Settings.getGallerySite());
+    Settings.putGallerySite(EhUrl.SITE_E);
+    assertEquals(EhUrl.SITE_E, Settings.getGallerySite());
+  }
+
+  @Test
+  public void testExternalEdit() {
+    PreferenceManager.getDefaultSharedPreferences(RuntimeEnvironment.application)
+        .edit().putBoolean(Settings.KEY_SHOW_TAG_TRANSLATIONS, true).commit();
+    assertTrue(Settings.getShowTagTranslations());
+  }
+
+  @Test
+  public void testSnapshot() {
+    Settings.Snapshot snapshot = Settings.getSnapshot();
+    assertSame(snapshot, Settings.getSnapshot());
+
+    Settings.putProxyIp("127.0.0.1");
+    Settings.putProxyPort(8080);
+    assertNotSame(snapshot, Settings.getSnapshot());
+    assertEquals("127.0.0.1", Settings.getSnapshot().proxyIp);
+    assertEquals(8080, Settings.getSnapshot().proxyPort);
+  }
+
+  @Test
+  public void testPutProxy() {
+    Settings.putProxy(EhProxySelector.TYPE_HTTP, "10.0.0.1", 3128);
+    Settings.Snapshot snapshot = Settings.getSnapshot();
+    assertEquals(EhProxySelector.TYPE_HTTP, snapshot.proxyType);
+    assertEquals("10.0.0.1", snapshot.proxyIp);
+    assertEquals(3128, snapshot.proxyPort);
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class StartupTest {
+
+  @Test
+  public void testStages() {
+    List<Runnable> background = new ArrayList<>();
+    List<String> order = new ArrayList<>();
+    Startup startup = new Startup(background::add);
+    startup.add("a", Startup.STAGE_MAIN, () -> order.add("a"));
+    startup.add("b", Startup.STAGE_BACKGROUND, () -> order.add("b"), "a");
+    startup.add("c", Startup.STAGE_LAZY, () -> order.add("c"), "a");
+    startup.add("d", Startup.STAGE_MAIN, () -> order.add("d"));
+
+    startup.start();
+    assertEquals(Arrays.asList("a", "d"), order);
+    assertEquals(1, background.size());
+    assertFalse(startup.isDone("b"));
+
+    background.get(0).run();
+    assertEquals(Arrays.asList("a", "d", "b"), order);
+    assertFalse(startup.isDone("c"));
+
+    startup.ensure("c");
+    startup.ensure("c");
+    assertEquals(Arrays.asList("a", "d", "b", "c"), order);
+    assertTrue(startup.isDone("c"));
+
+    String[] lines = startup.dump().split("\n");
+    assertEquals(4, lines.length);
+    assertTrue(lines[0].startsWith("a [main] "));
+    assertTrue(lines[3].startsWith("c [lazy] "));
+  }
+
+  @Test
+  public void testDependencies() {
+    List<String> order = new ArrayList<>();
+    Startup startup = new Startup(Runnable::run);
+    startup.add("a", Startup.STAGE_LAZY, () -> order.add("a"));
+    startup.add("b", Startup.STAGE_LAZY, () -> order.add("b"), "a");
+    startup.add("c", Startup.STAGE_MAIN, () -> order.add("c"), "b");
+
+    startup.start();
+    assertEquals(Arrays.asList("a", "b", "c"), order);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownDependency() {
+    Startup startup = new Startup(Runnable::run);
+    startup.add("a", Startup.STAGE_MAIN, () -> {}, "b");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAddAfterStart() {
+    Startup startup = new Startup(Runnable::run);
+    startup.start();
+    startup.add("a", Startup.STAGE_BACKGROUND, () -> {});
+  }
+
+  @Test
+  public void testEnsureConcurrently() throws InterruptedException {
+    AtomicInteger count = new AtomicInteger();
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Startup startup = new Startup(r -> new Thread(r).start());
+    startup.add("slow", Startup.STAGE_BACKGROUND, () -> {
+      count.incrementAndGet();
+      running.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    startup.start();
+    running.await();
+    Thread waiter = new Thread(() -> startup.ensure("slow"));
+    waiter.start();
+    release.countDown();
+    startup.ensure("slow");
+    waiter.join();
+
+    assertEquals(1, count.get());
+    assertTrue(startup.isDone("slow"));
+    assertTrue(startup.dump().startsWith("slow [background] "));
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DownloadProgressTest {
+
+  @Test
+  public void testSnapshot() {
+    DownloadProgress progress = new DownloadProgress();
+
+    progress.onProgress(0, 100, 10, 10);
+    progress.onProgress(0, 100, 30, 20);
+    DownloadProgress.Snapshot snapshot = progress.snapshot();
+    assertEquals(30, snapshot.bytesRead);
+    assertEquals(1, snapshot.downloadingCount);
+    assertEquals(100, snapshot.contentLengthSum);
+    assertEquals(70, snapshot.remainingSum);
+
+    // Bytes are counted once
+    progress.onProgress(0, 100, 100, 70);
+    progress.onDone(0, true);
+    snapshot = progress.snapshot();
+    assertEquals(70, snapshot.bytesRead);
+    assertEquals(0, snapshot.downloadingCount);
+    assertEquals(1, snapshot.completedPages);
+    assertEquals(100, snapshot.completedBytes);
+    assertEquals(10000, snapshot.completedSquares, 0);
+    snapshot = progress.snapshot();
+    assertEquals(0, snapshot.bytesRead);
+    assertEquals(0, snapshot.completedPages);
+
+    // Unknown length
+    progress.onProgress(1, -1, 50, 50);
+    snapshot = progress.snapshot();
+    assertEquals(50, snapshot.bytesRead);
+    assertEquals(0, snapshot.downloadingCount);
+  }
+
+  @Test
+  public void testDoneOtherPage() {
+    DownloadProgress progress = new DownloadProgress();
+
+    progress.onProgress(1, 100, 10, 10);
+    progress.onDone(0, true);
+    DownloadProgress.Snapshot snapshot = progress.snapshot();
+    assertEquals(1, snapshot.downloadingCount);
+    assertEquals(0, snapshot.completedPages);
+  }
+
+  @Test
+  public void testDoneIncomplete() {
+    DownloadProgress progress = new DownloadProgress();
+
+    // Failed
+    progress.onProgress(0, 100, 100, 100);
+    progress.onDone(0, false);
+    assertEquals(0, progress.snapshot().completedPages);
+
+    // Won by a hedged request
+    progress.onProgress(1, 100, 10, 10);
+    progress.onDone(1, true);
+    DownloadProgress.Snapshot snapshot = progress.snapshot();
+    assertEquals(0, snapshot.completedPages);
+    assertEquals(0, snapshot.downloadingCount);
+  }
+
+  @Test
+  public void testReset() {
+    DownloadProgress progress = new DownloadProgress();
+
+    progress.onProgress(0, 100, 10, 10);
+    progress.reset();
+    DownloadProgress.Snapshot snapshot = progress.snapshot();
+    assertEquals(0, snapshot.bytesRead);
+    assertEquals(0, snapshot.downloadingCount);
+
+    progress.onProgress(1, 100, 10, 10);
+    snapshot = progress.snapshot();
+    assertEquals(10, snapshot.bytesRead);
+    assertEquals(1, snapshot.downloadingCount);
+  }
+
+  @Test
+  public void testWorkers() throws InterruptedException {
+    final DownloadProgress progress = new DownloadProgress();
+    final int workers = 8;
+    final int chunks = 10000;
+
+    Thread[] threads = new Thread[workers];
+    for (int i = 0; i < workers; i++) {
+      final int index = i;
+      threads[i] = new Thread(() -> {
+        for (int j = 1; j <= chunks; j++) {
+          progress.onProgress(index, chunks, j, 1);
+        }
+      });
+      threads[i].start();
+    }
+
+    long bytesRead = 0;
+    boolean alive = true;
+    while (alive) {
+      alive = false;
+      for (Thread thread : threads) {
+        alive |= thread.isAlive();
+      }
+      DownloadProgress.Snapshot snapshot = progress.snapshot();
+      bytesRead += snapshot.bytesRead;
+      assertTrue(snapshot.remainingSum <= snapshot.contentLengthSum);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    bytesRead += progress.snapshot().bytesRead;
+
+    assertEquals(workers * chunks, bytesRead);
+  }
+}
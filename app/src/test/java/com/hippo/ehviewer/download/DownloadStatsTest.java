@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DownloadStatsTest {
+
+  private static DownloadProgress.Snapshot bytes(long bytesRead) {
+    return new DownloadProgress.Snapshot(bytesRead, 0, 0, 0, 0, 0, 0);
+  }
+
+  private static DownloadProgress.Snapshot pages(long... sizes) {
+    long sum = 0;
+    double squareSum = 0;
+    for (long size : sizes) {
+      sum += size;
+      squareSum += (double) size * size;
+    }
+    return new DownloadProgress.Snapshot(0, 0, 0, 0, sizes.length, sum, squareSum);
+  }
+
+  @Test
+  public void testSpeed() {
+    DownloadStats stats = new DownloadStats("a");
+    assertEquals(-1, stats.getSpeed());
+
+    stats.onTick(0, bytes(1000));
+    assertEquals(-1, stats.getSpeed());
+
+    stats.onTick(2000, bytes(2000));
+    assertEquals(1000, stats.getSpeed());
+    stats.onTick(1000, bytes(2000));
+    assertEquals(4000 * 1000 / 3000, stats.getSpeed());
+
+    // Old ticks slide out
+    for (int i = 0; i < 10; i++) {
+      stats.onTick(1000, bytes(500));
+    }
+    assertEquals(500, stats.getSpeed());
+  }
+
+  @Test
+  public void testUnknown() {
+    DownloadStats stats = new DownloadStats("a");
+    assertEquals(-1, stats.estimate(10, bytes(0)).remaining);
+
+    // No bytes read isn't 300 days
+    stats.onTick(2000, bytes(0));
+    DownloadStats.Estimate estimate = stats.estimate(10, bytes(0));
+    assertEquals(-1, estimate.remaining);
+    assertEquals(-1, estimate.getConfidentRemaining());
+
+    // No page size known
+    stats.onTick(2000, bytes(2000));
+    assertEquals(-1, stats.estimate(10, bytes(0)).remaining);
+  }
+
+  @Test
+  public void testEstimate() {
+    DownloadStats stats = new DownloadStats("a");
+    for (int i = 0; i < 10; i++) {
+      stats.onTick(1000, bytes(i % 2 == 0 ? 99000 : 101000));
+    }
+    stats.onTick(0, pages(90000, 110000, 95000, 105000, 100000, 100000, 100000, 100000));
+
+    DownloadStats.Estimate estimate = stats.estimate(100, bytes(0));
+    assertEquals(100000, estimate.remaining);
+    assertTrue(estimate.low < estimate.remaining);
+    assertTrue(estimate.high > estimate.remaining);
+    assertEquals(100000, estimate.getConfidentRemaining());
+
+    // Pages being downloaded
+    DownloadProgress.Snapshot downloading = new DownloadProgress.Snapshot(0, 2, 200000, 50000, 0, 0, 0);
+    assertEquals(98000 + 500, stats.estimate(100, downloading).remaining);
+
+    assertEquals(0, stats.estimate(0, bytes(0)).remaining);
+  }
+
+  @Test
+  public void testUncertain() {
+    DownloadStats stats = new DownloadStats("a");
+    stats.onTick(1000, bytes(100000));
+    stats.onTick(1000, bytes(1000));
+    stats.onTick(0, pages(100000));
+
+    DownloadStats.Estimate estimate = stats.estimate(100, bytes(0));
+    assertTrue(estimate.remaining > 0);
+    assertEquals(-1, estimate.getConfidentRemaining());
+  }
+
+  @Test
+  public void testRestore() {
+    DownloadStats stats = new DownloadStats("a");
+    stats.onTick(2000, bytes(2000));
+    stats.onTick(0, pages(100, 300));
+
+    DownloadStats restored = DownloadStats.restore(stats.save(), "a");
+    assertEquals(1000, restored.getSpeed());
+    assertEquals(stats.estimate(10, bytes(0)).remaining, restored.estimate(10, bytes(0)).remaining);
+
+    // Page size of other resolution is dropped
+    restored = DownloadStats.restore(stats.save(), "780");
+    assertEquals(1000, restored.getSpeed());
+    assertEquals(-1, restored.estimate(10, bytes(0)).remaining);
+
+    assertEquals(-1, DownloadStats.restore(null, "a").getSpeed());
+    assertEquals(-1, DownloadStats.restore("a,x", "a").getSpeed());
+    assertEquals(-1, DownloadStats.restore("a,x,1,2,3", "a").getSpeed());
+  }
+}
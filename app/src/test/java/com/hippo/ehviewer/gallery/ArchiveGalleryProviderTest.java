@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer.gallery;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class ArchiveGalleryProviderTest {
+
+  @Test
+  public void testMakeUnique() {
+    String[] filenames = {"x-a-b.jpg", "x-a-b.jpg", "x-A-B.JPG", "x-c", "x-c", "x-a-b-2.jpg"};
+    ArchiveGalleryProvider.makeUnique(filenames, 0);
+    assertArrayEquals(new String[] {"x-a-b.jpg", "x-a-b-2.jpg", "x-A-B-3.JPG", "x-c", "x-c-5",
+        "x-a-b-2-6.jpg"}, filenames);
+  }
+
+  @Test
+  public void testMakeUniqueStart() {
+    String[] filenames = {"x-a.jpg", "x-a.jpg"};
+    ArchiveGalleryProvider.makeUnique(filenames, 10);
+    assertArrayEquals(new String[] {"x-a.jpg", "x-a-12.jpg"}, filenames);
+  }
+}
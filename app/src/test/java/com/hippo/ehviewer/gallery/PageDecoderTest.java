@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.gallery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PageDecoderTest {
+
+  @Test
+  public void testSampleSize() {
+    assertEquals(1, PageDecoder.getSampleSize(1000, 1000, 1000 * 1000));
+    assertEquals(2, PageDecoder.getSampleSize(1001, 1000, 1000 * 1000));
+    // Long strip
+    assertEquals(4, PageDecoder.getSampleSize(800, 60000, 4 * 1024 * 1024));
+    assertEquals(32, PageDecoder.getSampleSize(100000, 100000, 1));
+  }
+
+  @Test
+  public void testCanDecodeWhole() {
+    assertTrue(PageDecoder.canDecodeWhole(4000, 4000, false, 0));
+    // A long strip is over the pixel budget
+    assertFalse(PageDecoder.canDecodeWhole(1000, 20000, false, Long.MAX_VALUE));
+    // In full size it only needs memory
+    assertTrue(PageDecoder.canDecodeWhole(1000, 20000, true, 160 * 1000 * 1000));
+    assertFalse(PageDecoder.canDecodeWhole(1000, 20000, true, 160 * 1000 * 1000 - 1));
+  }
+
+  @Test
+  public void testTargetSampleSize() {
+    // No target
+    assertEquals(1, PageDecoder.getTargetSampleSize(4000, 4000, 0, 0));
+    // 2400px original on 1080px screen, fit width
+    assertEquals(2, PageDecoder.getTargetSampleSize(2400, 3400, 1080, 0));
+    assertEquals(1, PageDecoder.getTargetSampleSize(2000, 3400, 1080, 0));
+    // Fit, the page is no smaller than the view in one dimension
+    assertEquals(4, PageDecoder.getTargetSampleSize(4400, 2000, 1080, 1920));
+    assertEquals(2, PageDecoder.getTargetSampleSize(2200, 4000, 1080, 1920));
+    // Fit height
+    assertEquals(1, PageDecoder.getTargetSampleSize(4000, 1920, 0, 1920));
+  }
+
+  @Test
+  public void testSetTargetSize() {
+    PageDecoder decoder = new PageDecoder();
+    assertTrue(decoder.setTargetSize(1080, 0).isEmpty());
+    assertTrue(decoder.setTargetSize(1080, 0).isEmpty());
+    assertEquals(0, decoder.getSavedBytes());
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.gallery;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ReadAheadTest {
+
+  @Test
+  public void testDefault() {
+    ReadAhead readAhead = new ReadAhead();
+    assertEquals(1, readAhead.getDirection());
+    assertEquals(1, readAhead.getWindow(10));
+  }
+
+  @Test
+  public void testFastReader() {
+    ReadAhead readAhead = new ReadAhead();
+    readAhead.onPageLoaded(3000);
+    for (int i = 0; i < 30; i++) {
+      readAhead.onUpdateCurrentIndex(i, i * 1000);
+    }
+    // 3 seconds to load, 1 second per page
+    assertEquals(4, readAhead.getWindow(10));
+    assertEquals(2, readAhead.getWindow(2));
+  }
+
+  @Test
+  public void testBackward() {
+    ReadAhead readAhead = new ReadAhead();
+    for (int i = 0; i < 10; i++) {
+      readAhead.onUpdateCurrentIndex(100 - i, i * 1000);
+    }
+    assertEquals(-1, readAhead.getDirection());
+    readAhead.onUpdateCurrentIndex(92, 11000);
+    assertEquals(-1, readAhead.getDirection());
+  }
+
+  @Test
+  public void testJump() {
+    ReadAhead readAhead = new ReadAhead();
+    readAhead.onPageLoaded(3000);
+    readAhead.onUpdateCurrentIndex(0, 0);
+    readAhead.onUpdateCurrentIndex(50, 100);
+    readAhead.onUpdateCurrentIndex(10, 200);
+    assertEquals(1, readAhead.getDirection());
+    // Jumps don't make the reader look fast
+    assertEquals(2, readAhead.getWindow(10));
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer.gallery;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+
+public class RewindableInputStreamTest {
+
+  private static byte[] bytes(int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) i;
+    }
+    return bytes;
+  }
+
+  private static byte[] readAll(InputStream is) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1000];
+    int n;
+    while ((n = is.read(buffer)) != -1) {
+      os.write(buffer, 0, n);
+    }
+    return os.toByteArray();
+  }
+
+  @Test
+  public void testRewind() throws IOException {
+    byte[] bytes = bytes(100);
+    RewindableInputStream is = new RewindableInputStream(new ByteArrayInputStream(bytes));
+    assertEquals(0, is.read());
+    assertEquals(10, is.read(new byte[10]));
+    is.rewind();
+    assertArrayEquals(bytes, readAll(is));
+  }
+
+  @Test
+  public void testRewindAfterLargeRead() throws IOException {
+    // Far more than any mark limit
+    byte[] bytes = bytes(3 * 1024 * 1024);
+    RewindableInputStream is = new RewindableInputStream(new ByteArrayInputStream(bytes));
+    assertEquals(2 * 1024 * 1024, is.skip(2 * 1024 * 1024));
+    is.rewind();
+    assertArrayEquals(bytes, readAll(is));
+  }
+
+  @Test
+  public void testRewindAtEnd() throws IOException {
+    byte[] bytes = bytes(100);
+    RewindableInputStream is = new RewindableInputStream(new ByteArrayInputStream(bytes));
+    readAll(is);
+    is.rewind();
+    assertArrayEquals(bytes, readAll(is));
+    assertEquals(-1, is.read());
+  }
+
+  @Test
+  public void testRewindNothing() throws IOException {
+    byte[] bytes = bytes(100);
+    RewindableInputStream is = new RewindableInputStream(new ByteArrayInputStream(bytes));
+    is.rewind();
+    assertArrayEquals(bytes, readAll(is));
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.ehviewer.spider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HostHealthTest {
+
+  private static final String HOST = "a.b.hath.network";
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(200);
+  private static final long SLOW = TimeUnit.SECONDS.toNanos(20);
+
+  private long now;
+  private HostHealth health;
+
+  @Before
+  public void setUp() {
+    now = 0;
+    health = new HostHealth() {
+      @Override
+      long now() {
+        return now;
+      }
+    };
+  }
+
+  private void sleep(long seconds) {
+    now += TimeUnit.SECONDS.toNanos(seconds);
+  }
+
+  @Test
+  public void testUnknown() {
+    assertTrue(health.isAvailable(HOST));
+    assertTrue(health.isAvailable(null));
+  }
+
+  @Test
+  public void testLatency() {
+    assertEquals(-1, health.getLatency(HOST));
+    health.onFailure(HOST);
+    assertEquals(-1, health.getLatency(HOST));
+    health.onSuccess(HOST, FAST);
+    assertEquals(FAST, health.getLatency(HOST));
+    health.onSuccess(HOST, FAST * 5);
+    assertEquals(FAST * 2, health.getLatency(HOST));
+  }
+
+  @Test
+  public void testConsecutiveFailures() {
+    health.onFailure(HOST);
+    health.onFailure(HOST);
+    assertTrue(health.isAvailable(HOST));
+    health.onFailure(HOST);
+    assertFalse(health.isAvailable(HOST));
+    assertTrue(health.isAvailable("other.host"));
+  }
+
+  @Test
+  public void testSuccessResetsFailures() {
+    for (int i = 0; i < 10; i++) {
+      health.onFailure(HOST);
+      health.onSuccess(HOST, FAST);
+      health.onSuccess(HOST, FAST);
+      health.onSuccess(HOST, FAST);
+    }
+    assertTrue(health.isAvailable(HOST));
+  }
+
+  @Test
+  public void testErrorRate() {
+    for (int i = 0; i < 10; i++) {
+      health.onFailure(HOST);
+      health.onFailure(HOST);
+      health.onSuccess(HOST, FAST);
+    }
+    assertFalse(health.isAvailable(HOST));
+  }
+
+  @Test
+  public void testSlow() {
+    for (int i = 0; i < 3; i++) {
+      health.onSuccess(HOST, SLOW);
+    }
+    assertTrue(health.isAvailable(HOST));
+    health.onSuccess(HOST, SLOW);
+    assertFalse(health.isAvailable(HOST));
+  }
+
+  @Test
+  public void testLatencyAfterFailure() {
+    long latency = TimeUnit.SECONDS.toNanos(12);
+    health.onFailure(HOST);
+    for (int i = 0; i < 3; i++) {
+      health.onSuccess(HOST, latency);
+    }
+    // The failure doesn't pull latency down
+    assertFalse(health.isAvailable(HOST));
+  }
+
+  @Test
+  public void testHalfOpen() {
+    for (int i = 0; i < 3; i++) {
+      health.onFailure(HOST);
+    }
+    assertFalse(health.isAvailable(HOST));
+
+    // One trial after cool-down
+    sleep(30);
+    assertTrue(health.isAvailable(HOST));
+    assertFalse(health.isAvailable(HOST));
+
+    // The trial failed, cool-down doubles
+    health.onFailure(HOST);
+    sleep(30);
+    assertFalse(health.isAvailable(HOST));
+    sleep(30);
+    assertTrue(health.isAvailable(HOST));
+
+    // The trial succeeded
+    health.onSuccess(HOST, FAST);
+    assertTrue(health.isAvailable(HOST));
+    assertTrue(health.isAvailable(HOST));
+  }
+
+  @Test
+  public void testTrialTimeout() {
+    for (int i = 0; i < 3; i++) {
+      health.onFailure(HOST);
+    }
+    sleep(30);
+    assertTrue(health.isAvailable(HOST));
+    assertFalse(health.isAvailable(HOST));
+    sleep(60);
+    assertTrue(health.isAvailable(HOST));
+  }
+}
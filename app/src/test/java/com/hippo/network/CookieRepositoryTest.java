@@ -258,9 +258,46 @@ public class CookieRepositoryTest {
     repository.saveFromResponse(urlEh1, Arrays.asList(cookieEh1, cookieEh2));
     repository.saveFromResponse(urlEh1, Collections.singletonList(cookieEh3));
     repository.saveFromResponse(urlNMB, Collections.singletonList(cookieNMB));
-    equals(Arrays.asList(cookieEh1, cookieEh3), repository.loadForRequest(null));
+    equals(Arrays.asList(cookieEh1, cookieEh3), repository.loadForRequest(urlEh2));
+    equals(Arrays.asList(cookieEh1, cookieEh2, cookieEh3), repository.loadForRequest(urlEh1));
+    equals(Collections.singletonList(cookieNMB), repository.loadForRequest(urlNMB));
     Thread.sleep(3000);
-    equals(Collections.singletonList(cookieEh3), repository.loadForRequest(null));
+    equals(Collections.singletonList(cookieEh3), repository.loadForRequest(urlEh2));
+    repository.close();
+  }
+
+  @Test
+  public void testGetAfterChange() {
+    Context app = RuntimeEnvironment.application;
+
+    HttpUrl url = HttpUrl.parse("http://www.ehviewer.com/");
+    Cookie cookie1 = new Cookie.Builder()
+        .name("user")
+        .value("1234567890")
+        .domain("ehviewer.com")
+        .path("/")
+        .build();
+    Cookie cookie2 = new Cookie.Builder()
+        .name("user")
+        .value("0987654321")
+        .domain("ehviewer.com")
+        .path("/")
+        .build();
+    Cookie cookieOther = new Cookie.Builder()
+        .name("hash")
+        .value("0987654321")
+        .domain("notehviewer.com")
+        .path("/")
+        .build();
+
+    CookieRepository repository = new CookieRepository(app, "cookie.db");
+    repository.saveFromResponse(url, Collections.singletonList(cookie1));
+    repository.addCookie(cookieOther);
+    equals(Collections.singletonList(cookie1), repository.loadForRequest(url));
+    repository.saveFromResponse(url, Collections.singletonList(cookie2));
+    equals(Collections.singletonList(cookie2), repository.loadForRequest(url));
+    repository.clear();
+    equals(Collections.<Cookie>emptyList(), repository.loadForRequest(url));
     repository.close();
   }
 
@@ -325,7 +362,7 @@ public class CookieRepositoryTest {
 
     CookieRepository repository = new CookieRepository(app, "cookie.db");
     repository.saveFromResponse(url, Arrays.asList(cookie1, cookie2, cookie3, cookie4));
-    List<Cookie> list = repository.loadForRequest(null);
+    List<Cookie> list = repository.loadForRequest(url);
     List<Cookie> expected = Arrays.asList(cookie3, cookie4, cookie2, cookie1);
     assertEquals(expected.size(), list.size());
     for (int i = 0; i < list.size(); i++) {
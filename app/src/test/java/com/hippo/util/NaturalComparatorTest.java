@@ -18,6 +18,7 @@ package com.hippo.util;
 
 import static org.junit.Assert.assertTrue;
 
+import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -67,6 +68,42 @@ public class NaturalComparatorTest {
     assertOrder("00000000000000000", "000");
   }
 
+  @Test
+  public void testIgnoreCase() {
+    assertEquals("A1", "a1");
+    assertEquals("abc.JPG", "ABC.jpg");
+    assertOrder("a", "B");
+    assertOrder("B", "c");
+  }
+
+  @Test
+  public void testKey() {
+    String chars = "0019aAbBzZ. _-\u00e9\u00c9\u0130\u0131";
+    Random random = new Random(42);
+    NaturalComparator comparator = new NaturalComparator();
+    for (int i = 0; i < 10000; i++) {
+      String s1 = randomString(random, chars);
+      String s2 = randomString(random, chars);
+      int expected = Integer.signum(comparator.compare(s1, s2));
+      int actual = Integer.signum(NaturalComparator.createKey(s1, null)
+          .compareTo(NaturalComparator.createKey(s2, null)));
+      Assert.assertEquals(s1 + " " + s2, expected, actual);
+    }
+    Assert.assertEquals(0, NaturalComparator.createKey(null, null)
+        .compareTo(NaturalComparator.createKey(null, null)));
+    assertTrue(NaturalComparator.createKey(null, null)
+        .compareTo(NaturalComparator.createKey("1", null)) < 0);
+  }
+
+  private static String randomString(Random random, String chars) {
+    int length = random.nextInt(8);
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append(chars.charAt(random.nextInt(chars.length())));
+    }
+    return sb.toString();
+  }
+
   private void assertOrder(String s1, String s2) {
     NaturalComparator comparator = new NaturalComparator();
     assertTrue(comparator.compare(s1, s2) < 0);
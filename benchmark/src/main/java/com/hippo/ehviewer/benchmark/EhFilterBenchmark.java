@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.benchmark;
+
+import com.hippo.ehviewer.EhDB;
+import com.hippo.ehviewer.client.EhFilter;
+import com.hippo.ehviewer.client.data.GalleryInfo;
+import com.hippo.ehviewer.client.parser.GalleryListParser;
+import com.hippo.ehviewer.dao.Filter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filters a page of galleries, what gallery list does after parsing.
+ * There are 50 filters of each mode, none of them matches,
+ * so all filters are checked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EhFilterBenchmark {
+
+  private static final int FILTER_COUNT = 50;
+
+  private EhFilter filter;
+  private List<GalleryInfo> list;
+
+  @Setup
+  public void setup() throws Exception {
+    List<Filter> filters = new ArrayList<>();
+    for (int i = 0; i < FILTER_COUNT; i++) {
+      filters.add(new Filter(null, EhFilter.MODE_TITLE, "Title Filter " + i, true));
+      filters.add(new Filter(null, EhFilter.MODE_UPLOADER, "uploader" + i, true));
+      filters.add(new Filter(null, EhFilter.MODE_TAG, "female:tag filter " + i, true));
+      filters.add(new Filter(null, EhFilter.MODE_TAG_NAMESPACE, "namespace" + i, true));
+    }
+    EhDB.setFilters(filters);
+    filter = EhFilter.getInstance();
+
+    // Extended mode has tags
+    String body = Fixtures.readUtf8(Fixtures.PARSER_DIR + "GalleryListParserTestEExtended.html");
+    list = GalleryListParser.parse(body).galleryInfoList;
+  }
+
+  @Benchmark
+  public int filter() {
+    int count = 0;
+    for (int i = 0, n = list.size(); i < n; i++) {
+      GalleryInfo info = list.get(i);
+      if (filter.filterTitle(info) && filter.filterUploader(info) &&
+          filter.filterTag(info) && filter.filterTagNamespace(info)) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
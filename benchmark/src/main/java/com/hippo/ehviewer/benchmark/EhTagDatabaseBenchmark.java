@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.benchmark;
+
+import com.hippo.ehviewer.client.EhTagDatabase;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import okio.Buffer;
+import okio.BufferedSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks up tags in the database of app unit tests, and in a generated one
+ * of about the size of the real tag translations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EhTagDatabaseBenchmark {
+
+  private static final int TAG_COUNT = 20000;
+
+  private EhTagDatabase small;
+  private EhTagDatabase large;
+  private String hit;
+  private String miss;
+
+  @Setup
+  public void setup() throws IOException {
+    try (BufferedSource source = Fixtures.open("/com/hippo/ehviewer/client/EhTagDatabaseTest")) {
+      small = new EhTagDatabase("EhTagDatabaseTest", source);
+    }
+    if (!"abcd".equals(small.getTranslation("1234"))) {
+      throw new IllegalStateException("Bad fixture");
+    }
+
+    // Lines of "tag\rbase64(translation)\n", sorted by tag bytes
+    List<String> tags = new ArrayList<>(TAG_COUNT);
+    for (int i = 0; i < TAG_COUNT; i++) {
+      tags.add(String.format(Locale.US, "f:tag %05d", i));
+    }
+    Buffer data = new Buffer();
+    for (String tag : tags) {
+      String translation = Base64.getEncoder().encodeToString(
+          ("标签 " + tag).getBytes(StandardCharsets.UTF_8));
+      data.writeUtf8(tag).writeByte('\r').writeUtf8(translation).writeByte('\n');
+    }
+    Buffer buffer = new Buffer();
+    buffer.writeInt((int) data.size());
+    buffer.writeAll(data);
+    large = new EhTagDatabase("generated", buffer);
+
+    hit = tags.get(TAG_COUNT / 3);
+    miss = hit + " miss";
+    if (large.getTranslation(hit) == null || large.getTranslation(miss) != null) {
+      throw new IllegalStateException("Bad generated database");
+    }
+  }
+
+  @Benchmark
+  public String smallHit() {
+    return small.getTranslation("1234");
+  }
+
+  @Benchmark
+  public String largeHit() {
+    return large.getTranslation(hit);
+  }
+
+  @Benchmark
+  public String largeMiss() {
+    return large.getTranslation(miss);
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import okio.BufferedSource;
+import okio.Okio;
+
+final class Fixtures {
+
+  static final String PARSER_DIR = "/com/hippo/ehviewer/client/parser/";
+
+  private Fixtures() {}
+
+  static BufferedSource open(String path) throws IOException {
+    InputStream is = Fixtures.class.getResourceAsStream(path);
+    if (is == null) {
+      throw new IOException("No fixture: " + path);
+    }
+    return Okio.buffer(Okio.source(is));
+  }
+
+  static String readUtf8(String path) throws IOException {
+    try (BufferedSource source = open(path)) {
+      return source.readUtf8();
+    }
+  }
+}
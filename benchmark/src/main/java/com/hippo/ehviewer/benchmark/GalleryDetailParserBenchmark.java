@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.benchmark;
+
+import com.hippo.ehviewer.client.data.GalleryDetail;
+import com.hippo.ehviewer.client.data.LargePreviewSet;
+import com.hippo.ehviewer.client.parser.GalleryDetailParser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses a gallery detail page with 20 large previews, 8 tag groups and 12 comments.
+ * <p>
+ * App unit tests have no detail page, the fixture is in this module.
+ * Large previews are used, a page of normal previews makes the parser
+ * print the stack trace of failing to parse large previews.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GalleryDetailParserBenchmark {
+
+  private String body;
+
+  @Setup
+  public void setup() throws Exception {
+    body = Fixtures.readUtf8("/com/hippo/ehviewer/benchmark/GalleryDetail.html");
+    GalleryDetail detail = GalleryDetailParser.parse(body);
+    if (detail.tags.length != 8 || detail.comments.comments.length != 12 ||
+        !detail.comments.hasMore || detail.previewPages != 2 ||
+        !(detail.previewSet instanceof LargePreviewSet) || detail.previewSet.size() != 20) {
+      throw new IllegalStateException("Bad fixture");
+    }
+  }
+
+  @Benchmark
+  public GalleryDetail parse() throws Exception {
+    return GalleryDetailParser.parse(body);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.benchmark;
+
+import com.hippo.ehviewer.client.parser.GalleryListParser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses the gallery list pages of app unit tests, one for each display mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GalleryListParserBenchmark {
+
+  @Param({
+      "GalleryListParserTestEMinimal.html",
+      "GalleryListParserTestEMinimalPlus.html",
+      "GalleryListParserTestECompat.html",
+      "GalleryListParserTestEExtended.html",
+      "GalleryListParserTestEThumbnail.html",
+      "GalleryListParserTestExMinimal.html",
+      "GalleryListParserTestExMinimalPlus.html",
+      "GalleryListParserTestExCompat.html",
+      "GalleryListParserTestExExtended.html",
+      "GalleryListParserTestExThumbnail.html",
+  })
+  public String file;
+
+  private String body;
+
+  @Setup
+  public void setup() throws Exception {
+    body = Fixtures.readUtf8(Fixtures.PARSER_DIR + file);
+    if (GalleryListParser.parse(body).galleryInfoList.size() != 25) {
+      throw new IllegalStateException("Bad fixture: " + file);
+    }
+  }
+
+  @Benchmark
+  public GalleryListParser.Result parse() throws Exception {
+    return GalleryListParser.parse(body);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.benchmark;
+
+import com.hippo.util.NaturalComparator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorts 5000 file names of an archive with the comparator and with sort keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NaturalComparatorBenchmark {
+
+  private static final int NAME_COUNT = 5000;
+
+  private final NaturalComparator comparator = new NaturalComparator();
+  private List<String> names;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    names = new ArrayList<>(NAME_COUNT);
+    for (int i = 0; i < NAME_COUNT; i++) {
+      names.add(String.format(Locale.US, "Chapter %d - Page_%04d.JPG",
+          random.nextInt(50), random.nextInt(3000)));
+    }
+  }
+
+  @Benchmark
+  public List<String> sortWithComparator() {
+    List<String> list = new ArrayList<>(names);
+    Collections.sort(list, comparator);
+    return list;
+  }
+
+  @Benchmark
+  public List<NaturalComparator.Key<String>> sortWithKeys() {
+    List<NaturalComparator.Key<String>> keys = new ArrayList<>(names.size());
+    for (String name : names) {
+      keys.add(NaturalComparator.createKey(name, name));
+    }
+    Collections.sort(keys);
+    return keys;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.benchmark;
+
+import android.util.SparseArray;
+import com.hippo.ehviewer.spider.SpiderInfo;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads and writes the spider info of a gallery with all pTokens got,
+ * what is done on opening and leaving a gallery.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpiderInfoBenchmark {
+
+  @Param({"40", "1000"})
+  public int pages;
+
+  private SpiderInfo info;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() {
+    info = new SpiderInfo();
+    info.gid = 1366222;
+    info.token = "c8f7d9a1b2";
+    info.pages = pages;
+    info.previewPages = (pages + 39) / 40;
+    info.previewPerPage = 40;
+    info.pTokenMap = new SparseArray<>(pages);
+    for (int i = 0; i < pages; i++) {
+      info.pTokenMap.put(i, String.format("%010x", i * 2654435761L & 0xffffffffffL));
+    }
+    bytes = write();
+
+    SpiderInfo read = read();
+    if (read == null || read.pTokenMap.size() != pages) {
+      throw new IllegalStateException("Bad spider info");
+    }
+  }
+
+  @Benchmark
+  public SpiderInfo read() {
+    return SpiderInfo.read(new ByteArrayInputStream(bytes));
+  }
+
+  @Benchmark
+  public byte[] write() {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(bytes == null ? 8192 : bytes.length);
+    info.write(os);
+    return os.toByteArray();
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Shim of the Android class, decodes with {@link java.util.Base64}.
+ */
+public final class Base64 {
+
+  public static final int DEFAULT = 0;
+
+  private Base64() {}
+
+  public static byte[] decode(byte[] input, int offset, int len, int flags) {
+    ByteBuffer buffer = java.util.Base64.getMimeDecoder().decode(ByteBuffer.wrap(input, offset, len));
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
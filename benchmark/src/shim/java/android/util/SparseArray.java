@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.util;
+
+import java.util.Arrays;
+
+/**
+ * Shim of the Android class. Keys are kept sorted in an array
+ * and found by binary search, the same as Android does.
+ */
+public class SparseArray<E> {
+
+  private int[] keys;
+  private Object[] values;
+  private int size;
+
+  public SparseArray() {
+    this(10);
+  }
+
+  public SparseArray(int initialCapacity) {
+    keys = new int[Math.max(1, initialCapacity)];
+    values = new Object[keys.length];
+  }
+
+  @SuppressWarnings("unchecked")
+  public E get(int key) {
+    int i = Arrays.binarySearch(keys, 0, size, key);
+    return i >= 0 ? (E) values[i] : null;
+  }
+
+  public void put(int key, E value) {
+    int i = Arrays.binarySearch(keys, 0, size, key);
+    if (i >= 0) {
+      values[i] = value;
+      return;
+    }
+    i = ~i;
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      values = Arrays.copyOf(values, size * 2);
+    }
+    System.arraycopy(keys, i, keys, i + 1, size - i);
+    System.arraycopy(values, i, values, i + 1, size - i);
+    keys[i] = key;
+    values[i] = value;
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int keyAt(int index) {
+    return keys[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  public E valueAt(int index) {
+    return (E) values[index];
+  }
+}
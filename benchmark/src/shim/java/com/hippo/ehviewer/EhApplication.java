@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer;
+
+import android.content.Context;
+import com.hippo.ehviewer.client.EhCookieStore;
+import okhttp3.OkHttpClient;
+
+/**
+ * Shim of the app class, only what benchmarked code refers to.
+ * Nothing in benchmarks goes to network.
+ */
+public final class EhApplication {
+
+  private EhApplication() {}
+
+  public static Context getInstance() {
+    throw new UnsupportedOperationException();
+  }
+
+  public static EhCookieStore getEhCookieStore(Context context) {
+    throw new UnsupportedOperationException();
+  }
+
+  public static OkHttpClient getOkHttpClient(Context context) {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer;
+
+import com.hippo.ehviewer.dao.Filter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shim of the app class, an empty database.
+ * Filters are set with {@link #setFilters(List)} before {@code EhFilter} is created.
+ */
+public final class EhDB {
+
+  private static List<Filter> filters = new ArrayList<>();
+
+  private EhDB() {}
+
+  public static void setFilters(List<Filter> filters) {
+    EhDB.filters = filters;
+  }
+
+  public static boolean containLocalFavorites(long gid) {
+    return false;
+  }
+
+  public static List<Filter> getAllFilter() {
+    return filters;
+  }
+
+  public static void addFilter(Filter filter) {}
+
+  public static void deleteFilter(Filter filter) {}
+
+  public static void triggerFilter(Filter filter) {}
+}
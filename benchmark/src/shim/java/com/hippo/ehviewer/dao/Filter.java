@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ehviewer.dao;
+
+/**
+ * Shim of the class generated by daogenerator, the same fields.
+ */
+public class Filter {
+
+  private Long id;
+  public int mode;
+  public String text;
+  public Boolean enable;
+
+  public Filter() {}
+
+  public Filter(Long id, int mode, String text, Boolean enable) {
+    this.id = id;
+    this.mode = mode;
+    this.text = text;
+    this.enable = enable;
+  }
+
+  public Long getId() {
+    return id;
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.util;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shim of the app class, a plain thread pool.
+ */
+public final class IoThreadPoolExecutor {
+
+  private static final ThreadPoolExecutor INSTANCE = new ThreadPoolExecutor(
+      0, 4, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+  private IoThreadPoolExecutor() {}
+
+  public static ThreadPoolExecutor getInstance() {
+    return INSTANCE;
+  }
+}
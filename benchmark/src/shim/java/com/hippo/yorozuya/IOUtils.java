@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.yorozuya;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Shim of the library class, only what benchmarked code refers to.
+ */
+public final class IOUtils {
+
+  private IOUtils() {}
+
+  public static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // Ignore
+      }
+    }
+  }
+
+  public static void copy(InputStream is, OutputStream os) throws IOException {
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = is.read(buffer)) != -1) {
+      os.write(buffer, 0, n);
+    }
+  }
+
+  /**
+   * Reads a line without the line break.
+   *
+   * @throws EOFException if the stream ends before a line break
+   */
+  public static String readAsciiLine(InputStream in) throws IOException {
+    StringBuilder sb = new StringBuilder(80);
+    for (;;) {
+      int c = in.read();
+      if (c == -1) {
+        throw new EOFException();
+      } else if (c == '\n') {
+        break;
+      }
+      sb.append((char) c);
+    }
+    int length = sb.length();
+    if (length > 0 && sb.charAt(length - 1) == '\r') {
+      sb.setLength(length - 1);
+    }
+    return sb.toString();
+  }
+}
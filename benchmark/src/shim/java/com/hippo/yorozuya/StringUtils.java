@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.yorozuya;
+
+/**
+ * Shim of the library class, only what benchmarked code refers to.
+ */
+public final class StringUtils {
+
+  private static final String[] ESCAPED = {"&lt;", "&gt;", "&quot;", "&apos;", "&amp;"};
+  private static final String[] UNESCAPED = {"<", ">", "\"", "'", "&"};
+
+  private StringUtils() {}
+
+  public static String trim(String str) {
+    return str == null ? null : str.trim();
+  }
+
+  public static String unescapeXml(String str) {
+    if (str == null || str.indexOf('&') < 0) {
+      return str;
+    }
+    // &amp; is the last, so "&amp;lt;" becomes "&lt;"
+    for (int i = 0; i < ESCAPED.length; i++) {
+      str = str.replace(ESCAPED[i], UNESCAPED[i]);
+    }
+    return str;
+  }
+}